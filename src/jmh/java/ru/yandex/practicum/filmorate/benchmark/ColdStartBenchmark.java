@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.durable.DurableStorageProperties;
+import ru.yandex.practicum.filmorate.storage.durable.DurableUserStorage;
+import ru.yandex.practicum.filmorate.storage.durable.FsyncPolicy;
+import ru.yandex.practicum.filmorate.storage.id.SequenceIdGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Холодный старт с 5 млн пользователей из отображенного в память снимка
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ColdStartBenchmark {
+    private static final int FRIENDS_PER_USER = 10;
+
+    @Param({"1000000", "5000000"})
+    private int users;
+
+    private Path directory;
+    private DurableUserStorage started;
+
+    @Setup(Level.Trial)
+    public void prepare() throws IOException {
+        directory = Files.createTempDirectory("filmorate-cold-start-bench");
+        DurableUserStorage storage = new DurableUserStorage(new SequenceIdGenerator(), properties());
+        storage.start();
+        for (int i = 0; i < users; i++) {
+            storage.addUser(new User(null, "user" + i + "@test.ru", "user" + i, null, LocalDate.of(1990, 1, 1)));
+        }
+        Random random = new Random(42);
+        for (long userId = 1; userId <= users; userId++) {
+            for (int j = 0; j < FRIENDS_PER_USER / 2; j++) {
+                long friendId = 1L + random.nextInt(users);
+                if (friendId != userId) {
+                    storage.addFriend(userId, friendId);
+                }
+            }
+        }
+        storage.snapshot();
+        storage.stop();
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopStarted() {
+        started.stop();
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        DurableWriteBenchmark.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public User startAndRead() {
+        started = new DurableUserStorage(new SequenceIdGenerator(), properties());
+        started.start();
+        return started.getUserById((long) users / 2);
+    }
+
+    private DurableStorageProperties properties() {
+        DurableStorageProperties properties = new DurableStorageProperties();
+        properties.setDirectory(directory);
+        properties.setFsync(FsyncPolicy.NONE);
+        properties.setSnapshotInterval(Duration.ofDays(365));
+        properties.setSnapshotEveryRecords(Long.MAX_VALUE);
+        return properties;
+    }
+}
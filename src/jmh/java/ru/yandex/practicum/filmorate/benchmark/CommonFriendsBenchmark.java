@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.yandex.practicum.filmorate.model.CompactIdSet;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Пересечение списков друзей при разном перекосе размеров: прежний retainAll против CompactIdSet
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommonFriendsBenchmark {
+    private static final int USERS = 1_000_000;
+
+    @Param({"100:100", "100:100000", "5000:100000", "100000:100000"})
+    private String sizes;
+
+    private Set<Long> firstHashSet;
+    private Set<Long> secondHashSet;
+    private CompactIdSet firstCompact;
+    private CompactIdSet secondCompact;
+
+    @Setup
+    public void setUp() {
+        String[] parts = sizes.split(":");
+        Random random = new Random(42);
+        firstHashSet = new HashSet<>();
+        secondHashSet = new HashSet<>();
+        firstCompact = new CompactIdSet();
+        secondCompact = new CompactIdSet();
+        fill(random, Integer.parseInt(parts[0]), firstHashSet, firstCompact);
+        fill(random, Integer.parseInt(parts[1]), secondHashSet, secondCompact);
+    }
+
+    @Benchmark
+    public Set<Long> hashSetRetainAll() {
+        Set<Long> mutual = new HashSet<>(firstHashSet);
+        mutual.retainAll(secondHashSet);
+        return mutual;
+    }
+
+    @Benchmark
+    public void compactIntersect(Blackhole blackhole) {
+        CompactIdSet.intersect(firstCompact, secondCompact, blackhole::consume);
+    }
+
+    @Benchmark
+    public int compactCountOnly() {
+        return CompactIdSet.intersectionSize(firstCompact, secondCompact);
+    }
+
+    private static void fill(Random random, int size, Set<Long> hashSet, CompactIdSet compact) {
+        while (hashSet.size() < size) {
+            long id = 1L + random.nextInt(USERS);
+            hashSet.add(id);
+            compact.add(id);
+        }
+    }
+}
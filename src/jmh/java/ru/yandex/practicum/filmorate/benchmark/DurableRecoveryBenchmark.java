@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.durable.DurableFilmStorage;
+import ru.yandex.practicum.filmorate.storage.durable.DurableStorageProperties;
+import ru.yandex.practicum.filmorate.storage.durable.FsyncPolicy;
+import ru.yandex.practicum.filmorate.storage.id.SequenceIdGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Время восстановления после 10 млн операций: только журнал или снимок плюс хвост журнала
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class DurableRecoveryBenchmark {
+    private static final int FILMS = 1_000_000;
+    private static final int USERS = 1_000_000;
+    private static final int OPERATIONS = 10_000_000;
+
+    // Доля операций, попавших в хвост журнала после последнего снимка
+    @Param({"1.0", "0.1"})
+    private double tailFraction;
+
+    private Path directory;
+    private DurableFilmStorage recovered;
+
+    @Setup(Level.Trial)
+    public void prepare() throws IOException {
+        directory = Files.createTempDirectory("filmorate-recovery-bench");
+        DurableFilmStorage storage = new DurableFilmStorage(new SequenceIdGenerator(), properties());
+        storage.start();
+        Random random = new Random(42);
+        long snapshotAt = Math.round(OPERATIONS * (1 - tailFraction));
+        for (long i = 0; i < OPERATIONS; i++) {
+            if (i < FILMS) {
+                storage.addFilm(new Film(null, "Фильм " + i, "Описание", LocalDate.of(2000, 1, 1), 120L));
+            } else {
+                storage.addLike(1L + random.nextInt(FILMS), 1L + random.nextInt(USERS));
+            }
+            if (i + 1 == snapshotAt) {
+                storage.snapshot();
+            }
+        }
+        storage.stop();
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeRecovered() {
+        recovered.stop();
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        DurableWriteBenchmark.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public DurableFilmStorage recover() {
+        recovered = new DurableFilmStorage(new SequenceIdGenerator(), properties());
+        recovered.start();
+        return recovered;
+    }
+
+    // Фоновые снимки отключены, чтобы восстановление не меняло подготовленные файлы
+    private DurableStorageProperties properties() {
+        DurableStorageProperties properties = new DurableStorageProperties();
+        properties.setDirectory(directory);
+        properties.setFsync(FsyncPolicy.NONE);
+        properties.setSnapshotInterval(Duration.ofDays(365));
+        properties.setSnapshotEveryRecords(Long.MAX_VALUE);
+        return properties;
+    }
+}
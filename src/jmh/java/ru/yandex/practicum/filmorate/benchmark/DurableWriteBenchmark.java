@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.durable.DurableFilmStorage;
+import ru.yandex.practicum.filmorate.storage.durable.DurableStorageProperties;
+import ru.yandex.practicum.filmorate.storage.durable.FsyncPolicy;
+import ru.yandex.practicum.filmorate.storage.id.SequenceIdGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Пропускная способность записи лайков через журнал при разных политиках fsync
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(64)
+@Fork(1)
+public class DurableWriteBenchmark {
+    private static final int FILMS = 100_000;
+    private static final int USERS = 1_000_000;
+
+    @Param({"EVERY_COMMIT", "INTERVAL", "NONE"})
+    private FsyncPolicy fsync;
+
+    private Path directory;
+    private DurableFilmStorage storage;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("filmorate-wal-bench");
+        DurableStorageProperties properties = new DurableStorageProperties();
+        properties.setDirectory(directory);
+        properties.setFsync(fsync);
+        storage = new DurableFilmStorage(new SequenceIdGenerator(), properties);
+        storage.start();
+        for (int i = 0; i < FILMS; i++) {
+            storage.addFilm(new Film(null, "Фильм " + i, "Описание", LocalDate.of(2000, 1, 1), 120L));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        storage.stop();
+        deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public boolean addLike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return storage.addLike(1L + random.nextInt(FILMS), 1L + random.nextInt(USERS));
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Пропускная способность вставки должна оставаться ровной при любом размере хранилища
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmInsertBenchmark {
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"0", "100000", "1000000"})
+    private int storeSize;
+
+    private InMemoryFilmStorage filmStorage;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        filmStorage = new InMemoryFilmStorage();
+        for (int i = 0; i < storeSize; i++) {
+            filmStorage.addFilm(newFilm());
+        }
+    }
+
+    @Benchmark
+    public Film addFilm() {
+        return filmStorage.addFilm(newFilm());
+    }
+
+    // Пакетный импорт: результат в операциях на фильм, чтобы сравнивать с addFilm напрямую
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void addFilms() {
+        List<Film> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(newFilm());
+        }
+        filmStorage.addFilms(batch, (index, message) -> {
+            throw new IllegalStateException(message);
+        });
+    }
+
+    private static Film newFilm() {
+        return new Film(null, "Фильм", "Описание", LocalDate.of(2000, 1, 1), 120L);
+    }
+}
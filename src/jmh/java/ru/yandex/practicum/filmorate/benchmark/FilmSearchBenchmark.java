@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Поиск по миллиону фильмов; SampleTime дает перцентили, цель — p99 меньше 10 мс.
+// Слово «фильм» есть в каждом описании, остальные слова распределены неравномерно: от частых до редких
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class FilmSearchBenchmark {
+    private static final int FILMS = 1_000_000;
+    private static final int VOCABULARY = 50_000;
+    private static final int WORDS_PER_FILM = 20;
+
+    @Param({"common", "mixed", "rare"})
+    private String queries;
+
+    private InMemoryFilmStorage filmStorage;
+    private String[] words;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            words[i] = "слово" + i + "ка";
+        }
+        random = new Random(42);
+        filmStorage = new InMemoryFilmStorage();
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            StringBuilder description = new StringBuilder("Фильм");
+            for (int j = 0; j < WORDS_PER_FILM; j++) {
+                description.append(' ').append(words[frequentWord()]);
+            }
+            films.add(new Film(null, "Фильм " + i, description.toString(), LocalDate.of(2000, 1, 1), 120L));
+            if (films.size() == 100_000) {
+                addFilms(films);
+            }
+        }
+        addFilms(films);
+    }
+
+    @Benchmark
+    public List<Film> search() {
+        String query = switch (queries) {
+            case "common" -> "фильм " + words[frequentWord()];
+            case "mixed" -> words[frequentWord()] + " " + words[frequentWord()] + " " + words[frequentWord()];
+            // Слова за тремя сигмами распределения встречаются в единицах фильмов
+            default -> words[9_000 + random.nextInt(3_000)];
+        };
+        return filmStorage.searchFilms(query, 20);
+    }
+
+    // Номер слова по модулю нормального распределения: начало словаря встречается в тысячах фильмов, хвост — в единицах
+    private int frequentWord() {
+        return (int) Math.min(VOCABULARY - 1, Math.abs(random.nextGaussian()) * 3000);
+    }
+
+    private void addFilms(List<Film> films) {
+        filmStorage.addFilms(films, (index, message) -> {
+            throw new IllegalStateException(message);
+        });
+        films.clear();
+    }
+}
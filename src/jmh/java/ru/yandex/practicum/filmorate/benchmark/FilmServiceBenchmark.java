@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Page;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmServiceBenchmark {
+    private static final int USERS = 10_000;
+    private static final int LIKES_PER_FILM = 5;
+
+    @Param({"10000", "100000", "1000000"})
+    private int films;
+
+    @Param({"10", "100"})
+    private long popularCount;
+
+    private InMemoryFilmStorage filmStorage;
+    private FilmService filmService;
+
+    @Setup
+    public void setUp() {
+        InMemoryUserStorage userStorage = new InMemoryUserStorage();
+        filmStorage = new InMemoryFilmStorage();
+        filmService = new FilmService(filmStorage, new UserService(userStorage));
+        for (int i = 0; i < USERS; i++) {
+            userStorage.addUser(new User(null, "user" + i + "@test.ru", "user" + i, null, LocalDate.of(1990, 1, 1)));
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < films; i++) {
+            Film film = filmStorage.addFilm(new Film(null, "Фильм " + i, "Описание", LocalDate.of(2000, 1, 1), 120L));
+            int likes = random.nextInt(LIKES_PER_FILM * 2);
+            for (int j = 0; j < likes; j++) {
+                filmStorage.addLike(film.getId(), 1L + random.nextInt(USERS));
+            }
+        }
+    }
+
+    @Benchmark
+    public Film getFilmById() {
+        return filmStorage.getFilmById(1L + ThreadLocalRandom.current().nextInt(films));
+    }
+
+    @Benchmark
+    public List<Film> getMostPopularFilms() {
+        return filmService.getMostPopularFilms(popularCount);
+    }
+
+    @Benchmark
+    public Page<Film> getFilmsPage() {
+        return filmService.getFilmsPage(ThreadLocalRandom.current().nextInt(films), 100);
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.FriendEdge;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FriendRecommendationService;
+import ru.yandex.practicum.filmorate.service.RecommendationProperties;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Рекомендации друзей для пользователя с 5 тысячами друзей; SampleTime дает перцентили, цель — p99 меньше 20 мс.
+// Среди друзей есть популярные пользователи со 100 тысячами друзей, на них срабатывает ограничение выборки
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FriendRecommendationBenchmark {
+    private static final int USERS = 200_000;
+    private static final int FRIENDS = 5_000;
+    private static final int FRIENDS_OF_FRIEND = 500;
+    private static final int CELEBRITIES = 10;
+    private static final int CELEBRITY_FRIENDS = 100_000;
+
+    private FriendRecommendationService recommendationService;
+
+    @Setup
+    public void setUp() {
+        InMemoryUserStorage userStorage = new InMemoryUserStorage();
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(new User(null, "user" + i + "@test.ru", "user" + i, null, LocalDate.of(1990, 1, 1)));
+        }
+        userStorage.addUsers(users, (index, message) -> {
+            throw new IllegalStateException(message);
+        });
+
+        Random random = new Random(42);
+        List<FriendEdge> friendships = new ArrayList<>();
+        for (long friendId = 2; friendId <= FRIENDS + 1; friendId++) {
+            friendships.add(new FriendEdge(1L, friendId));
+            int degree = friendId <= CELEBRITIES + 1 ? CELEBRITY_FRIENDS : FRIENDS_OF_FRIEND;
+            for (int i = 0; i < degree; i++) {
+                long candidateId = FRIENDS + 2L + random.nextInt(USERS - FRIENDS - 1);
+                friendships.add(new FriendEdge(friendId, candidateId));
+            }
+            if (friendships.size() > 100_000) {
+                userStorage.addFriends(friendships, (index, message) -> {
+                });
+                friendships.clear();
+            }
+        }
+        userStorage.addFriends(friendships, (index, message) -> {
+        });
+        recommendationService = new FriendRecommendationService(userStorage, new RecommendationProperties());
+    }
+
+    @Benchmark
+    public List<User> recommend() {
+        return recommendationService.recommend(1L, 10);
+    }
+}
@@ -0,0 +1,222 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Нагрузка на запущенный сервис: connections клиентов одновременно шлют запросы без пауз, четверть из них —
+// лайки, которые в режиме durable ждут записи журнала. Сценарий herd: все клиенты запрашивают одну страницу
+// популярных, а редкие лайки сбрасывают ее из кэша, и промахи приходят толпой. Печатает пропускную способность,
+// перцентили задержки и среднюю загрузку CPU сервиса по /actuator/prometheus.
+// Параметры берутся из переменных окружения: LOAD_URL, LOAD_CONNECTIONS, LOAD_SECONDS, LOAD_WARMUP_SECONDS,
+// LOAD_SCENARIO (mixed или herd)
+public class HttpLoadTest {
+    private static final int FILMS = 1_000;
+    private static final int USERS = 1_000;
+    // В сценарии herd лайком оказывается один запрос из HERD_LIKE_EVERY
+    private static final int HERD_LIKE_EVERY = 200;
+
+    public static void main(String[] args) throws Exception {
+        String url = env("LOAD_URL", "http://localhost:8080");
+        int connections = Integer.parseInt(env("LOAD_CONNECTIONS", "10000"));
+        int seconds = Integer.parseInt(env("LOAD_SECONDS", "60"));
+        int warmupSeconds = Integer.parseInt(env("LOAD_WARMUP_SECONDS", "15"));
+        boolean herd = "herd".equals(env("LOAD_SCENARIO", "mixed"));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .executor(executor)
+                    .build();
+            prepareData(client, url);
+            System.out.printf("Прогрев: %d с, %,d соединений%n", warmupSeconds, connections);
+            run(client, url, connections, warmupSeconds, herd);
+            System.out.printf("Замер: %d с, %,d соединений%n", seconds, connections);
+            CpuSampler cpu = new CpuSampler(client, url);
+            Thread sampler = Thread.ofVirtual().start(cpu);
+            Result result = run(client, url, connections, seconds, herd);
+            sampler.interrupt();
+            sampler.join();
+            long[] latencies = result.latencies();
+            Arrays.sort(latencies);
+            System.out.printf("Запросов: %,d, ошибок: %,d, пропускная способность: %,.0f запросов/с%n",
+                    latencies.length, result.errors(), (double) latencies.length / seconds);
+            System.out.printf("Задержка, мс: p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n",
+                    percentile(latencies, 0.5), percentile(latencies, 0.9), percentile(latencies, 0.99),
+                    percentile(latencies, 0.999), percentile(latencies, 1.0));
+            System.out.printf("CPU сервиса: %.1f%% в среднем по %d замерам%n", cpu.average() * 100, cpu.samples);
+        }
+    }
+
+    private static Result run(HttpClient client, String url, int connections, int seconds, boolean herd)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        AtomicLong errors = new AtomicLong();
+        List<LatencyRecorder> recorders = new ArrayList<>(connections);
+        List<Thread> workers = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            LatencyRecorder recorder = new LatencyRecorder();
+            recorders.add(recorder);
+            workers.add(Thread.ofVirtual().start(() -> {
+                while (System.nanoTime() < deadline) {
+                    long startedAt = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(herd ? nextHerdRequest(url) : nextRequest(url),
+                                HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() >= 400) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        recorder.record(System.nanoTime() - startedAt);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long total = recorders.stream().mapToLong(LatencyRecorder::size).sum();
+        long[] latencies = new long[Math.toIntExact(total)];
+        int offset = 0;
+        for (LatencyRecorder recorder : recorders) {
+            System.arraycopy(recorder.latencies, 0, latencies, offset, recorder.size);
+            offset += recorder.size;
+        }
+        return new Result(latencies, errors.get());
+    }
+
+    private static HttpRequest nextRequest(String url) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long filmId = 1 + random.nextInt(FILMS);
+        int kind = random.nextInt(4);
+        if (kind == 0) {
+            long userId = 1 + random.nextInt(USERS);
+            return HttpRequest.newBuilder(URI.create(url + "/films/" + filmId + "/like/" + userId))
+                    .PUT(HttpRequest.BodyPublishers.noBody())
+                    .build();
+        }
+        String path = kind == 1 ? "/films/popular?count=10" : "/films/" + filmId;
+        return HttpRequest.newBuilder(URI.create(url + path)).GET().build();
+    }
+
+    private static HttpRequest nextHerdRequest(String url) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextInt(HERD_LIKE_EVERY) == 0) {
+            long filmId = 1 + random.nextInt(FILMS);
+            long userId = 1 + random.nextInt(USERS);
+            return HttpRequest.newBuilder(URI.create(url + "/films/" + filmId + "/like/" + userId))
+                    .PUT(HttpRequest.BodyPublishers.noBody())
+                    .build();
+        }
+        return HttpRequest.newBuilder(URI.create(url + "/films/popular?count=10")).GET().build();
+    }
+
+    private static void prepareData(HttpClient client, String url) throws Exception {
+        for (int i = 0; i < USERS; i++) {
+            post(client, url + "/users", "{\"email\":\"load" + i + "@test.ru\",\"login\":\"load" + i
+                    + "\",\"birthday\":\"1990-01-01\"}");
+        }
+        for (int i = 0; i < FILMS; i++) {
+            post(client, url + "/films", "{\"name\":\"Фильм " + i + "\",\"duration\":\"120\","
+                    + "\"description\":\"Нагрузочный тест\",\"releaseDate\":\"1990-01-01\"}");
+        }
+    }
+
+    private static void post(HttpClient client, String url, String body) throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        // Повторный запуск на тех же данных получает 400 на занятый email, это не мешает замеру
+        if (response.statusCode() >= 500) {
+            throw new IllegalStateException("Не удалось подготовить данные: " + response.statusCode() + " "
+                    + response.body());
+        }
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+
+    private static final class LatencyRecorder {
+        private long[] latencies = new long[1024];
+        private int size;
+
+        void record(long nanos) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = nanos;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    private record Result(long[] latencies, long errors) {
+    }
+
+    // Раз в секунду читает process_cpu_usage сервиса: доля всех ядер машины, занятая процессом
+    private static final class CpuSampler implements Runnable {
+        private final HttpClient client;
+        private final URI uri;
+        private double total;
+        private int samples;
+
+        CpuSampler(HttpClient client, String url) {
+            this.client = client;
+            this.uri = URI.create(url + "/actuator/prometheus");
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(1_000);
+                    String metrics = client.send(HttpRequest.newBuilder(uri).GET().build(),
+                            HttpResponse.BodyHandlers.ofString()).body();
+                    metrics.lines()
+                            .filter(line -> line.startsWith("process_cpu_usage "))
+                            .findFirst()
+                            .ifPresent(line -> {
+                                total += Double.parseDouble(line.substring(line.indexOf(' ') + 1));
+                                samples++;
+                            });
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    // Пропущенный замер не портит среднее
+                }
+            }
+        }
+
+        double average() {
+            return samples == 0 ? 0 : total / samples;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Лайки и их снятие, каждый поток — на своем фильме: рейтинг переставляет разные фильмы независимо,
+// поэтому пропускная способность на 4 потоках должна расти, а не оставаться на уровне одного.
+// Группа с выдачей популярных показывает, сколько стоят лайки, пока рейтинг параллельно читают
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LikeContentionBenchmark {
+    private static final int FILMS = 10_000;
+    private static final int LIKES_PER_FILM = 5;
+
+    private InMemoryFilmStorage filmStorage;
+    private final AtomicLong nextFilmId = new AtomicLong(1);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        filmStorage = new InMemoryFilmStorage();
+        for (int i = 0; i < FILMS; i++) {
+            Film film = filmStorage.addFilm(new Film(null, "Фильм " + i, "Описание", LocalDate.of(2000, 1, 1), 120L));
+            for (long userId = 1; userId <= LIKES_PER_FILM; userId++) {
+                filmStorage.addLike(film.getId(), userId);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class OwnFilm {
+        private long filmId;
+        private boolean liked;
+
+        @Setup(Level.Trial)
+        public void setUp(LikeContentionBenchmark benchmark) {
+            filmId = benchmark.nextFilmId.getAndIncrement();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean likeOwnFilmOneThread(OwnFilm own) {
+        return toggleLike(own);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean likeOwnFilmFourThreads(OwnFilm own) {
+        return toggleLike(own);
+    }
+
+    @Benchmark
+    @Group("likesWhileReading")
+    @GroupThreads(3)
+    public boolean likeOwnFilmWhileReading(OwnFilm own) {
+        return toggleLike(own);
+    }
+
+    @Benchmark
+    @Group("likesWhileReading")
+    @GroupThreads(1)
+    public int readTop() {
+        return filmStorage.getMostPopularFilms(10).size();
+    }
+
+    // Пользователь вне начальных лайков, поэтому каждый вызов переставляет фильм в рейтинге
+    private boolean toggleLike(OwnFilm own) {
+        own.liked = !own.liked;
+        return own.liked
+                ? filmStorage.addLike(own.filmId, LIKES_PER_FILM + 1L)
+                : filmStorage.removeLike(own.filmId, LIKES_PER_FILM + 1L);
+    }
+}
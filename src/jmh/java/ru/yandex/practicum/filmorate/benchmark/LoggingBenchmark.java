@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.ConfigurationSource;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.xml.XmlConfiguration;
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Пропускная способность операций с логированием на 8 потоках: прежний конвейер (синхронный File-аппендер,
+// каждое событие пишется сразу) против log4j2.xml сервиса (асинхронные логгеры, RandomAccessFile, BurstFilter)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class LoggingBenchmark {
+    private static final int USERS = 100_000;
+    private static final int FILMS = 10_000;
+    private static final String SYNC_CONFIG = "<Configuration status=\"WARN\"><Appenders>"
+            + "<File name=\"FILE\" fileName=\"logs/app.log\">"
+            + "<PatternLayout pattern=\"%d{yyyy-MM-dd HH:mm:ss} [%t] %-5level %c - %m%n\"/></File>"
+            + "</Appenders><Loggers><Root level=\"info\"><AppenderRef ref=\"FILE\"/></Root></Loggers></Configuration>";
+
+    @Param({"sync", "async"})
+    private String pipeline;
+
+    private LoggerContext loggerContext;
+    private UserService userService;
+    private InMemoryFilmStorage filmStorage;
+
+    @Setup
+    public void setUp() throws IOException {
+        String config;
+        if ("sync".equals(pipeline)) {
+            config = SYNC_CONFIG;
+        } else {
+            try (InputStream in = LoggingBenchmark.class.getResourceAsStream("/log4j2.xml")) {
+                config = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+        byte[] bytes = config.replace("logs/app.log", "target/jmh-logs/" + pipeline + ".log")
+                .getBytes(StandardCharsets.UTF_8);
+        loggerContext = LoggerContext.getContext(false);
+        Configurator.reconfigure(new XmlConfiguration(loggerContext,
+                new ConfigurationSource(new ByteArrayInputStream(bytes))));
+
+        InMemoryUserStorage userStorage = new InMemoryUserStorage();
+        userService = new UserService(userStorage);
+        for (int i = 0; i < USERS; i++) {
+            userStorage.addUser(new User(null, "user" + i + "@test.ru", "user" + i, null, LocalDate.of(1990, 1, 1)));
+        }
+        filmStorage = new InMemoryFilmStorage();
+        for (int i = 0; i < FILMS; i++) {
+            filmStorage.addFilm(new Film(null, "Фильм " + i, "Описание", LocalDate.of(2000, 1, 1), 120L));
+        }
+    }
+
+    // Асинхронные логгеры дописывают буфер при остановке контекста
+    @TearDown
+    public void tearDown() {
+        Configurator.shutdown(loggerContext);
+    }
+
+    @Benchmark
+    public User addFriend() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long userId = 1 + random.nextInt(USERS);
+        long friendId = userId % USERS + 1;
+        return userService.addFriend(userId, friendId);
+    }
+
+    @Benchmark
+    public User addUser() {
+        long id = ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+        return userService.getUserStorage().addUser(new User(null, "load" + id + "@test.ru", "load" + id, "Имя",
+                LocalDate.of(1990, 1, 1)));
+    }
+
+    @Benchmark
+    public Film getFilmById() {
+        return filmStorage.getFilmById(1L + ThreadLocalRandom.current().nextInt(FILMS));
+    }
+}
@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jol.info.GraphLayout;
+import ru.yandex.practicum.filmorate.model.CompactIdSet;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+// Сравнение занимаемой памяти множеств ID: HashSet<Long> против CompactIdSet на лайках фильмов
+// и на графе друзей, где множество есть у каждого пользователя, а дружба пишется в оба конца
+public class MemoryFootprintReport {
+    private static final int USERS = 1_000_000;
+    private static final int FILMS = 100_000;
+    private static final long LIKES = 10_000_000L;
+    private static final long FRIENDSHIPS = 5_000_000L;
+
+    public static void main(String[] args) {
+        System.out.printf("Лайки. Пользователей: %,d, фильмов: %,d, лайков: %,d%n", USERS, FILMS, LIKES);
+        measure("HashSet<Long>", HashSet::new, MemoryFootprintReport::likes);
+        measure("CompactIdSet", CompactIdSet::new, MemoryFootprintReport::likes);
+        System.out.printf("Друзья. Пользователей: %,d, дружб: %,d%n", USERS, FRIENDSHIPS);
+        measure("HashSet<Long>", HashSet::new, MemoryFootprintReport::friends);
+        measure("CompactIdSet", CompactIdSet::new, MemoryFootprintReport::friends);
+    }
+
+    private static void measure(String layout, SetFactory factory, Scenario scenario) {
+        List<Set<Long>> sets = scenario.fill(factory);
+        long storedIds = sets.stream().mapToLong(Set::size).sum();
+        long bytes = GraphLayout.parseInstance(sets.toArray()).totalSize();
+        System.out.printf("%-15s %,15d байт, %6.1f байт на ID (уникальных ID в множествах: %,d)%n",
+                layout, bytes, (double) bytes / storedIds, storedIds);
+    }
+
+    private static List<Set<Long>> likes(SetFactory factory) {
+        List<Set<Long>> likeSets = sets(FILMS, factory);
+        Random random = new Random(42);
+        for (long i = 0; i < LIKES; i++) {
+            // Квадрат равномерного распределения дает длинный хвост: немного хитов и много фильмов с парой лайков
+            double popularity = random.nextDouble();
+            int film = (int) (popularity * popularity * FILMS);
+            likeSets.get(film).add(1L + random.nextInt(USERS));
+        }
+        return likeSets;
+    }
+
+    // Тот же длинный хвост по активности: немногие пользователи с тысячами друзей, у большинства — единицы.
+    // Второй конец дружбы случайный, поэтому ID друзей разбросаны по всему диапазону
+    private static List<Set<Long>> friends(SetFactory factory) {
+        List<Set<Long>> friendSets = sets(USERS, factory);
+        Random random = new Random(42);
+        for (long i = 0; i < FRIENDSHIPS; i++) {
+            double activity = random.nextDouble();
+            int user = (int) (activity * activity * USERS);
+            int friend = random.nextInt(USERS);
+            if (user != friend) {
+                friendSets.get(user).add(1L + friend);
+                friendSets.get(friend).add(1L + user);
+            }
+        }
+        return friendSets;
+    }
+
+    private static List<Set<Long>> sets(int count, SetFactory factory) {
+        List<Set<Long>> sets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sets.add(factory.create());
+        }
+        return sets;
+    }
+
+    @FunctionalInterface
+    private interface SetFactory {
+        Set<Long> create();
+    }
+
+    @FunctionalInterface
+    private interface Scenario {
+        List<Set<Long>> fill(SetFactory factory);
+    }
+}
@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.FriendEdge;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Удаление пользователя с degree друзьями: каскад идет по его друзьям, поэтому время растет со степенью,
+// а не с числом пользователей. Отдельно — полный обход фоновой чистки по графу без висячих ссылок
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class UserRemovalBenchmark {
+    private static final int USERS = 200_000;
+    private static final int BACKGROUND_FRIENDS = 20;
+
+    @Param({"1000", "10000", "100000"})
+    private int degree;
+
+    private InMemoryUserStorage userStorage;
+    private long hubId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        userStorage = new InMemoryUserStorage();
+        userStorage.addUsers(newUsers(USERS, "user"), (index, message) -> {
+            throw new IllegalStateException(message);
+        });
+        List<FriendEdge> friendships = new ArrayList<>();
+        for (long userId = 1; userId <= USERS; userId++) {
+            for (int i = 1; i <= BACKGROUND_FRIENDS / 2; i++) {
+                friendships.add(new FriendEdge(userId, (userId + i * 7919L) % USERS + 1));
+            }
+            if (friendships.size() > 100_000) {
+                userStorage.addFriends(friendships, (index, message) -> {
+                });
+                friendships.clear();
+            }
+        }
+        userStorage.addFriends(friendships, (index, message) -> {
+        });
+    }
+
+    // Перед каждым замером — новый пользователь с degree друзьями
+    @Setup(Level.Invocation)
+    public void addHub() {
+        List<User> hub = newUsers(1, "hub" + System.nanoTime());
+        userStorage.addUsers(hub, (index, message) -> {
+            throw new IllegalStateException(message);
+        });
+        hubId = hub.get(0).getId();
+        List<FriendEdge> friendships = new ArrayList<>(degree);
+        for (int i = 0; i < degree; i++) {
+            friendships.add(new FriendEdge(hubId, (long) i * (USERS / degree) + 1));
+        }
+        userStorage.addFriends(friendships, (index, message) -> {
+        });
+    }
+
+    @Benchmark
+    public User removeHub() {
+        return userStorage.removeUser(hubId);
+    }
+
+    @Benchmark
+    public int compactWholeGraph() {
+        userStorage.removeUser(hubId);
+        return userStorage.removeDanglingFriends();
+    }
+
+    private static List<User> newUsers(int count, String prefix) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(new User(null, prefix + i + "@test.ru", prefix + i, null, LocalDate.of(1990, 1, 1)));
+        }
+        return users;
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    @Param({"10000", "100000"})
+    private int users;
+
+    @Param({"10", "1000"})
+    private int friendsPerUser;
+
+    private UserService userService;
+
+    @Setup
+    public void setUp() {
+        InMemoryUserStorage userStorage = new InMemoryUserStorage();
+        userService = new UserService(userStorage);
+        for (int i = 0; i < users; i++) {
+            userStorage.addUser(new User(null, "user" + i + "@test.ru", "user" + i, null, LocalDate.of(1990, 1, 1)));
+        }
+        Random random = new Random(42);
+        for (long userId = 1; userId <= users; userId++) {
+            for (int j = 0; j < friendsPerUser / 2; j++) {
+                long friendId = 1L + random.nextInt(users);
+                if (friendId != userId) {
+                    userStorage.addFriend(userId, friendId);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public List<User> getFriendsListOfUser() {
+        return userService.getFriendsListOfUser(randomUserId());
+    }
+
+    @Benchmark
+    public List<User> getCommonFriends() {
+        long first = randomUserId();
+        long second = first % users + 1;
+        return userService.getCommonFriends(first, second);
+    }
+
+    private long randomUserId() {
+        return 1L + ThreadLocalRandom.current().nextInt(users);
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Версии данных для кэша ответов и ETag. Каждое изменение берет новое значение общих часов и записывает его в слот
+// фильма или пользователя уже после того, как изменение применено. Ответ, собранный по состоянию на момент now(),
+// актуален, пока версии всех его зависимостей не больше этого момента. Слоты общие для ID с одинаковым хэшем:
+// совпадение дает лишний промах кэша, но не устаревший ответ, а память не растет с числом фильмов и пользователей
+@Component
+public class DataVersions {
+    private static final int SLOTS = 1 << 16;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLongArray films = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray users = new AtomicLongArray(SLOTS);
+    private final AtomicLong ranking = new AtomicLong();
+    // Момент последнего изменения, затронувшего неизвестно какие данные (очистка хранилища)
+    private final AtomicLong floor = new AtomicLong();
+    // Часы начинаются заново при каждом запуске, поэтому ETag включает случайный номер запуска:
+    // тег, выданный до перезапуска, не совпадет с тегом тех же версий после него
+    private final String instance = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+
+    public long now() {
+        return clock.get();
+    }
+
+    public void filmChanged(long filmId) {
+        films.accumulateAndGet(slot(filmId), clock.incrementAndGet(), Math::max);
+    }
+
+    public void userChanged(long userId) {
+        users.accumulateAndGet(slot(userId), clock.incrementAndGet(), Math::max);
+    }
+
+    public void rankingChanged() {
+        ranking.accumulateAndGet(clock.incrementAndGet(), Math::max);
+    }
+
+    public void allChanged() {
+        floor.accumulateAndGet(clock.incrementAndGet(), Math::max);
+    }
+
+    public long film(long filmId) {
+        return Math.max(films.get(slot(filmId)), floor.get());
+    }
+
+    public long user(long userId) {
+        return Math.max(users.get(slot(userId)), floor.get());
+    }
+
+    public long ranking() {
+        return Math.max(ranking.get(), floor.get());
+    }
+
+    // Сильный ETag ответа, собранного из данных с наибольшей версией version
+    public String etag(long version) {
+        return "\"" + instance + "-" + Long.toString(version, 36) + "\"";
+    }
+
+    private static int slot(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 48);
+    }
+}
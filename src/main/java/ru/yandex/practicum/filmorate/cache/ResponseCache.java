@@ -0,0 +1,289 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Кэш сериализованных ответов частых чтений (W-TinyLFU, размер ограничен суммой тел). Запись хранит момент,
+// по состоянию на который собран ответ, и ID данных, из которых он собран; при чтении она проверяется по DataVersions,
+// поэтому изменение отменяет ровно те ответы, в которые попали измененные фильмы, пользователи или рейтинг.
+// Те же версии дают ETag ответа, в том числе при выключенном кэше
+@Component
+public class ResponseCache {
+    private static final long[] NO_IDS = new long[0];
+    // Примерный размер ключа, записи и служебных полей Caffeine сверх тела ответа
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final ObjectMapper objectMapper;
+    private final DataVersions versions;
+    private final ResponseCacheProperties properties;
+    private final SingleFlight singleFlight;
+    private final Cache<Key, Entry> cache;
+    private final LongAdder evictions = new LongAdder();
+    private final Map<Endpoint, Map<Result, Counter>> requests = new EnumMap<>(Endpoint.class);
+
+    public ResponseCache(ObjectMapper objectMapper, DataVersions versions, ResponseCacheProperties properties,
+                         SingleFlight singleFlight, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.versions = versions;
+        this.properties = properties;
+        this.singleFlight = singleFlight;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxBytes())
+                .weigher((Key key, Entry entry) -> entry.body().length + ENTRY_OVERHEAD)
+                .evictionListener((key, entry, cause) -> evictions.increment())
+                .build();
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            bindMetrics(registry);
+        }
+    }
+
+    public ResponseEntity<byte[]> film(long filmId, String ifNoneMatch, Supplier<Film> loader) {
+        return get(new Key(Endpoint.FILM, filmId, 0), ifNoneMatch, loader,
+                film -> new Dependencies(false, new long[]{filmId}, NO_IDS));
+    }
+
+    // Состав и порядок зависят от рейтинга, содержимое — от самих фильмов
+    public ResponseEntity<byte[]> popular(long count, String ifNoneMatch, Supplier<List<Film>> loader) {
+        return get(new Key(Endpoint.POPULAR, count, 0), ifNoneMatch, loader,
+                films -> new Dependencies(true, filmIds(films), NO_IDS));
+    }
+
+    public ResponseEntity<byte[]> friends(long userId, String ifNoneMatch, Supplier<List<User>> loader) {
+        return get(new Key(Endpoint.FRIENDS, userId, 0), ifNoneMatch, loader,
+                friends -> new Dependencies(false, NO_IDS, userIds(friends, userId)));
+    }
+
+    public ResponseEntity<byte[]> commonFriends(long userId, long otherId, String ifNoneMatch,
+                                                Supplier<List<User>> loader) {
+        return get(new Key(Endpoint.COMMON_FRIENDS, userId, otherId), ifNoneMatch, loader,
+                friends -> new Dependencies(false, NO_IDS, userIds(friends, userId, otherId)));
+    }
+
+    // ETag — наибольшая версия данных, из которых собран ответ, поэтому 304 решается до сериализации,
+    // а для сохраненного ответа и без обращения к хранилищу
+    private <T> ResponseEntity<byte[]> get(Key key, String ifNoneMatch, Supplier<T> loader,
+                                          Function<T, Dependencies> dependencies) {
+        Entry entry = properties.isEnabled() ? cache.getIfPresent(key) : null;
+        if (entry != null) {
+            long version = entry.dependencies().version(versions);
+            if (version <= entry.stamp()) {
+                count(key.endpoint(), Result.HIT);
+                return respond(versions.etag(version), ifNoneMatch, entry.body());
+            }
+        }
+        if (properties.isEnabled()) {
+            count(key.endpoint(), entry == null ? Result.MISS : Result.STALE);
+        }
+        // Одновременные промахи по одному ключу собирают ответ один раз
+        long arrival = versions.now();
+        Built<T> built = singleFlight.execute(key.endpoint().tag, key, () -> build(loader, dependencies));
+        long version = built.dependencies().version(versions);
+        if (version > built.stamp() && built.stamp() < arrival) {
+            // Чужая сборка началась раньше этого запроса, а данные с тех пор менялись: ее результат мог устареть
+            built = build(loader, dependencies);
+            version = built.dependencies().version(versions);
+        }
+        if (version > built.stamp()) {
+            // Данные менялись, пока собирался ответ: его нельзя ни сохранить, ни пометить версией
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(built.body());
+        }
+        String etag = versions.etag(version);
+        if (matches(ifNoneMatch, etag)) {
+            return notModified(etag);
+        }
+        byte[] body = built.body();
+        if (properties.isEnabled() && body.length <= properties.getMaxEntryBytes()) {
+            cache.put(key, new Entry(body, built.stamp(), built.dependencies()));
+        }
+        return respond(etag, null, body);
+    }
+
+    // Момент берется до чтения данных: изменение, попавшее между ним и сохранением, отменит запись
+    private <T> Built<T> build(Supplier<T> loader, Function<T, Dependencies> dependencies) {
+        long stamp = versions.now();
+        T value = loader.get();
+        return new Built<>(value, dependencies.apply(value), stamp);
+    }
+
+    private static ResponseEntity<byte[]> respond(String etag, String ifNoneMatch, byte[] body) {
+        if (matches(ifNoneMatch, etag)) {
+            return notModified(etag);
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).eTag(etag).body(body);
+    }
+
+    private static ResponseEntity<byte[]> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+
+    // If-None-Match сравнивается слабо: W/ перед тегом не учитывается
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String candidate = tag.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void count(Endpoint endpoint, Result result) {
+        Map<Result, Counter> counters = requests.get(endpoint);
+        if (counters != null) {
+            counters.get(result).increment();
+        }
+    }
+
+    private void bindMetrics(MeterRegistry registry) {
+        for (Endpoint endpoint : Endpoint.values()) {
+            Map<Result, Counter> counters = new EnumMap<>(Result.class);
+            for (Result result : Result.values()) {
+                counters.put(result, Counter.builder("filmorate.response.cache.requests")
+                        .description("Обращения к кэшу ответов: hit — отдан сохраненный ответ, stale — запись "
+                                + "устарела после изменения данных, miss — записи не было")
+                        .tag("endpoint", endpoint.tag)
+                        .tag("result", result.tag)
+                        .register(registry));
+            }
+            requests.put(endpoint, counters);
+        }
+        FunctionCounter.builder("filmorate.response.cache.evictions", evictions, LongAdder::sum)
+                .description("Записи, вытесненные из кэша ответов по размеру")
+                .register(registry);
+        Gauge.builder("filmorate.response.cache.entries", cache, Cache::estimatedSize)
+                .description("Записи в кэше ответов")
+                .register(registry);
+        Gauge.builder("filmorate.response.cache.bytes", cache,
+                        c -> c.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+                .description("Суммарный размер записей кэша ответов")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private static long[] filmIds(Collection<Film> films) {
+        return films.stream().mapToLong(Film::getId).toArray();
+    }
+
+    private static long[] userIds(Collection<User> users, long... owners) {
+        long[] ids = new long[users.size() + owners.length];
+        int size = 0;
+        for (User user : users) {
+            ids[size++] = user.getId();
+        }
+        for (long owner : owners) {
+            ids[size++] = owner;
+        }
+        return ids;
+    }
+
+    private enum Endpoint {
+        FILM("film"),
+        POPULAR("popular"),
+        FRIENDS("friends"),
+        COMMON_FRIENDS("common_friends");
+
+        private final String tag;
+
+        Endpoint(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private enum Result {
+        HIT("hit"),
+        MISS("miss"),
+        STALE("stale");
+
+        private final String tag;
+
+        Result(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private record Key(Endpoint endpoint, long first, long second) {
+    }
+
+    // Собранный ответ сериализуется при первой необходимости и один раз на всех, кто его получил
+    private final class Built<T> {
+        private final T value;
+        private final Dependencies dependencies;
+        private final long stamp;
+        private byte[] body;
+
+        Built(T value, Dependencies dependencies, long stamp) {
+            this.value = value;
+            this.dependencies = dependencies;
+            this.stamp = stamp;
+        }
+
+        Dependencies dependencies() {
+            return dependencies;
+        }
+
+        long stamp() {
+            return stamp;
+        }
+
+        synchronized byte[] body() {
+            if (body == null) {
+                body = serialize(value);
+            }
+            return body;
+        }
+    }
+
+    private record Entry(byte[] body, long stamp, Dependencies dependencies) {
+    }
+
+    private record Dependencies(boolean ranking, long[] filmIds, long[] userIds) {
+
+        long version(DataVersions versions) {
+            long version = ranking ? versions.ranking() : 0;
+            for (long filmId : filmIds) {
+                version = Math.max(version, versions.film(filmId));
+            }
+            for (long userId : userIds) {
+                version = Math.max(version, versions.user(userId));
+            }
+            return version;
+        }
+    }
+}
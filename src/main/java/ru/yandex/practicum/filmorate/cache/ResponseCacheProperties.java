@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.response-cache")
+public class ResponseCacheProperties {
+    private boolean enabled = true;
+    // Предел суммарного размера сохраненных тел ответов, вытесняются редко запрашиваемые
+    private long maxBytes = 64L * 1024 * 1024;
+    // Ответы больше предела не кэшируются, чтобы один большой список не вытеснял множество мелких
+    private int maxEntryBytes = 1024 * 1024;
+}
@@ -0,0 +1,133 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Объединение одинаковых одновременных запросов: первый вычисляет результат, остальные с тем же ключом ждут его
+// не дольше maxWait, после чего считают сами. Ошибка первого достается и ожидающим. Результат не хранится:
+// следующий запрос после завершения вычисления начинает новое
+@Component
+public class SingleFlight {
+    private final SingleFlightProperties properties;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final Map<FlightKey, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+    private final Map<String, Meters> meters = new ConcurrentHashMap<>();
+
+    public SingleFlight(SingleFlightProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    // name — вид вычисления, по нему же делятся метрики; key различает вычисления одного вида
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String name, Object key, Supplier<T> supplier) {
+        if (!properties.isEnabled()) {
+            return supplier.get();
+        }
+        Meters flightMeters = meters(name);
+        FlightKey flightKey = new FlightKey(name, key);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = flights.putIfAbsent(flightKey, flight);
+        if (existing == null) {
+            flightMeters.leader();
+            try {
+                T result = supplier.get();
+                flight.complete(result);
+                return result;
+            } catch (RuntimeException | Error e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                flights.remove(flightKey, flight);
+            }
+        }
+        long startedAt = System.nanoTime();
+        try {
+            T result = (T) existing.get(properties.getMaxWait().toNanos(), TimeUnit.NANOSECONDS);
+            flightMeters.shared();
+            return result;
+        } catch (TimeoutException e) {
+            flightMeters.timeout();
+            return supplier.get();
+        } catch (ExecutionException e) {
+            flightMeters.shared();
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw (Error) e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание вычисления " + name + " прервано", e);
+        } finally {
+            flightMeters.recordWait(System.nanoTime() - startedAt);
+        }
+    }
+
+    private Meters meters(String name) {
+        return meters.computeIfAbsent(name, flightName -> new Meters(flightName, meterRegistry.getIfAvailable()));
+    }
+
+    private record FlightKey(String name, Object key) {
+    }
+
+    private static final class Meters {
+        private final Counter leaders;
+        private final Counter shared;
+        private final Counter timeouts;
+        private final Timer wait;
+
+        Meters(String name, MeterRegistry registry) {
+            leaders = registry == null ? null : counter(registry, name, "leader");
+            shared = registry == null ? null : counter(registry, name, "shared");
+            timeouts = registry == null ? null : counter(registry, name, "timeout");
+            wait = registry == null ? null : Timer.builder("filmorate.single.flight.wait")
+                    .description("Ожидание чужого вычисления")
+                    .tag("name", name)
+                    .register(registry);
+        }
+
+        private static Counter counter(MeterRegistry registry, String name, String result) {
+            return Counter.builder("filmorate.single.flight.calls")
+                    .description("Запросы к объединяемым вычислениям: leader — вычислил сам, shared — получил "
+                            + "чужой результат, timeout — не дождался и вычислил сам")
+                    .tag("name", name)
+                    .tag("result", result)
+                    .register(registry);
+        }
+
+        void leader() {
+            increment(leaders);
+        }
+
+        void shared() {
+            increment(shared);
+        }
+
+        void timeout() {
+            increment(timeouts);
+        }
+
+        private static void increment(Counter counter) {
+            if (counter != null) {
+                counter.increment();
+            }
+        }
+
+        void recordWait(long nanos) {
+            if (wait != null) {
+                wait.record(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.single-flight")
+public class SingleFlightProperties {
+    private boolean enabled = true;
+    // Сколько запрос ждет чужое вычисление, прежде чем посчитать сам
+    private Duration maxWait = Duration.ofSeconds(2);
+}
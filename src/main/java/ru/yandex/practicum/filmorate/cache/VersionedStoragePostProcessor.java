@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+// Подменяет бины хранилищ прокси, которые поднимают версии данных после изменений. Так версии видят и изменения
+// из сервисов, и прямые вызовы хранилищ из контроллеров и фоновых задач
+@Component
+public class VersionedStoragePostProcessor implements BeanPostProcessor {
+    private final ObjectProvider<DataVersions> dataVersions;
+
+    public VersionedStoragePostProcessor(ObjectProvider<DataVersions> dataVersions) {
+        this.dataVersions = dataVersions;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof FilmStorage filmStorage) {
+            return VersionedStorageProxy.wrap(FilmStorage.class, filmStorage, dataVersions.getObject());
+        }
+        if (bean instanceof UserStorage userStorage) {
+            return VersionedStorageProxy.wrap(UserStorage.class, userStorage, dataVersions.getObject());
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,214 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendEdge;
+import ru.yandex.practicum.filmorate.model.LikeEdge;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.BatchErrors;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Прокси над интерфейсом хранилища: после каждого изменяющего метода поднимает версии затронутых данных.
+// Версии поднимаются и при исключении — часть изменений могла примениться. Каждый метод интерфейса описан
+// в CHANGES, читающие — пустым действием: для нового метода wrap откажется создавать прокси, пока его не опишут
+final class VersionedStorageProxy implements InvocationHandler {
+    private static final Change READ_ONLY = (versions, args, result) -> {
+    };
+    private static final Map<Method, Change> CHANGES = changes();
+
+    private final Object target;
+    private final DataVersions versions;
+
+    private VersionedStorageProxy(Object target, DataVersions versions) {
+        this.target = target;
+        this.versions = versions;
+    }
+
+    static <T> T wrap(Class<T> type, T target, DataVersions versions) {
+        List<String> unhandled = unhandledMethods(type);
+        if (!unhandled.isEmpty()) {
+            throw new IllegalStateException("Не описано, какие версии поднимают методы " + type.getSimpleName()
+                    + ": " + unhandled);
+        }
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new VersionedStorageProxy(target, versions)));
+    }
+
+    static List<String> unhandledMethods(Class<?> type) {
+        return Arrays.stream(type.getMethods())
+                .filter(method -> !CHANGES.containsKey(method))
+                .map(Method::toGenericString)
+                .toList();
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Object result = null;
+        try {
+            result = method.invoke(target, args);
+            return result;
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        } finally {
+            // Методы Object (toString, hashCode) ничего не меняют
+            CHANGES.getOrDefault(method, READ_ONLY).apply(versions, args, result);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Method, Change> changes() {
+        Map<Method, Change> changes = new HashMap<>();
+        for (Method method : List.of(
+                method(FilmStorage.class, "getAllFilm"),
+                method(FilmStorage.class, "getFilmsPage", long.class, int.class),
+                method(FilmStorage.class, "exportFilms", Consumer.class),
+                method(FilmStorage.class, "getFilmById", Long.class),
+                method(FilmStorage.class, "getFilmsByIds", Collection.class),
+                method(FilmStorage.class, "getFilmsLikedBy", Long.class),
+                method(FilmStorage.class, "getMostPopularFilms", int.class),
+                method(FilmStorage.class, "searchFilms", String.class, int.class),
+                method(FilmStorage.class, "findFilms", LocalDate.class, LocalDate.class, Long.class, Long.class,
+                        long.class, int.class),
+                method(FilmStorage.class, "size"),
+                method(FilmStorage.class, "likeCount"),
+                method(FilmStorage.class, "popularCount"),
+                method(UserStorage.class, "getAllUsers"),
+                method(UserStorage.class, "getUsersPage", long.class, int.class),
+                method(UserStorage.class, "exportUsers", Consumer.class),
+                method(UserStorage.class, "getUserById", Long.class),
+                method(UserStorage.class, "getUsersByIds", Collection.class),
+                method(UserStorage.class, "containsUser", Long.class),
+                method(UserStorage.class, "size"),
+                method(UserStorage.class, "friendLinkCount"))) {
+            changes.put(method, READ_ONLY);
+        }
+
+        changes.put(method(FilmStorage.class, "addFilm", Film.class), (versions, args, result) -> {
+            if (result instanceof Film film) {
+                filmChanged(versions, film.getId());
+            }
+            versions.rankingChanged();
+        });
+        changes.put(method(FilmStorage.class, "addFilms", List.class, BatchErrors.class), (versions, args, result) -> {
+            for (Film film : (List<Film>) args[0]) {
+                filmChanged(versions, film.getId());
+            }
+            versions.rankingChanged();
+        });
+        changes.put(method(FilmStorage.class, "updateFilm", Film.class), (versions, args, result) -> {
+            filmChanged(versions, ((Film) args[0]).getId());
+            versions.rankingChanged();
+        });
+        changes.put(method(FilmStorage.class, "removeFilm", Long.class), (versions, args, result) -> {
+            filmChanged(versions, (Long) args[0]);
+            versions.rankingChanged();
+        });
+        // false — лайк уже был (или его не было), фильм не изменился
+        Change like = (versions, args, result) -> {
+            if (!Boolean.FALSE.equals(result)) {
+                filmChanged(versions, (Long) args[0]);
+                versions.rankingChanged();
+            }
+        };
+        changes.put(method(FilmStorage.class, "addLike", Long.class, Long.class), like);
+        changes.put(method(FilmStorage.class, "removeLike", Long.class, Long.class), like);
+        changes.put(method(FilmStorage.class, "addLikes", List.class, BatchErrors.class), (versions, args, result) -> {
+            for (LikeEdge edge : (List<LikeEdge>) args[0]) {
+                filmChanged(versions, edge.filmId());
+            }
+            versions.rankingChanged();
+        });
+        changes.put(method(FilmStorage.class, "removeLikesOf", Long.class), (versions, args, result) -> {
+            if (result instanceof long[] filmIds) {
+                for (long filmId : filmIds) {
+                    versions.filmChanged(filmId);
+                }
+                versions.rankingChanged();
+            } else {
+                versions.allChanged();
+            }
+        });
+        changes.put(method(FilmStorage.class, "clear"), (versions, args, result) -> versions.allChanged());
+
+        changes.put(method(UserStorage.class, "addUser", User.class), (versions, args, result) -> {
+            if (result instanceof User user) {
+                userChanged(versions, user.getId());
+            }
+        });
+        changes.put(method(UserStorage.class, "addUsers", List.class, BatchErrors.class), (versions, args, result) -> {
+            for (User user : (List<User>) args[0]) {
+                userChanged(versions, user.getId());
+            }
+        });
+        changes.put(method(UserStorage.class, "updateUser", User.class),
+                (versions, args, result) -> userChanged(versions, ((User) args[0]).getId()));
+        // Удаление снимает пользователя из множеств друзей: меняются и бывшие друзья. Удаленный пользователь
+        // возвращается со своим множеством друзей; при исключении хранилище ничего не удалило
+        changes.put(method(UserStorage.class, "removeUser", Long.class), (versions, args, result) -> {
+            userChanged(versions, (Long) args[0]);
+            if (result instanceof User removed) {
+                removed.getFriendsId().forEachId(versions::userChanged);
+            }
+        });
+        Change friendship = (versions, args, result) -> {
+            userChanged(versions, (Long) args[0]);
+            userChanged(versions, (Long) args[1]);
+        };
+        changes.put(method(UserStorage.class, "addFriend", Long.class, Long.class), friendship);
+        changes.put(method(UserStorage.class, "removeFriend", Long.class, Long.class), friendship);
+        changes.put(method(UserStorage.class, "addFriends", List.class, BatchErrors.class),
+                (versions, args, result) -> {
+                    for (FriendEdge edge : (List<FriendEdge>) args[0]) {
+                        userChanged(versions, edge.userId());
+                        userChanged(versions, edge.friendId());
+                    }
+                });
+        // Неизвестно, чьи множества друзей изменились
+        changes.put(method(UserStorage.class, "removeDanglingFriends"), (versions, args, result) -> {
+            if (!(result instanceof Integer removed) || removed > 0) {
+                versions.allChanged();
+            }
+        });
+        changes.put(method(UserStorage.class, "clear"), (versions, args, result) -> versions.allChanged());
+        return Map.copyOf(changes);
+    }
+
+    private static Method method(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Метод " + type.getSimpleName() + "." + name + " не найден", e);
+        }
+    }
+
+    // ID может отсутствовать у отклоненного запроса, тогда менять нечего
+    private static void filmChanged(DataVersions versions, Long filmId) {
+        if (filmId != null) {
+            versions.filmChanged(filmId);
+        }
+    }
+
+    private static void userChanged(DataVersions versions, Long userId) {
+        if (userId != null) {
+            versions.userChanged(userId);
+        }
+    }
+
+    // Какие версии поднять после вызова; result — null, если метод бросил исключение
+    @FunctionalInterface
+    private interface Change {
+        void apply(DataVersions versions, Object[] args, Object result);
+    }
+}
@@ -0,0 +1,138 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import ru.yandex.practicum.filmorate.model.ImportResult;
+import ru.yandex.practicum.filmorate.storage.BatchErrors;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+// Импорт из массива JSON или NDJSON: элементы читаются из потока по одному, проверяются
+// и передаются в хранилище пачками по CHUNK_SIZE; ошибки копятся по позициям элементов запроса
+final class BatchImport {
+    static final int CHUNK_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private BatchImport() {
+    }
+
+    // idOf — ID, выданный элементу после вставки, null для связей
+    static <T> ImportResult read(ObjectMapper objectMapper, Validator validator, InputStream body, Class<T> type,
+                                 ToLongFunction<T> idOf, BiConsumer<List<T>, BatchErrors> sink) throws IOException {
+        Report report = new Report(idOf != null);
+        List<T> chunk = new ArrayList<>(CHUNK_SIZE);
+        int[] positions = new int[CHUNK_SIZE];
+        int index = 0;
+        try (MappingIterator<T> items = objectMapper.readerFor(type).readValues(body)) {
+            while (items.hasNextValue()) {
+                T item;
+                try {
+                    item = items.nextValue();
+                } catch (JsonMappingException e) {
+                    report.reject(index++, e.getOriginalMessage());
+                    continue;
+                }
+                int position = index++;
+                String violation = validate(validator, item);
+                if (violation != null) {
+                    report.reject(position, violation);
+                    continue;
+                }
+                positions[chunk.size()] = position;
+                chunk.add(item);
+                if (chunk.size() == CHUNK_SIZE) {
+                    flush(chunk, positions, idOf, sink, report);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // Дальше поток не разобрать: прочитанные элементы применяются, остальные отбрасываются
+            report.reject(index, "Некорректный JSON, импорт остановлен: " + e.getOriginalMessage());
+        }
+        flush(chunk, positions, idOf, sink, report);
+        return report.result();
+    }
+
+    private static <T> String validate(Validator validator, T item) {
+        if (item == null) {
+            return "Элемент не может быть null";
+        }
+        Set<ConstraintViolation<T>> violations = validator.validate(item);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private static <T> void flush(List<T> chunk, int[] positions, ToLongFunction<T> idOf,
+                                  BiConsumer<List<T>, BatchErrors> sink, Report report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        boolean[] rejected = new boolean[chunk.size()];
+        sink.accept(chunk, (index, message) -> {
+            rejected[index] = true;
+            report.reject(positions[index], message);
+        });
+        for (int i = 0; i < chunk.size(); i++) {
+            if (!rejected[i]) {
+                report.imported(positions[i], idOf == null ? 0 : idOf.applyAsLong(chunk.get(i)));
+            }
+        }
+        chunk.clear();
+    }
+
+    private static final class Report {
+        private final List<ImportResult.ItemError> errors = new ArrayList<>();
+        private long[] ids;
+        private int size;
+        private int imported;
+        private int failed;
+
+        private Report(boolean withIds) {
+            this.ids = withIds ? new long[CHUNK_SIZE] : null;
+        }
+
+        private void imported(int position, long id) {
+            imported++;
+            track(position);
+            if (ids != null) {
+                ids[position] = id;
+            }
+        }
+
+        private void reject(int position, String message) {
+            failed++;
+            track(position);
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportResult.ItemError(position, message));
+            }
+        }
+
+        private void track(int position) {
+            size = Math.max(size, position + 1);
+            if (ids != null && position >= ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(ids.length * 2, position + 1));
+            }
+        }
+
+        private ImportResult result() {
+            errors.sort((first, second) -> Integer.compare(first.index(), second.index()));
+            return new ImportResult(imported, failed, ids == null ? null : Arrays.copyOf(ids, size), errors);
+        }
+    }
+}
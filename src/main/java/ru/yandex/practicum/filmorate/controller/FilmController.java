@@ -1,20 +1,39 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.ImportResult;
+import ru.yandex.practicum.filmorate.model.LikeEdge;
+import ru.yandex.practicum.filmorate.model.Page;
 
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.cache.ResponseCache;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.TrendingFilmsService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -24,16 +43,64 @@ import java.util.List;
 @RequiredArgsConstructor
 public class FilmController {
     private final FilmService filmService;
+    private final TrendingFilmsService trendingFilmsService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ResponseCache responseCache;
 
     @GetMapping
-    public ResponseEntity<List<Film>> getAllFilms() {
-        List<Film> films = filmService.getFilmStorage().getAllFilm();
+    public ResponseEntity<List<Film>> getAllFilms(@RequestParam(name = "releasedFrom", required = false)
+                                                  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate releasedFrom,
+                                                  @RequestParam(name = "releasedTo", required = false)
+                                                  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate releasedTo,
+                                                  @RequestParam(name = "minDuration", required = false)
+                                                  @PositiveOrZero(message = "minDuration не может быть отрицательным")
+                                                  @Valid Long minDuration,
+                                                  @RequestParam(name = "maxDuration", required = false)
+                                                  @PositiveOrZero(message = "maxDuration не может быть отрицательным")
+                                                  @Valid Long maxDuration,
+                                                  @RequestParam(name = "after", required = false)
+                                                  @PositiveOrZero(message = "after не может быть отрицательным")
+                                                  @Valid Long afterId) {
+        boolean filtered = releasedFrom != null || releasedTo != null || minDuration != null || maxDuration != null
+                || afterId != null;
+        List<Film> films = filtered
+                ? filmService.getFilmStorage().findFilms(releasedFrom, releasedTo, minDuration, maxDuration,
+                        afterId == null ? 0 : afterId, Integer.MAX_VALUE)
+                : filmService.getFilmStorage().getAllFilm();
         if (films.isEmpty()) {
             return ResponseEntity.noContent().build();
         }
         return ResponseEntity.ok().body(films);
     }
 
+    @GetMapping(params = "limit")
+    public Page<Film> getFilmsPage(@RequestParam(name = "limit")
+                                   @Positive(message = "limit должен быть больше 0")
+                                   @Max(value = 1000, message = "limit не может быть больше 1000")
+                                   @Valid Integer limit,
+                                   @RequestParam(name = "after", defaultValue = "0")
+                                   @PositiveOrZero(message = "after не может быть отрицательным")
+                                   @Valid Long afterId,
+                                   @RequestParam(name = "releasedFrom", required = false)
+                                   @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate releasedFrom,
+                                   @RequestParam(name = "releasedTo", required = false)
+                                   @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate releasedTo,
+                                   @RequestParam(name = "minDuration", required = false)
+                                   @PositiveOrZero(message = "minDuration не может быть отрицательным")
+                                   @Valid Long minDuration,
+                                   @RequestParam(name = "maxDuration", required = false)
+                                   @PositiveOrZero(message = "maxDuration не может быть отрицательным")
+                                   @Valid Long maxDuration) {
+        return filmService.findFilmsPage(releasedFrom, releasedTo, minDuration, maxDuration, afterId, limit);
+    }
+
+    @GetMapping(value = "/export", produces = NdjsonExport.NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportFilms(@RequestHeader(name = HttpHeaders.ACCEPT_ENCODING,
+                                                                            required = false) String acceptEncoding) {
+        return NdjsonExport.<Film>stream(objectMapper, acceptEncoding, filmService.getFilmStorage()::exportFilms);
+    }
+
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public ResponseEntity<Film> addFilm(@Valid @RequestBody Film film) {
@@ -42,6 +109,17 @@ public class FilmController {
         return ResponseEntity.created(location).body(savedFilm);
     }
 
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE, NdjsonExport.NDJSON})
+    public ImportResult importFilms(InputStream body) throws IOException {
+        return BatchImport.read(objectMapper, validator, body, Film.class, Film::getId,
+                filmService.getFilmStorage()::addFilms);
+    }
+
+    @PostMapping(value = "/likes/import", consumes = {MediaType.APPLICATION_JSON_VALUE, NdjsonExport.NDJSON})
+    public ImportResult importLikes(InputStream body) throws IOException {
+        return BatchImport.read(objectMapper, validator, body, LikeEdge.class, null, filmService::importLikes);
+    }
+
     @PutMapping
     @ResponseStatus(HttpStatus.OK)
     public Film updateFilm(@Valid @RequestBody Film updatedFilm) {
@@ -49,11 +127,13 @@ public class FilmController {
     }
 
     @GetMapping("/{id}")
-    public Film getFilm(@PathVariable("id")
-                        @NotNull(message = "id не может быть null")
-                        @Min(value = 1, message = "id должен быть положительным целым числом")
-                        @Valid Long filmId) {
-        return filmService.getFilmStorage().getFilmById(filmId);
+    public ResponseEntity<byte[]> getFilm(@PathVariable("id")
+                                          @NotNull(message = "id не может быть null")
+                                          @Min(value = 1, message = "id должен быть положительным целым числом")
+                                          @Valid Long filmId,
+                                          @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false)
+                                          String ifNoneMatch) {
+        return responseCache.film(filmId, ifNoneMatch, () -> filmService.getFilmStorage().getFilmById(filmId));
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -81,9 +161,36 @@ public class FilmController {
     }
 
     @GetMapping("/popular")
-    public List<Film> getMostPopularFilms(@RequestParam(name = "count", defaultValue = "10")
-                                          @Positive(message = "count должен быть больше 0")
-                                          @Valid Long mostPopularFilmCount) {
-        return filmService.getMostPopularFilms(mostPopularFilmCount);
+    public ResponseEntity<byte[]> getMostPopularFilms(@RequestParam(name = "count", defaultValue = "10")
+                                                      @Positive(message = "count должен быть больше 0")
+                                                      @Valid Long mostPopularFilmCount,
+                                                      @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                      String ifNoneMatch) {
+        return responseCache.popular(mostPopularFilmCount, ifNoneMatch,
+                () -> filmService.getMostPopularFilms(mostPopularFilmCount));
+    }
+
+    @GetMapping("/search")
+    public List<Film> searchFilms(@RequestParam(name = "q")
+                                  @NotBlank(message = "q не может быть пустым")
+                                  @Size(max = 200, message = "q не должен превышать 200 символов")
+                                  @Valid String query,
+                                  @RequestParam(name = "count", defaultValue = "20")
+                                  @Positive(message = "count должен быть больше 0")
+                                  @Max(value = 100, message = "count не может быть больше 100")
+                                  @Valid Integer count) {
+        return filmService.getFilmStorage().searchFilms(query, count);
+    }
+
+    @GetMapping("/trending")
+    public List<Film> getTrendingFilms(@RequestParam(name = "window", defaultValue = "24h")
+                                       @Pattern(regexp = "1h|24h|7d", message = "window должен быть 1h, 24h или 7d")
+                                       @Valid String window,
+                                       @RequestParam(name = "count", defaultValue = "10")
+                                       @Positive(message = "count должен быть больше 0")
+                                       @Max(value = TrendingFilmsService.MAX_COUNT,
+                                               message = "count не может быть больше 100")
+                                       @Valid Integer count) {
+        return trendingFilmsService.trending(TrendingFilmsService.Window.of(window), count);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+// Выгрузка в NDJSON прямо в поток ответа: одна запись — одна строка, gzip по Accept-Encoding
+final class NdjsonExport {
+    static final String NDJSON = "application/x-ndjson";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private NdjsonExport() {
+    }
+
+    static <T> ResponseEntity<StreamingResponseBody> stream(ObjectMapper objectMapper, String acceptEncoding,
+                                                            Consumer<Consumer<T>> source) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = output -> {
+            OutputStream target = gzip
+                    ? new GZIPOutputStream(output, BUFFER_SIZE)
+                    : new BufferedOutputStream(output, BUFFER_SIZE);
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(target);
+            generator.setRootValueSeparator(null);
+            source.accept(item -> {
+                try {
+                    writer.writeValue(generator, item);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            // Закрываем только после успешного обхода: при обрыве клиент не получит корректный конец gzip
+            generator.close();
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON));
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        return response.body(body);
+    }
+}
@@ -1,19 +1,39 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendEdge;
+import ru.yandex.practicum.filmorate.model.ImportResult;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.cache.ResponseCache;
+import ru.yandex.practicum.filmorate.cache.SingleFlight;
+import ru.yandex.practicum.filmorate.service.FilmRecommendationService;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.FriendRecommendationService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/users")
@@ -22,6 +42,13 @@ import java.util.List;
 @RequiredArgsConstructor
 public class UserController {
     private final UserService userService;
+    private final FilmService filmService;
+    private final FriendRecommendationService friendRecommendationService;
+    private final FilmRecommendationService filmRecommendationService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ResponseCache responseCache;
+    private final SingleFlight singleFlight;
 
     @GetMapping("/{id}")
     public User getUser(@PathVariable("id")
@@ -40,12 +67,31 @@ public class UserController {
         return ResponseEntity.ok().body(users);
     }
 
+    @GetMapping(params = "limit")
+    public Page<User> getUsersPage(@RequestParam(name = "limit")
+                                   @Positive(message = "limit должен быть больше 0")
+                                   @Max(value = 1000, message = "limit не может быть больше 1000")
+                                   @Valid Integer limit,
+                                   @RequestParam(name = "after", defaultValue = "0")
+                                   @PositiveOrZero(message = "after не может быть отрицательным")
+                                   @Valid Long afterId) {
+        return userService.getUsersPage(afterId, limit);
+    }
+
+    @GetMapping(value = "/export", produces = NdjsonExport.NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestHeader(name = HttpHeaders.ACCEPT_ENCODING,
+                                                                            required = false) String acceptEncoding) {
+        return NdjsonExport.<User>stream(objectMapper, acceptEncoding, userService.getUserStorage()::exportUsers);
+    }
+
     @GetMapping("/{id}/friends")
-    public List<User> getFriendsListOfUser(@PathVariable("id")
-                                           @NotNull(message = "id не может быть null")
-                                           @Min(value = 1, message = "id должен быть положительным целым числом")
-                                           @Valid Long userId) {
-        return userService.getFriendsListOfUser(userId);
+    public ResponseEntity<byte[]> getFriendsListOfUser(@PathVariable("id")
+                                                       @NotNull(message = "id не может быть null")
+                                                       @Min(value = 1, message = "id должен быть положительным целым числом")
+                                                       @Valid Long userId,
+                                                       @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                       String ifNoneMatch) {
+        return responseCache.friends(userId, ifNoneMatch, () -> userService.getFriendsListOfUser(userId));
     }
 
 
@@ -57,6 +103,18 @@ public class UserController {
         return ResponseEntity.created(location).body(savedUser);
     }
 
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE, NdjsonExport.NDJSON})
+    public ImportResult importUsers(InputStream body) throws IOException {
+        return BatchImport.read(objectMapper, validator, body, User.class, User::getId,
+                userService.getUserStorage()::addUsers);
+    }
+
+    @PostMapping(value = "/friends/import", consumes = {MediaType.APPLICATION_JSON_VALUE, NdjsonExport.NDJSON})
+    public ImportResult importFriends(InputStream body) throws IOException {
+        return BatchImport.read(objectMapper, validator, body, FriendEdge.class, null,
+                userService.getUserStorage()::addFriends);
+    }
+
     @PutMapping
     @ResponseStatus(HttpStatus.OK)
     public User updateUser(@Valid @RequestBody User updateUser) {
@@ -87,16 +145,75 @@ public class UserController {
         return userService.removeFriend(userId, removedFriendsId);
     }
 
+    @DeleteMapping("/{id}")
+    public User removeUser(@PathVariable("id")
+                           @NotNull(message = "id не может быть null")
+                           @Min(value = 1, message = "id должен быть положительным целым числом")
+                           @Valid Long userId) {
+        return filmService.removeUser(userId);
+    }
+
+    @GetMapping("/{id}/likes")
+    public List<Film> getLikedFilms(@PathVariable("id")
+                                    @NotNull(message = "id не может быть null")
+                                    @Min(value = 1, message = "id должен быть положительным целым числом")
+                                    @Valid Long userId) {
+        return filmService.getLikedFilms(userId);
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public List<User> getFriendRecommendations(@PathVariable("id")
+                                               @NotNull(message = "id не может быть null")
+                                               @Min(value = 1, message = "id должен быть положительным целым числом")
+                                               @Valid Long userId,
+                                               @RequestParam(name = "count", defaultValue = "10")
+                                               @Positive(message = "count должен быть больше 0")
+                                               @Max(value = FriendRecommendationService.MAX_COUNT,
+                                                       message = "count не может быть больше 100")
+                                               @Valid Integer count) {
+        return singleFlight.execute("friend_recommendations", List.of(userId, count),
+                () -> friendRecommendationService.recommend(userId, count));
+    }
+
+    @GetMapping("/{id}/films/recommended")
+    public List<Film> getFilmRecommendations(@PathVariable("id")
+                                             @NotNull(message = "id не может быть null")
+                                             @Min(value = 1, message = "id должен быть положительным целым числом")
+                                             @Valid Long userId,
+                                             @RequestParam(name = "count", defaultValue = "10")
+                                             @Positive(message = "count должен быть больше 0")
+                                             @Max(value = FilmRecommendationService.MAX_COUNT,
+                                                     message = "count не может быть больше 100")
+                                             @Valid Integer count) {
+        return singleFlight.execute("film_recommendations", List.of(userId, count),
+                () -> filmRecommendationService.recommend(userId, count));
+    }
+
     @GetMapping("/{id}/friends/common/{otherId}")
-    public List<User> getCommonFriends(@PathVariable("id")
-                                       @NotNull(message = "id не может быть null")
-                                       @Min(value = 1, message = "id должен быть положительным целым числом")
-                                       @Valid Long userId,
-                                       @PathVariable("otherId")
-                                       @NotNull(message = "id не может быть null")
-                                       @Min(value = 1, message = "id должен быть положительным целым числом")
-                                       @Valid Long anotherUserId) {
-        return userService.getCommonFriends(userId, anotherUserId);
+    public ResponseEntity<byte[]> getCommonFriends(@PathVariable("id")
+                                                   @NotNull(message = "id не может быть null")
+                                                   @Min(value = 1, message = "id должен быть положительным целым числом")
+                                                   @Valid Long userId,
+                                                   @PathVariable("otherId")
+                                                   @NotNull(message = "id не может быть null")
+                                                   @Min(value = 1, message = "id должен быть положительным целым числом")
+                                                   @Valid Long anotherUserId,
+                                                   @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                   String ifNoneMatch) {
+        return responseCache.commonFriends(userId, anotherUserId, ifNoneMatch,
+                () -> userService.getCommonFriends(userId, anotherUserId));
+    }
+
+    @GetMapping("/{id}/friends/common/{otherId}/count")
+    public Map<String, Integer> countCommonFriends(@PathVariable("id")
+                                                   @NotNull(message = "id не может быть null")
+                                                   @Min(value = 1, message = "id должен быть положительным целым числом")
+                                                   @Valid Long userId,
+                                                   @PathVariable("otherId")
+                                                   @NotNull(message = "id не может быть null")
+                                                   @Min(value = 1, message = "id должен быть положительным целым числом")
+                                                   @Valid Long anotherUserId) {
+        return Map.of("count", userService.countCommonFriends(userId, anotherUserId));
     }
 
 }
@@ -1,5 +1,7 @@
 package ru.yandex.practicum.filmorate.error;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -9,6 +11,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.StorageException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 
 import java.util.Map;
@@ -17,10 +20,16 @@ import java.util.stream.Collectors;
 @Slf4j
 @RestControllerAdvice
 public class ErrorHandler {
+    private final MeterRegistry meterRegistry;
+
+    public ErrorHandler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, String> handleValidationExceptions(MethodArgumentNotValidException ex) {
+        count(ex);
         return ex.getBindingResult().getFieldErrors().stream()
                 .peek(error -> log.warn("VALIDATION_ERROR: field '{}' — {}", error.getField(), error.getDefaultMessage()))
                 .collect(Collectors.toMap(
@@ -33,6 +42,7 @@ public class ErrorHandler {
     @ExceptionHandler(IllegalArgumentException.class)
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public Map<String, String> handleIllegalArgumentException(IllegalArgumentException ex) {
+        count(ex);
         log.error("ILLEGAL_ARGUMENT_ERROR: source '{}', message: {}", ex.getMessage(), ex);
         return Map.of("error", ex.getMessage());
     }
@@ -40,6 +50,7 @@ public class ErrorHandler {
     @ExceptionHandler(ValidationException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, String> handleValidation(ValidationException ex) {
+        count(ex);
         log.warn("VALIDATION_ERROR: {}", ex.getMessage());
         return Map.of("error", ex.getMessage(), "details", "НЕКОРРЕКТНЫЕ ПАРАМЕТРЫ.");
     }
@@ -47,6 +58,7 @@ public class ErrorHandler {
     @ExceptionHandler(NotFoundException.class)
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public Map<String, String> handleNotFound(NotFoundException ex) {
+        count(ex);
         log.warn("NOT_FOUND_ID: {}", ex.getMessage());
         return Map.of("error", ex.getMessage(), "details", "ИСКОМЫЙ ОБЪЕКТ НЕ НАЙДЕН.");
     }
@@ -54,7 +66,24 @@ public class ErrorHandler {
     @ExceptionHandler(ConstraintViolationException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, String> handleConstraintViolation(final ConstraintViolationException ex) {
+        count(ex);
         log.warn("Constraint_Violation: {}", ex.getMessage());
         return Map.of("error", ex.getMessage(), "details", "ОШИБКА ВАЛИДАЦИИ ТЕЛА ЗАПРОСА");
     }
+
+    @ExceptionHandler(StorageException.class)
+    @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+    public Map<String, String> handleStorage(StorageException ex) {
+        count(ex);
+        log.error("STORAGE_ERROR: {}", ex.getMessage(), ex);
+        return Map.of("error", ex.getMessage(), "details", "ОШИБКА ЗАПИСИ В ХРАНИЛИЩЕ.");
+    }
+
+    private void count(Exception ex) {
+        Counter.builder("filmorate.errors")
+                .description("Ошибки, переведенные в ответ обработчиком")
+                .tag("exception", ex.getClass().getSimpleName())
+                .register(meterRegistry)
+                .increment();
+    }
 }
@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+// Ответ пишется клиенту напрямую, а в журнал копируются только первые limit байт тела.
+// Вывод через getWriter() не копируется: контроллеры и обработчик ошибок пишут через поток
+class CapturingResponseWrapper extends HttpServletResponseWrapper {
+    private final int limit;
+    private final ByteArrayOutputStream captured;
+    private ServletOutputStream outputStream;
+    private long bodySize;
+
+    CapturingResponseWrapper(HttpServletResponse response, int limit) {
+        super(response);
+        this.limit = limit;
+        this.captured = new ByteArrayOutputStream(Math.min(limit, 256));
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream == null) {
+            outputStream = new CapturingOutputStream(super.getOutputStream());
+        }
+        return outputStream;
+    }
+
+    String capturedBody() {
+        Charset charset = Charset.forName(getCharacterEncoding());
+        return HttpExchangeLoggingFilter.truncated(captured.toString(charset), bodySize, captured.size());
+    }
+
+    private void capture(byte[] bytes, int offset, int length) {
+        bodySize += length;
+        int room = limit - captured.size();
+        if (room > 0) {
+            captured.write(bytes, offset, Math.min(room, length));
+        }
+    }
+
+    private final class CapturingOutputStream extends ServletOutputStream {
+        private final ServletOutputStream delegate;
+
+        CapturingOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            bodySize++;
+            if (captured.size() < limit) {
+                captured.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            delegate.write(bytes, offset, length);
+            capture(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+}
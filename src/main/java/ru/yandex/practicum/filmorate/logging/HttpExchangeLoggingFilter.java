@@ -0,0 +1,161 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingRequestWrapper;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Журнал HTTP-обменов. Тела не буферизуются целиком: от запроса и ответа сохраняется не больше maxBodySize байт,
+// а в журнал они попадают только для ошибок и медленных запросов. Из остальных пишется доля sampleRate без тел.
+// Собственное время фильтра (обертки и запись в журнал, без обработки запроса) пишется в таймер filmorate.http.log
+@Slf4j
+@Component
+public class HttpExchangeLoggingFilter extends OncePerRequestFilter {
+    private final HttpLogProperties properties;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    public HttpExchangeLoggingFilter(HttpLogProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!properties.isEnabled()) {
+            return true;
+        }
+        String path = request.getRequestURI();
+        for (String pattern : properties.getExcludePaths()) {
+            if (pathMatcher.match(pattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long startedAt = System.nanoTime();
+        ContentCachingRequestWrapper requestWrapper = new ContentCachingRequestWrapper(request,
+                properties.getMaxBodySize());
+        CapturingResponseWrapper responseWrapper = new CapturingResponseWrapper(response,
+                properties.getMaxBodySize());
+        long setupNanos = System.nanoTime() - startedAt;
+        boolean failed = true;
+        try {
+            chain.doFilter(requestWrapper, responseWrapper);
+            failed = false;
+        } finally {
+            if (!failed && requestWrapper.isAsyncStarted()) {
+                // Потоковая выгрузка дописывает ответ после выхода из фильтра, обмен пишется по ее завершении.
+                // После onError и onTimeout контейнер еще вызывает onComplete: обмен пишется только один раз
+                AtomicBoolean completed = new AtomicBoolean();
+                requestWrapper.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        if (completed.compareAndSet(false, true)) {
+                            complete(requestWrapper, responseWrapper, startedAt, setupNanos, false);
+                        }
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                        if (completed.compareAndSet(false, true)) {
+                            complete(requestWrapper, responseWrapper, startedAt, setupNanos, true);
+                        }
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                        if (completed.compareAndSet(false, true)) {
+                            complete(requestWrapper, responseWrapper, startedAt, setupNanos, true);
+                        }
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                complete(requestWrapper, responseWrapper, startedAt, setupNanos, failed);
+            }
+        }
+    }
+
+    private void complete(ContentCachingRequestWrapper request, CapturingResponseWrapper response, long startedAt,
+                          long setupNanos, boolean failed) {
+        long completedAt = System.nanoTime();
+        long durationNanos = completedAt - startedAt;
+        // Исключение, вышедшее из цепочки, контейнер превратит в 500, а статус ответа еще не выставлен
+        int status = failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus();
+        String outcome;
+        if (status >= 400 || durationNanos >= properties.getSlowThreshold().toNanos()) {
+            outcome = "full";
+            log.warn("HTTP {} {} -> {} за {} мс, запрос: {}, ответ: {}", request.getMethod(), uri(request), status,
+                    TimeUnit.NANOSECONDS.toMillis(durationNanos), requestBody(request), response.capturedBody());
+        } else if (ThreadLocalRandom.current().nextDouble() < properties.getSampleRate()) {
+            outcome = "sampled";
+            log.info(LogMarkers.HOT_PATH, "HTTP {} {} -> {} за {} мс", request.getMethod(), uri(request), status,
+                    TimeUnit.NANOSECONDS.toMillis(durationNanos));
+        } else {
+            outcome = "skipped";
+        }
+        record(request, outcome, setupNanos + System.nanoTime() - completedAt);
+    }
+
+    private void record(HttpServletRequest request, String outcome, long overheadNanos) {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        // Шаблон пути вместо самого пути, чтобы ID не размножали временные ряды
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Timer.builder("filmorate.http.log")
+                .description("Накладные расходы журнала HTTP-обменов")
+                .tag("method", request.getMethod())
+                .tag("uri", pattern == null ? "UNKNOWN" : pattern.toString())
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(overheadNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static String uri(HttpServletRequest request) {
+        String query = request.getQueryString();
+        return query == null ? request.getRequestURI() : request.getRequestURI() + "?" + query;
+    }
+
+    private static String requestBody(ContentCachingRequestWrapper request) {
+        byte[] body = request.getContentAsByteArray();
+        String encoding = request.getCharacterEncoding();
+        Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+        return truncated(new String(body, charset), Math.max(request.getContentLengthLong(), body.length),
+                body.length);
+    }
+
+    static String truncated(String body, long bodySize, int capturedSize) {
+        if (bodySize <= capturedSize) {
+            return body;
+        }
+        return body + "... (сохранено " + capturedSize + " из " + bodySize + " байт)";
+    }
+}
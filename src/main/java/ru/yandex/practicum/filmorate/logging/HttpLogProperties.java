@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.http-log")
+public class HttpLogProperties {
+    private boolean enabled = true;
+    // Доля успешных быстрых запросов, для которых пишется строка без тел
+    private double sampleRate = 0.01;
+    // Запросы дольше порога пишутся полностью, как и ответы со статусом 400 и выше
+    private Duration slowThreshold = Duration.ofMillis(500);
+    // Сколько байт тела запроса и ответа сохраняется для журнала, остальное пропускается без копирования
+    private int maxBodySize = 4096;
+    private List<String> excludePaths = new ArrayList<>(List.of("/actuator/**"));
+}
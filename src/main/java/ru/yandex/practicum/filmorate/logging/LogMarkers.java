@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+public final class LogMarkers {
+    // События, которые пишутся на каждый изменяющий запрос: в log4j2.xml они проходят через BurstFilter,
+    // поэтому под нагрузкой в журнал попадает ограниченное число таких строк в секунду
+    public static final Marker HOT_PATH = MarkerFactory.getMarker("HOT_PATH");
+
+    private LogMarkers() {
+    }
+}
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+// Размеры данных читаются при каждом опросе метрик, поэтому хранилища отдают их из счетчиков, а не обходом
+@Component
+public class StorageGauges implements MeterBinder {
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+
+    public StorageGauges(FilmStorage filmStorage, UserStorage userStorage) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.films", filmStorage, FilmStorage::size)
+                .description("Фильмы в памяти и в холодном слое")
+                .register(registry);
+        Gauge.builder("filmorate.films.popular", filmStorage, FilmStorage::popularCount)
+                .description("Фильмы в рейтинге популярных")
+                .register(registry);
+        Gauge.builder("filmorate.likes", filmStorage, FilmStorage::likeCount)
+                .description("Лайки всех фильмов")
+                .register(registry);
+        Gauge.builder("filmorate.users", userStorage, UserStorage::size)
+                .description("Пользователи в памяти и в холодном слое")
+                .register(registry);
+        Gauge.builder("filmorate.friend.links", userStorage, UserStorage::friendLinkCount)
+                .description("Ссылки в множествах друзей, взаимная дружба учитывается дважды")
+                .register(registry);
+    }
+}
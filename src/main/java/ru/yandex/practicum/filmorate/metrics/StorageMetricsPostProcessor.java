@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+// Подменяет бины хранилищ прокси с таймерами. Реестр берется лениво: постпроцессор создается раньше него,
+// а в контексте без метрик хранилища остаются как есть
+@Component
+public class StorageMetricsPostProcessor implements BeanPostProcessor {
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public StorageMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof FilmStorage) && !(bean instanceof UserStorage)) {
+            return bean;
+        }
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry == null) {
+            return bean;
+        }
+        if (bean instanceof FilmStorage filmStorage) {
+            return TimedStorageProxy.wrap(FilmStorage.class, filmStorage, "films", registry);
+        }
+        return TimedStorageProxy.wrap(UserStorage.class, (UserStorage) bean, "users", registry);
+    }
+}
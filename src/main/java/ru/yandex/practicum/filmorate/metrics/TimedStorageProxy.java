@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Прокси над интерфейсом хранилища: каждый его метод замеряется своим таймером filmorate.storage.
+// Таймеры регистрируются заранее, поэтому на вызове остаются только поиск в неизменяемой карте и запись в таймер
+final class TimedStorageProxy implements InvocationHandler {
+    static final String TIMER = "filmorate.storage";
+
+    private final Object target;
+    private final Map<Method, Timer> timers = new HashMap<>();
+
+    private TimedStorageProxy(Object target, Class<?> type, String storage, MeterRegistry meterRegistry) {
+        this.target = target;
+        for (Method method : type.getMethods()) {
+            timers.put(method, Timer.builder(TIMER)
+                    .description("Время операций хранилища")
+                    .tag("storage", storage)
+                    .tag("method", method.getName())
+                    .register(meterRegistry));
+        }
+    }
+
+    static <T> T wrap(Class<T> type, T target, String storage, MeterRegistry meterRegistry) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new TimedStorageProxy(target, type, storage, meterRegistry)));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Timer timer = timers.get(method);
+        long startedAt = System.nanoTime();
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        } finally {
+            // Методы Object (toString, hashCode) не замеряются
+            if (timer != null) {
+                timer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
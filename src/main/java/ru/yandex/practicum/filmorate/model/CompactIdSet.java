@@ -0,0 +1,515 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntSupplier;
+import java.util.function.LongConsumer;
+
+// Множество ID без упаковки в Long: до ARRAY_LIMIT элементов — отсортированный long[],
+// дальше — Roaring-подобная структура из контейнеров по старшим 48 битам
+public class CompactIdSet extends AbstractSet<Long> {
+    static final int ARRAY_LIMIT = 1024;
+    private static final int MERGE_SKEW_LIMIT = 32;
+    private static final long[] EMPTY = new long[0];
+    private static final Object TIE_LOCK = new Object();
+
+    private long[] values = EMPTY;
+    private int size;
+    private long[] keys;
+    private Container[] containers;
+    private int containerCount;
+
+    public synchronized boolean add(long id) {
+        boolean added = keys == null ? addToArray(id) : addToContainers(id);
+        if (added) {
+            size++;
+            if (keys == null && size > ARRAY_LIMIT) {
+                convertToContainers();
+            }
+        }
+        return added;
+    }
+
+    public synchronized boolean remove(long id) {
+        boolean removed = keys == null ? removeFromArray(id) : removeFromContainers(id);
+        if (removed) {
+            size--;
+            if (keys != null && size <= ARRAY_LIMIT / 2) {
+                convertToArray();
+            }
+        }
+        return removed;
+    }
+
+    public synchronized boolean contains(long id) {
+        return containsLocked(id);
+    }
+
+    // Пересечение без промежуточных коллекций: обход всегда идет по меньшей стороне
+    public static void intersect(CompactIdSet first, CompactIdSet second, LongConsumer action) {
+        withBothLocked(first, second, () -> intersectLocked(first, second, action));
+    }
+
+    public static int intersectionSize(CompactIdSet first, CompactIdSet second) {
+        return withBothLocked(first, second, () -> intersectLocked(first, second, null));
+    }
+
+    private boolean containsLocked(long id) {
+        if (keys == null) {
+            return Arrays.binarySearch(values, 0, size, id) >= 0;
+        }
+        int index = Arrays.binarySearch(keys, 0, containerCount, high(id));
+        return index >= 0 && containers[index].contains(low(id));
+    }
+
+    public synchronized void forEachId(LongConsumer action) {
+        if (keys == null) {
+            for (int i = 0; i < size; i++) {
+                action.accept(values[i]);
+            }
+            return;
+        }
+        for (int i = 0; i < containerCount; i++) {
+            containers[i].forEach(keys[i], action);
+        }
+    }
+
+    // Текущее представление: проверяется в тестах на переходы между режимами
+    synchronized Layout layout() {
+        if (keys == null) {
+            return Layout.ARRAY;
+        }
+        for (int i = 0; i < containerCount; i++) {
+            if (containers[i].bitmap != null) {
+                return Layout.BITMAP;
+            }
+        }
+        return Layout.CONTAINERS;
+    }
+
+    public synchronized long[] toLongArray() {
+        if (keys == null) {
+            return Arrays.copyOf(values, size);
+        }
+        long[] result = new long[size];
+        int position = 0;
+        for (int i = 0; i < containerCount; i++) {
+            position = containers[i].copyTo(keys[i], result, position);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean add(Long id) {
+        return add(id.longValue());
+    }
+
+    @Override
+    public boolean remove(Object id) {
+        return id instanceof Long value && remove(value.longValue());
+    }
+
+    @Override
+    public boolean contains(Object id) {
+        return id instanceof Long value && contains(value.longValue());
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void clear() {
+        values = EMPTY;
+        size = 0;
+        keys = null;
+        containers = null;
+        containerCount = 0;
+    }
+
+    // Итерация идет по снимку, поэтому сериализация не конфликтует с параллельными изменениями
+    @Override
+    public Iterator<Long> iterator() {
+        long[] snapshot = toLongArray();
+        return new Iterator<>() {
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return position < snapshot.length;
+            }
+
+            @Override
+            public Long next() {
+                if (position >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+                return snapshot[position++];
+            }
+        };
+    }
+
+    private boolean addToArray(long id) {
+        int index = Arrays.binarySearch(values, 0, size, id);
+        if (index >= 0) {
+            return false;
+        }
+        int insertAt = -index - 1;
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(4, size + (size >> 1)));
+        }
+        System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+        values[insertAt] = id;
+        return true;
+    }
+
+    private boolean removeFromArray(long id) {
+        int index = Arrays.binarySearch(values, 0, size, id);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        return true;
+    }
+
+    private boolean addToContainers(long id) {
+        long key = high(id);
+        int index = Arrays.binarySearch(keys, 0, containerCount, key);
+        if (index < 0) {
+            index = -index - 1;
+            if (containerCount == keys.length) {
+                keys = Arrays.copyOf(keys, containerCount * 2);
+                containers = Arrays.copyOf(containers, containerCount * 2);
+            }
+            System.arraycopy(keys, index, keys, index + 1, containerCount - index);
+            System.arraycopy(containers, index, containers, index + 1, containerCount - index);
+            keys[index] = key;
+            containers[index] = new Container();
+            containerCount++;
+        }
+        return containers[index].add(low(id));
+    }
+
+    private boolean removeFromContainers(long id) {
+        int index = Arrays.binarySearch(keys, 0, containerCount, high(id));
+        if (index < 0 || !containers[index].remove(low(id))) {
+            return false;
+        }
+        if (containers[index].cardinality == 0) {
+            System.arraycopy(keys, index + 1, keys, index, containerCount - index - 1);
+            System.arraycopy(containers, index + 1, containers, index, containerCount - index - 1);
+            containers[--containerCount] = null;
+        }
+        return true;
+    }
+
+    private void convertToContainers() {
+        long[] sorted = Arrays.copyOf(values, size);
+        keys = new long[4];
+        containers = new Container[4];
+        containerCount = 0;
+        values = EMPTY;
+        for (long id : sorted) {
+            addToContainers(id);
+        }
+    }
+
+    private void convertToArray() {
+        values = toLongArray();
+        keys = null;
+        containers = null;
+        containerCount = 0;
+    }
+
+    private static int withBothLocked(CompactIdSet first, CompactIdSet second, IntSupplier body) {
+        if (first == second) {
+            synchronized (first) {
+                return body.getAsInt();
+            }
+        }
+        int firstHash = System.identityHashCode(first);
+        int secondHash = System.identityHashCode(second);
+        if (firstHash == secondHash) {
+            synchronized (TIE_LOCK) {
+                synchronized (first) {
+                    synchronized (second) {
+                        return body.getAsInt();
+                    }
+                }
+            }
+        }
+        CompactIdSet outer = firstHash < secondHash ? first : second;
+        CompactIdSet inner = outer == first ? second : first;
+        synchronized (outer) {
+            synchronized (inner) {
+                return body.getAsInt();
+            }
+        }
+    }
+
+    // action == null означает режим подсчета без обхода найденных элементов
+    private static int intersectLocked(CompactIdSet first, CompactIdSet second, LongConsumer action) {
+        CompactIdSet smaller = first.size <= second.size ? first : second;
+        CompactIdSet larger = smaller == first ? second : first;
+        if (smaller.size == 0) {
+            return 0;
+        }
+        if (smaller.keys == null && larger.keys == null) {
+            return larger.size / smaller.size >= MERGE_SKEW_LIMIT
+                    ? probeArray(smaller, larger, action)
+                    : mergeArrays(smaller, larger, action);
+        }
+        if (smaller.keys != null && larger.keys != null) {
+            return intersectContainers(smaller, larger, action);
+        }
+        CompactIdSet arraySide = smaller.keys == null ? smaller : larger;
+        CompactIdSet otherSide = arraySide == smaller ? larger : smaller;
+        int count = 0;
+        for (int i = 0; i < arraySide.size; i++) {
+            long id = arraySide.values[i];
+            if (otherSide.containsLocked(id)) {
+                count++;
+                if (action != null) {
+                    action.accept(id);
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int mergeArrays(CompactIdSet smaller, CompactIdSet larger, LongConsumer action) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < smaller.size && j < larger.size) {
+            long left = smaller.values[i];
+            long right = larger.values[j];
+            if (left < right) {
+                i++;
+            } else if (left > right) {
+                j++;
+            } else {
+                count++;
+                if (action != null) {
+                    action.accept(left);
+                }
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    // Сильный перекос размеров: бинарный поиск в большем массиве с сужающейся левой границей
+    private static int probeArray(CompactIdSet smaller, CompactIdSet larger, LongConsumer action) {
+        int count = 0;
+        int from = 0;
+        for (int i = 0; i < smaller.size && from < larger.size; i++) {
+            long id = smaller.values[i];
+            int index = Arrays.binarySearch(larger.values, from, larger.size, id);
+            if (index >= 0) {
+                count++;
+                if (action != null) {
+                    action.accept(id);
+                }
+                from = index + 1;
+            } else {
+                from = -index - 1;
+            }
+        }
+        return count;
+    }
+
+    private static int intersectContainers(CompactIdSet smaller, CompactIdSet larger, LongConsumer action) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < smaller.containerCount && j < larger.containerCount) {
+            long left = smaller.keys[i];
+            long right = larger.keys[j];
+            if (left < right) {
+                i++;
+            } else if (left > right) {
+                j++;
+            } else {
+                count += smaller.containers[i].intersect(left, larger.containers[j], action);
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private static long high(long id) {
+        return id >> 16;
+    }
+
+    private static char low(long id) {
+        return (char) id;
+    }
+
+    enum Layout {
+        ARRAY,
+        CONTAINERS,
+        BITMAP
+    }
+
+    // Контейнер младших 16 бит: отсортированный char[] до 4096 элементов, иначе битовая карта на 65536 бит
+    private static final class Container {
+        private static final int ARRAY_MAX = 4096;
+
+        private char[] array = new char[4];
+        private long[] bitmap;
+        private int cardinality;
+
+        boolean contains(char low) {
+            if (bitmap != null) {
+                return (bitmap[low >>> 6] & (1L << low)) != 0;
+            }
+            return Arrays.binarySearch(array, 0, cardinality, low) >= 0;
+        }
+
+        boolean add(char low) {
+            if (bitmap != null) {
+                long before = bitmap[low >>> 6];
+                bitmap[low >>> 6] = before | (1L << low);
+                if (before == bitmap[low >>> 6]) {
+                    return false;
+                }
+                cardinality++;
+                return true;
+            }
+            int index = Arrays.binarySearch(array, 0, cardinality, low);
+            if (index >= 0) {
+                return false;
+            }
+            if (cardinality == ARRAY_MAX) {
+                toBitmap();
+                return add(low);
+            }
+            int insertAt = -index - 1;
+            if (cardinality == array.length) {
+                array = Arrays.copyOf(array, Math.max(4, Math.min(ARRAY_MAX, cardinality * 2)));
+            }
+            System.arraycopy(array, insertAt, array, insertAt + 1, cardinality - insertAt);
+            array[insertAt] = low;
+            cardinality++;
+            return true;
+        }
+
+        boolean remove(char low) {
+            if (bitmap != null) {
+                long before = bitmap[low >>> 6];
+                bitmap[low >>> 6] = before & ~(1L << low);
+                if (before == bitmap[low >>> 6]) {
+                    return false;
+                }
+                cardinality--;
+                if (cardinality <= ARRAY_MAX / 2) {
+                    toArray();
+                }
+                return true;
+            }
+            int index = Arrays.binarySearch(array, 0, cardinality, low);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(array, index + 1, array, index, cardinality - index - 1);
+            cardinality--;
+            return true;
+        }
+
+        void forEach(long key, LongConsumer action) {
+            long base = key << 16;
+            if (bitmap == null) {
+                for (int i = 0; i < cardinality; i++) {
+                    action.accept(base | array[i]);
+                }
+                return;
+            }
+            for (int word = 0; word < bitmap.length; word++) {
+                long bits = bitmap[word];
+                while (bits != 0) {
+                    action.accept(base | ((long) word << 6) | Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        int intersect(long key, Container other, LongConsumer action) {
+            long base = key << 16;
+            int count = 0;
+            if (bitmap != null && other.bitmap != null) {
+                for (int word = 0; word < bitmap.length; word++) {
+                    long bits = bitmap[word] & other.bitmap[word];
+                    count += Long.bitCount(bits);
+                    while (action != null && bits != 0) {
+                        action.accept(base | ((long) word << 6) | Long.numberOfTrailingZeros(bits));
+                        bits &= bits - 1;
+                    }
+                }
+                return count;
+            }
+            Container probing = bitmap == null ? this : other;
+            Container probed = probing == this ? other : this;
+            if (probed.bitmap == null && probed.cardinality < probing.cardinality) {
+                Container swap = probing;
+                probing = probed;
+                probed = swap;
+            }
+            for (int i = 0; i < probing.cardinality; i++) {
+                char low = probing.array[i];
+                if (probed.contains(low)) {
+                    count++;
+                    if (action != null) {
+                        action.accept(base | low);
+                    }
+                }
+            }
+            return count;
+        }
+
+        int copyTo(long key, long[] target, int position) {
+            long base = key << 16;
+            if (bitmap == null) {
+                for (int i = 0; i < cardinality; i++) {
+                    target[position++] = base | array[i];
+                }
+                return position;
+            }
+            for (int word = 0; word < bitmap.length; word++) {
+                long bits = bitmap[word];
+                while (bits != 0) {
+                    target[position++] = base | ((long) word << 6) | Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                }
+            }
+            return position;
+        }
+
+        private void toBitmap() {
+            bitmap = new long[1024];
+            for (int i = 0; i < cardinality; i++) {
+                bitmap[array[i] >>> 6] |= 1L << array[i];
+            }
+            array = null;
+        }
+
+        private void toArray() {
+            char[] lows = new char[cardinality];
+            int position = 0;
+            for (int word = 0; word < bitmap.length; word++) {
+                long bits = bitmap[word];
+                while (bits != 0) {
+                    lows[position++] = (char) ((word << 6) | Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+            array = lows;
+            bitmap = null;
+        }
+    }
+}
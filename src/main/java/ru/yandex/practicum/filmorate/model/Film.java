@@ -4,13 +4,11 @@ import jakarta.validation.constraints.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import java.time.LocalDate;
-import java.util.HashSet;
-import java.util.Set;
 
 @Data
 @AllArgsConstructor
 public class Film {
-    private final Set<Long> filmLikedUsersId = new HashSet<>();
+    private final CompactIdSet filmLikedUsersId = new CompactIdSet();
     private Long id;
 
     @NotBlank(message = "Название фильма не может быть пустым")
@@ -27,12 +25,22 @@ public class Film {
     @Positive(message = "Продолжительность фильма должна быть положительным числом")
     private Long duration;
 
-    public void addLike(Long userId) {
-        filmLikedUsersId.add(userId);
+    // true, если множество лайков изменилось
+    public boolean addLike(Long userId) {
+        return filmLikedUsersId.add(userId);
     }
 
-    public void removeLike(Long userId) {
-        filmLikedUsersId.remove(userId);
+    public boolean removeLike(Long userId) {
+        return filmLikedUsersId.remove(userId);
+    }
+
+    // Независимая копия: последующие изменения оригинала на нее не влияют
+    public Film copy() {
+        Film copy = new Film(id, name, description, releaseDate, duration);
+        for (long likedUserId : filmLikedUsersId.toLongArray()) {
+            copy.filmLikedUsersId.add(likedUserId);
+        }
+        return copy;
     }
 
 }
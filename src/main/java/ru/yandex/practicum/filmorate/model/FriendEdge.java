@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.model;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+// Дружба при пакетном импорте, добавляется в обе стороны
+public record FriendEdge(@NotNull(message = "userId обязателен")
+                         @Positive(message = "userId должен быть положительным целым числом") Long userId,
+                         @NotNull(message = "friendId обязателен")
+                         @Positive(message = "friendId должен быть положительным целым числом") Long friendId) {
+}
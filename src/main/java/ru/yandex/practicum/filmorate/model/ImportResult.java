@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+// ids[i] — ID, выданный i-му элементу запроса, или 0, если элемент не импортирован; для связей ids нет.
+// В errors попадают только первые ошибки, failed считает все
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ImportResult(int imported, int failed, long[] ids, List<ItemError> errors) {
+
+    public record ItemError(int index, String error) {
+    }
+}
@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.model;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+// Лайк при пакетном импорте
+public record LikeEdge(@NotNull(message = "filmId обязателен")
+                       @Positive(message = "filmId должен быть положительным целым числом") Long filmId,
+                       @NotNull(message = "userId обязателен")
+                       @Positive(message = "userId должен быть положительным целым числом") Long userId) {
+}
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.List;
+
+// Страница выдачи по ID; nextCursor передается в параметре after следующего запроса, null — страниц больше нет
+public record Page<T>(List<T> items, Long nextCursor) {
+}
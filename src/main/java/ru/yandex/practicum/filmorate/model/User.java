@@ -5,13 +5,11 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 
 import java.time.LocalDate;
-import java.util.HashSet;
-import java.util.Set;
 
 @Data
 @AllArgsConstructor
 public class User {
-    private final Set<Long> friendsId = new HashSet<>();
+    private final CompactIdSet friendsId = new CompactIdSet();
     private Long id;
 
     @NotBlank(message = "Электронная почта не может быть пустой")
@@ -35,4 +33,13 @@ public class User {
     public void removeFriend(Long removedFriendsId) {
         friendsId.remove(removedFriendsId);
     }
+
+    // Независимая копия: последующие изменения оригинала на нее не влияют
+    public User copy() {
+        User copy = new User(id, email, login, name, birthday);
+        for (long friendId : friendsId.toLongArray()) {
+            copy.friendsId.add(friendId);
+        }
+        return copy;
+    }
 }
@@ -0,0 +1,267 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.CompactIdSet;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.LongStream;
+
+// Item-based коллаборативная фильтрация: для каждого фильма хранятся самые похожие по коэффициенту Жаккара
+// множеств лайкнувших, а рекомендация пользователю — сумма схожестей соседей лайкнутых им фильмов.
+// Модель строится при первом запросе, дальше лайки только помечают затронутые фильмы для фонового пересчета
+@Service
+@Slf4j
+public class FilmRecommendationService implements LikeListener {
+    public static final int MAX_COUNT = 100;
+    // Схожесть хранится целым числом: коэффициент Жаккара, умноженный на SCALE
+    private static final int SCALE = 10_000;
+
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final RecommendationProperties.Films properties;
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    // Фильмы, лайкнутые каждым пользователем, и число лайков фильма; счетчик меняется только вместе с множеством,
+    // поэтому повторное применение того же события ничего не портит
+    private final Map<Long, CompactIdSet> likedFilms = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> likeCounts = new ConcurrentHashMap<>();
+    private final Map<Long, Neighbours> neighbours = new ConcurrentHashMap<>();
+    private final Set<Long> dirtyFilms = ConcurrentHashMap.newKeySet();
+    // События, пришедшие во время построения модели, применяются после обхода хранилища
+    private final List<LikeEvent> pendingEvents = new ArrayList<>();
+    // Построение читает все хранилище, в том числе снимок с диска: ждущие его запросы в виртуальных потоках
+    // не должны занимать потоки-носители, как при ожидании монитора
+    private final ReentrantLock buildLock = new ReentrantLock();
+    private volatile boolean building;
+    private volatile boolean built;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public FilmRecommendationService(FilmStorage filmStorage, UserStorage userStorage,
+                                     RecommendationProperties properties) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.properties = properties.getFilms();
+    }
+
+    @PostConstruct
+    public void start() {
+        long interval = properties.getRefreshInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "film-recommendations");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshDirty, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        pool.shutdownNow();
+    }
+
+    @Override
+    public void liked(long userId, long filmId) {
+        onLike(new LikeEvent(userId, filmId, true));
+    }
+
+    @Override
+    public void unliked(long userId, long filmId) {
+        onLike(new LikeEvent(userId, filmId, false));
+    }
+
+    public List<Film> recommend(Long userId, int count) {
+        userStorage.getUserById(userId);
+        ensureBuilt();
+        CompactIdSet liked = likedFilms.get(userId);
+        if (liked == null || liked.isEmpty()) {
+            return List.of();
+        }
+        long[] likedIds = liked.toLongArray();
+        LongIntCounter scores = new LongIntCounter(likedIds.length * properties.getMaxNeighbours());
+        // Уже лайкнутые фильмы не рекомендуются: их сумма заранее уводится глубоко в минус
+        for (long filmId : likedIds) {
+            scores.put(filmId, Integer.MIN_VALUE);
+        }
+        for (long filmId : likedIds) {
+            Neighbours similar = neighbours.get(filmId);
+            if (similar != null) {
+                for (int i = 0; i < similar.ids().length; i++) {
+                    scores.add(similar.ids()[i], similar.scores()[i]);
+                }
+            }
+        }
+        return filmStorage.getFilmsByIds(LongStream.of(scores.top(count)).boxed().toList());
+    }
+
+    // Сбрасывает модель, например после очистки хранилищ; следующий запрос построит ее заново
+    public void reset() {
+        synchronized (pendingEvents) {
+            built = false;
+            building = false;
+            pendingEvents.clear();
+            likedFilms.clear();
+            likeCounts.clear();
+            neighbours.clear();
+            dirtyFilms.clear();
+        }
+    }
+
+    private void onLike(LikeEvent event) {
+        if (!built) {
+            synchronized (pendingEvents) {
+                if (!built) {
+                    // До построения модели события не нужны: обход хранилища их увидит
+                    if (building) {
+                        pendingEvents.add(event);
+                    }
+                    return;
+                }
+            }
+        }
+        apply(event, true);
+    }
+
+    // markDirty = false при построении модели: соседи всех фильмов все равно считаются заново
+    private void apply(LikeEvent event, boolean markDirty) {
+        CompactIdSet films = event.liked()
+                ? likedFilms.computeIfAbsent(event.userId(), id -> new CompactIdSet())
+                : likedFilms.get(event.userId());
+        if (films == null) {
+            return;
+        }
+        boolean changed = event.liked() ? films.add(event.filmId()) : films.remove(event.filmId());
+        if (!changed) {
+            return;
+        }
+        likeCounts.merge(event.filmId(), event.liked() ? 1 : -1,
+                (count, delta) -> count + delta == 0 ? null : count + delta);
+        if (!markDirty) {
+            return;
+        }
+        // Изменилась схожесть фильма со всеми фильмами, которые лайкнул этот пользователь
+        dirtyFilms.add(event.filmId());
+        if (films.size() <= properties.getMaxFilmsPerUser()) {
+            films.forEachId(likedFilmId -> dirtyFilms.add(likedFilmId));
+        }
+    }
+
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+        buildLock.lock();
+        try {
+            if (built) {
+                return;
+            }
+            long startedAt = System.nanoTime();
+            synchronized (pendingEvents) {
+                building = true;
+            }
+            List<Long> filmIds = new ArrayList<>();
+            filmStorage.exportFilms(film -> {
+                long[] likers = film.getFilmLikedUsersId().toLongArray();
+                if (likers.length == 0) {
+                    return;
+                }
+                filmIds.add(film.getId());
+                for (long userId : likers) {
+                    apply(new LikeEvent(userId, film.getId(), true), false);
+                }
+            });
+            synchronized (pendingEvents) {
+                pendingEvents.forEach(event -> apply(event, true));
+                pendingEvents.clear();
+                building = false;
+                built = true;
+            }
+            recompute(filmIds);
+            log.info("Модель рекомендаций фильмов построена за {} мс: фильмов с лайками {}, пользователей {}",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), filmIds.size(), likedFilms.size());
+        } finally {
+            buildLock.unlock();
+        }
+    }
+
+    private void refreshDirty() {
+        if (!built || dirtyFilms.isEmpty()) {
+            return;
+        }
+        try {
+            List<Long> filmIds = new ArrayList<>(dirtyFilms);
+            dirtyFilms.removeAll(filmIds);
+            recompute(filmIds);
+            log.debug("Пересчитаны соседи {} фильмов", filmIds.size());
+        } catch (RuntimeException e) {
+            log.error("Фоновый пересчет рекомендаций фильмов не удался", e);
+        }
+    }
+
+    // Каждый фильм считается независимо, поэтому обход раскладывается по fork-join пулу
+    private void recompute(List<Long> filmIds) {
+        pool.submit(() -> filmIds.parallelStream().forEach(this::recomputeNeighbours)).join();
+    }
+
+    private void recomputeNeighbours(long filmId) {
+        List<Film> films = filmStorage.getFilmsByIds(List.of(filmId));
+        long[] likers = films.isEmpty() ? new long[0] : films.get(0).getFilmLikedUsersId().toLongArray();
+        if (likers.length == 0) {
+            neighbours.remove(filmId);
+            return;
+        }
+        int step = Math.ceilDiv(likers.length, properties.getMaxLikersSampled());
+        LongIntCounter coLikes = new LongIntCounter(1024);
+        for (int i = 0; i < likers.length; i += step) {
+            CompactIdSet liked = likedFilms.get(likers[i]);
+            if (liked == null || liked.size() > properties.getMaxFilmsPerUser()) {
+                continue;
+            }
+            liked.forEachId(otherId -> {
+                if (otherId != filmId) {
+                    coLikes.add(otherId, 1);
+                }
+            });
+        }
+        LongIntCounter similarity = new LongIntCounter(coLikes.size());
+        coLikes.forEach((otherId, sampled) -> {
+            int otherLikes = likeCounts.getOrDefault(otherId, 0);
+            // При выборке лайкнувших число общих лайков оценивается пропорционально
+            int common = Math.min(sampled * step, Math.min(likers.length, otherLikes));
+            int union = likers.length + otherLikes - common;
+            if (common > 0 && union > 0) {
+                similarity.put(otherId, (int) ((long) SCALE * common / union));
+            }
+        });
+        long[] ids = similarity.top(properties.getMaxNeighbours());
+        int[] scores = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            scores[i] = similarity.get(ids[i]);
+        }
+        neighbours.put(filmId, new Neighbours(ids, scores));
+    }
+
+    private record LikeEvent(long userId, long filmId, boolean liked) {
+    }
+
+    private record Neighbours(long[] ids, int[] scores) {
+    }
+}
@@ -1,14 +1,22 @@
 package ru.yandex.practicum.filmorate.service;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeEdge;
+import ru.yandex.practicum.filmorate.model.Page;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.BatchErrors;
+import ru.yandex.practicum.filmorate.storage.StripedLock;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 
 @Service
 @Getter
@@ -17,42 +25,126 @@ public class FilmService {
 
     private final FilmStorage filmStorage;
     private final UserService userService;
+    private final List<LikeListener> likeListeners;
+    // Лайк и удаление пользователя идут под страйпом пользователя: иначе лайк, проверивший пользователя
+    // до удаления, ляжет в фильм уже после того, как удаление сняло его лайки
+    @Getter(AccessLevel.NONE)
+    private final StripedLock userLocks = new StripedLock(64);
 
-    @Autowired
     public FilmService(FilmStorage filmStorage, UserService userService) {
+        this(filmStorage, userService, List.of());
+    }
+
+    @Autowired
+    public FilmService(FilmStorage filmStorage, UserService userService, List<LikeListener> likeListeners) {
         this.filmStorage = filmStorage;
         this.userService = userService;
+        this.likeListeners = likeListeners;
     }
 
+    // Слушатели получают только настоящие изменения: повторный лайк не должен накручивать счетчики.
+    // Хранилище решает это под блокировкой фильма, поэтому из двух одновременных лайков засчитывается один
     public Film addLike(Long likedFilmId, Long userId) {
-        userService.getUserStorage().getUserById(userId);
-        Film film = filmStorage.getFilmById(likedFilmId);
-        film.addLike(userId);
-        return film;
+        userLocks.withLock(userId, () -> {
+            userService.getUserStorage().getUserById(userId);
+            if (filmStorage.addLike(likedFilmId, userId)) {
+                likeListeners.forEach(listener -> listener.liked(userId, likedFilmId));
+            }
+        });
+        return filmStorage.getFilmById(likedFilmId);
     }
 
     public Film removeLike(Long unlikedFilmId, Long userId) {
+        userLocks.withLock(userId, () -> {
+            userService.getUserStorage().getUserById(userId);
+            if (filmStorage.removeLike(unlikedFilmId, userId)) {
+                likeListeners.forEach(listener -> listener.unliked(userId, unlikedFilmId));
+            }
+        });
+        return filmStorage.getFilmById(unlikedFilmId);
+    }
+
+    // Лайки от несуществующих пользователей отклоняются здесь, остальные уходят в хранилище одним пакетом.
+    // Страйпы всех пользователей пакета держатся до конца записи, как и у одиночного лайка
+    public void importLikes(List<LikeEdge> likes, BatchErrors errors) {
+        userLocks.withLocks(likes.stream().mapToLong(LikeEdge::userId).toArray(), () -> {
+            importKnownLikes(likes, errors);
+            return null;
+        });
+    }
+
+    private void importKnownLikes(List<LikeEdge> likes, BatchErrors errors) {
+        UserStorage userStorage = userService.getUserStorage();
+        List<LikeEdge> known = new ArrayList<>(likes.size());
+        int[] positions = new int[likes.size()];
+        for (int i = 0; i < likes.size(); i++) {
+            LikeEdge like = likes.get(i);
+            if (userStorage.containsUser(like.userId())) {
+                positions[known.size()] = i;
+                known.add(like);
+            } else {
+                errors.reject(i, "Пользователь с ID: " + like.userId() + " не найден");
+            }
+        }
+        boolean[] rejected = new boolean[known.size()];
+        filmStorage.addLikes(known, (index, message) -> {
+            rejected[index] = true;
+            errors.reject(positions[index], message);
+        });
+        for (int i = 0; i < known.size(); i++) {
+            if (!rejected[i]) {
+                LikeEdge like = known.get(i);
+                likeListeners.forEach(listener -> listener.imported(like.userId(), like.filmId()));
+            }
+        }
+    }
+
+    public List<Film> getLikedFilms(Long userId) {
         userService.getUserStorage().getUserById(userId);
-        Film film = filmStorage.getFilmById(unlikedFilmId);
-        film.removeLike(userId);
-        return film;
+        return filmStorage.getFilmsLikedBy(userId);
+    }
+
+    // Удаление пользователя вместе с его лайками: обходятся только фильмы из обратного индекса
+    public User removeUser(Long userId) {
+        return userLocks.withLock(userId, () -> {
+            User removed = userService.getUserStorage().removeUser(userId);
+            long[] unlikedFilmIds = filmStorage.removeLikesOf(userId);
+            for (long filmId : unlikedFilmIds) {
+                likeListeners.forEach(listener -> listener.unliked(userId, filmId));
+            }
+            return removed;
+        });
     }
 
     public List<Film> getMostPopularFilms(Long mostPopularFilmCount) {
         if (mostPopularFilmCount == null || mostPopularFilmCount <= 0) {
             throw new IllegalArgumentException("count должен быть больше 0");
         }
-        return filmStorage.getAllFilm().stream()
-                .filter(film -> !film.getFilmLikedUsersId().isEmpty())
-                .sorted(Comparator.comparing(
-                        film -> film.getFilmLikedUsersId().size(),
-                        Comparator.reverseOrder()
-                ))
-                .limit(mostPopularFilmCount)
-                .collect(Collectors.toList());
+        return filmStorage.getMostPopularFilms((int) Math.min(mostPopularFilmCount, Integer.MAX_VALUE));
+    }
+
+    public Page<Film> getFilmsPage(long afterId, int limit) {
+        return page(filmStorage.getFilmsPage(afterId, limit + 1), limit);
+    }
+
+    // Фильтры по дате релиза и продолжительности применяются до разбиения на страницы: курсор — ID
+    // последнего подходящего фильма
+    public Page<Film> findFilmsPage(LocalDate releasedFrom, LocalDate releasedTo, Long minDuration, Long maxDuration,
+                                    long afterId, int limit) {
+        return page(filmStorage.findFilms(releasedFrom, releasedTo, minDuration, maxDuration, afterId, limit + 1),
+                limit);
     }
 
     public void clearAllFilms() {
         filmStorage.clear();
     }
+
+    // Запрашиваем на один фильм больше, чтобы понять, есть ли следующая страница
+    private static Page<Film> page(List<Film> films, int limit) {
+        if (films.size() <= limit) {
+            return new Page<>(films, null);
+        }
+        List<Film> page = films.subList(0, limit);
+        return new Page<>(page, page.get(limit - 1).getId());
+    }
 }
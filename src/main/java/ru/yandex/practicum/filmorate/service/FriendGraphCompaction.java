@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Удаление пользователя само снимает обратные ссылки, а этот обход вычищает те, что остались в данных,
+// накопленных до каскадного удаления. Нулевой интервал отключает обход
+@Service
+@Slf4j
+public class FriendGraphCompaction {
+    private final UserStorage userStorage;
+    private final Duration interval;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public FriendGraphCompaction(UserStorage userStorage,
+                                 @Value("${filmorate.users.friend-compaction-interval:1h}") Duration interval) {
+        this.userStorage = userStorage;
+        this.interval = interval;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (interval.isZero() || interval.isNegative()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "friend-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Первый обход сразу после старта: висячие ссылки могли прийти из снимка или журнала
+        scheduler.scheduleWithFixedDelay(this::compact, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public int compact() {
+        long startedAt = System.nanoTime();
+        try {
+            int removed = userStorage.removeDanglingFriends();
+            log.debug("Обход графа дружбы занял {} мс, снято ссылок: {}",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), removed);
+            return removed;
+        } catch (RuntimeException e) {
+            log.error("Фоновая чистка графа дружбы не удалась", e);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.CompactIdSet;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+// «Возможно, вы знакомы»: друзья друзей, ранжированные по числу общих друзей
+@Service
+@Slf4j
+public class FriendRecommendationService {
+    public static final int MAX_COUNT = 100;
+
+    private final UserStorage userStorage;
+    private final RecommendationProperties.Friends properties;
+    // Только в фоновом режиме: готовые рекомендации пользователей, запрашивавших их недавно
+    private final Map<Long, CachedRecommendations> cache = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public FriendRecommendationService(UserStorage userStorage, RecommendationProperties properties) {
+        this.userStorage = userStorage;
+        this.properties = properties.getFriends();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isBackground()) {
+            return;
+        }
+        long interval = properties.getRefreshInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "friend-recommendations");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshActive, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public List<User> recommend(Long userId, int count) {
+        User user = userStorage.getUserById(userId);
+        long[] ids;
+        if (properties.isBackground()) {
+            CachedRecommendations cached = cache.computeIfAbsent(userId,
+                    id -> new CachedRecommendations(compute(user, MAX_COUNT)));
+            cached.lastRequestedNanos = System.nanoTime();
+            ids = cached.ids;
+        } else {
+            ids = compute(user, count);
+        }
+        List<Long> top = LongStream.of(ids).limit(count).boxed().toList();
+        return userStorage.getUsersByIds(top);
+    }
+
+    // Два шага по графу дружбы: счетчики по ID без упаковки и куча на limit лучших кандидатов
+    private long[] compute(User user, int limit) {
+        long[] friendIds = user.getFriendsId().toLongArray();
+        LongIntCounter mutualFriends = new LongIntCounter(Math.min(friendIds.length * 16, 1 << 16));
+        // Сам пользователь и его друзья не рекомендуются: их счетчики заранее уводятся глубоко в минус
+        mutualFriends.put(user.getId(), Integer.MIN_VALUE);
+        for (long friendId : friendIds) {
+            mutualFriends.put(friendId, Integer.MIN_VALUE);
+        }
+
+        long edgeBudget = properties.getMaxEdges();
+        for (User friend : userStorage.getUsersByIds(LongStream.of(friendIds).boxed().toList())) {
+            if (edgeBudget <= 0) {
+                break;
+            }
+            CompactIdSet candidates = friend.getFriendsId();
+            int degree = candidates.size();
+            int step = degree <= properties.getMaxFanOut() ? 1 : Math.ceilDiv(degree, properties.getMaxFanOut());
+            int[] position = {0};
+            candidates.forEachId(candidateId -> {
+                if (position[0]++ % step == 0) {
+                    mutualFriends.add(candidateId, 1);
+                }
+            });
+            edgeBudget -= Math.ceilDiv(degree, step);
+        }
+        return mutualFriends.top(limit);
+    }
+
+    private void refreshActive() {
+        long startedAt = System.nanoTime();
+        long activeWindow = properties.getActiveWindow().toNanos();
+        cache.forEach((userId, cached) -> {
+            if (startedAt - cached.lastRequestedNanos > activeWindow) {
+                cache.remove(userId, cached);
+                return;
+            }
+            List<User> users = userStorage.getUsersByIds(List.of(userId));
+            if (users.isEmpty()) {
+                cache.remove(userId, cached);
+                return;
+            }
+            cached.ids = compute(users.get(0), MAX_COUNT);
+        });
+        log.debug("Пересчитаны рекомендации друзей для {} активных пользователей за {} мс", cache.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+
+    private static final class CachedRecommendations {
+        private volatile long[] ids;
+        private volatile long lastRequestedNanos = System.nanoTime();
+
+        private CachedRecommendations(long[] ids) {
+            this.ids = ids;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.service;
+
+// Получает лайки, которые хранилище уже применило
+public interface LikeListener {
+
+    void liked(long userId, long filmId);
+
+    void unliked(long userId, long filmId);
+
+    // Лайк из пакетного импорта: время его появления неизвестно, поэтому слушатель может обработать его иначе
+    default void imported(long userId, long filmId) {
+        liked(userId, filmId);
+    }
+}
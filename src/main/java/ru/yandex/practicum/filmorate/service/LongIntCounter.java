@@ -0,0 +1,162 @@
+package ru.yandex.practicum.filmorate.service;
+
+// Счетчики по ID без упаковки в Long: открытая адресация с линейным пробированием.
+// Ключ 0 занят под пустую ячейку, поэтому годится только для положительных ID
+final class LongIntCounter {
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    LongIntCounter(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    void add(long key, int delta) {
+        int slot = slotOf(key);
+        if (keys[slot] == key) {
+            values[slot] += delta;
+        } else {
+            insert(slot, key, delta);
+        }
+    }
+
+    void put(long key, int value) {
+        int slot = slotOf(key);
+        if (keys[slot] == key) {
+            values[slot] = value;
+        } else {
+            insert(slot, key, value);
+        }
+    }
+
+    int get(long key) {
+        int slot = slotOf(key);
+        return keys[slot] == key ? values[slot] : 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(Entry action) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                action.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    // До limit ключей с наибольшими положительными значениями: по убыванию значения, при равенстве по возрастанию ключа.
+    // Куча из limit ячеек, поэтому O(n log limit) без сортировки всех счетчиков
+    long[] top(int limit) {
+        int[] heap = new int[limit];
+        int heapSize = 0;
+        for (int slot = 0; slot < keys.length && limit > 0; slot++) {
+            if (keys[slot] == 0 || values[slot] <= 0) {
+                continue;
+            }
+            if (heapSize < limit) {
+                heap[heapSize] = slot;
+                siftUp(heap, heapSize++);
+            } else if (worse(heap[0], slot)) {
+                heap[0] = slot;
+                siftDown(heap, heapSize);
+            }
+        }
+        long[] result = new long[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            result[i] = keys[heap[0]];
+            heap[0] = heap[i];
+            siftDown(heap, i);
+        }
+        return result;
+    }
+
+    private void insert(int slot, long key, int value) {
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    private int slotOf(long key) {
+        int slot = hash(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    // Первая ячейка хуже второй: меньше значение или то же значение при большем ключе
+    private boolean worse(int first, int second) {
+        if (values[first] != values[second]) {
+            return values[first] < values[second];
+        }
+        return keys[first] > keys[second];
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!worse(heap[index], heap[parent])) {
+                return;
+            }
+            swap(heap, index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int heapSize) {
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                return;
+            }
+            if (child + 1 < heapSize && worse(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!worse(heap[child], heap[index])) {
+                return;
+            }
+            swap(heap, index, child);
+            index = child;
+        }
+    }
+
+    private static void swap(int[] heap, int first, int second) {
+        int value = heap[first];
+        heap[first] = heap[second];
+        heap[second] = value;
+    }
+
+    private static int hash(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @FunctionalInterface
+    interface Entry {
+        void accept(long key, int value);
+    }
+}
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.recommendations")
+public class RecommendationProperties {
+    private Friends friends = new Friends();
+    private Films films = new Films();
+
+    @Data
+    public static class Friends {
+        // Сколько друзей друга учитывается; у популярных пользователей берется равномерная выборка
+        private int maxFanOut = 200;
+        // Общий предел просмотренных связей второго шага на один запрос
+        private long maxEdges = 1_000_000;
+        // Фоновый пересчет рекомендаций для пользователей, запрашивавших их за последние activeWindow
+        private boolean background = false;
+        private Duration refreshInterval = Duration.ofSeconds(30);
+        private Duration activeWindow = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class Films {
+        // Сколько похожих фильмов хранится для каждого фильма
+        private int maxNeighbours = 50;
+        // У фильмов с большим числом лайков схожесть считается по равномерной выборке лайкнувших
+        private int maxLikersSampled = 2000;
+        // Пользователи с большим числом лайков в расчет схожести не попадают: сигнал слабый, а обход дорогой
+        private int maxFilmsPerUser = 5000;
+        // Как часто пересчитываются соседи фильмов, затронутых новыми лайками
+        private Duration refreshInterval = Duration.ofSeconds(10);
+    }
+}
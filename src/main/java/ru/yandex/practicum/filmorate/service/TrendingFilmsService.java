@@ -0,0 +1,272 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.LongStream;
+
+// Фильмы, набирающие лайки сейчас: у каждого фильма с недавними лайками есть кольцевые счетчики по минутам
+// за последний час и по часам за неделю. Рейтинги окон обновляются на каждом лайке, а раз в минуту
+// пересобираются по активным фильмам, чтобы учесть устаревшие корзины
+@Service
+@Slf4j
+public class TrendingFilmsService implements LikeListener {
+    public static final int MAX_COUNT = 100;
+    // Рейтинг окна держит больше фильмов, чем отдается, чтобы снятые лайки не оставляли в нем дыр до пересборки
+    private static final int RANKING_CAPACITY = 4 * MAX_COUNT;
+    private static final int MINUTES = 60;
+    private static final int HOURS = 7 * 24;
+
+    private final FilmStorage filmStorage;
+    private final Clock clock;
+    // Только фильмы с лайками за последнюю неделю; счетчики простаивающих удаляются при пересборке
+    private final Map<Long, FilmCounters> counters = new ConcurrentHashMap<>();
+    private final Map<Window, Ranking> rankings = new EnumMap<>(Window.class);
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public TrendingFilmsService(FilmStorage filmStorage) {
+        this(filmStorage, Clock.systemUTC());
+    }
+
+    public TrendingFilmsService(FilmStorage filmStorage, Clock clock) {
+        this.filmStorage = filmStorage;
+        this.clock = clock;
+        for (Window window : Window.values()) {
+            rankings.put(window, new Ranking());
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "trending-films");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::rebuild, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Override
+    public void liked(long userId, long filmId) {
+        count(filmId, 1);
+    }
+
+    @Override
+    public void unliked(long userId, long filmId) {
+        count(filmId, -1);
+    }
+
+    // Время импортированных лайков неизвестно, в тренды они не попадают
+    @Override
+    public void imported(long userId, long filmId) {
+    }
+
+    public List<Film> trending(Window window, int count) {
+        return filmStorage.getFilmsByIds(LongStream.of(rankings.get(window).top(count)).boxed().toList());
+    }
+
+    // Пересборка по всем активным фильмам: корзины, вышедшие из окна, больше не учитываются
+    public void rebuild() {
+        long startedAt = System.nanoTime();
+        long minute = currentMinute();
+        Map<Window, LongIntCounter> scores = new EnumMap<>(Window.class);
+        for (Window window : Window.values()) {
+            scores.put(window, new LongIntCounter(counters.size()));
+        }
+        counters.forEach((filmId, filmCounters) -> {
+            if (filmCounters.count(Window.WEEK, minute) <= 0 && filmCounters.count(Window.HOUR, minute) <= 0) {
+                counters.computeIfPresent(filmId, (id, idle) -> idle.retire(minute) ? null : idle);
+                return;
+            }
+            for (Window window : Window.values()) {
+                scores.get(window).put(filmId, filmCounters.count(window, minute));
+            }
+        });
+        for (Window window : Window.values()) {
+            LongIntCounter windowScores = scores.get(window);
+            long[] top = windowScores.top(RANKING_CAPACITY);
+            int[] topScores = new int[top.length];
+            for (int i = 0; i < top.length; i++) {
+                topScores[i] = windowScores.get(top[i]);
+            }
+            rankings.get(window).replace(top, topScores);
+        }
+        log.debug("Рейтинги трендов пересобраны за {} мс, активных фильмов: {}",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), counters.size());
+    }
+
+    public void reset() {
+        counters.clear();
+        rankings.values().forEach(ranking -> ranking.replace(new long[0], new int[0]));
+    }
+
+    private void count(long filmId, int delta) {
+        long minute = currentMinute();
+        FilmCounters filmCounters;
+        do {
+            filmCounters = counters.computeIfAbsent(filmId, id -> new FilmCounters());
+            filmCounters.add(minute, delta);
+            // Счетчики могли удалить как простаивающие одновременно с записью: тогда пишем в новые
+        } while (filmCounters.retired);
+        for (Window window : Window.values()) {
+            rankings.get(window).offer(filmId, filmCounters.count(window, minute));
+        }
+    }
+
+    private long currentMinute() {
+        return TimeUnit.MILLISECONDS.toMinutes(clock.millis());
+    }
+
+    public enum Window {
+        HOUR("1h", 60),
+        DAY("24h", 24 * 60),
+        WEEK("7d", 7 * 24 * 60);
+
+        private final String param;
+        private final int minutes;
+
+        Window(String param, int minutes) {
+            this.param = param;
+            this.minutes = minutes;
+        }
+
+        public static Window of(String param) {
+            for (Window window : values()) {
+                if (window.param.equals(param)) {
+                    return window;
+                }
+            }
+            throw new IllegalArgumentException("Неизвестное окно трендов: " + param);
+        }
+    }
+
+    // Корзина — long: старшие 32 бита хранят номер минуты или часа, младшие — счетчик.
+    // Запись в корзину с устаревшим номером начинает ее заново, все обновления идут через CAS без блокировок
+    private static final class FilmCounters {
+        private final AtomicLongArray minutes = new AtomicLongArray(MINUTES);
+        private final AtomicLongArray hours = new AtomicLongArray(HOURS);
+        private volatile boolean retired;
+
+        void add(long minute, int delta) {
+            add(minutes, minute, delta);
+            add(hours, minute / 60, delta);
+        }
+
+        // Отрицательная сумма возможна, если сняли лайк, поставленный до окна
+        int count(Window window, long minute) {
+            int total = window == Window.HOUR
+                    ? sum(minutes, minute, MINUTES)
+                    : sum(hours, minute / 60, window.minutes / 60);
+            return Math.max(total, 0);
+        }
+
+        // Вызывается под блокировкой ключа карты: повторная проверка отсекает запись, успевшую после первой
+        boolean retire(long minute) {
+            if (count(Window.WEEK, minute) > 0 || count(Window.HOUR, minute) > 0) {
+                return false;
+            }
+            retired = true;
+            return true;
+        }
+
+        private static void add(AtomicLongArray ring, long epoch, int delta) {
+            ring.getAndUpdate((int) (epoch % ring.length()), bucket -> {
+                int current = bucket >>> 32 == epoch ? (int) bucket : 0;
+                return epoch << 32 | (current + delta) & 0xFFFFFFFFL;
+            });
+        }
+
+        private static int sum(AtomicLongArray ring, long epoch, int buckets) {
+            int total = 0;
+            for (long bucketEpoch = epoch; bucketEpoch > epoch - buckets; bucketEpoch--) {
+                long bucket = ring.get((int) (bucketEpoch % ring.length()));
+                if (bucket >>> 32 == bucketEpoch) {
+                    total += (int) bucket;
+                }
+            }
+            return total;
+        }
+    }
+
+    // Верхушка окна, которая поддерживается на каждом лайке; чтение берет первые count элементов без сортировки
+    private static final class Ranking {
+        private static final Comparator<Entry> ORDER = Comparator.comparingInt(Entry::score).reversed()
+                .thenComparingLong(Entry::filmId);
+
+        // Набор подменяется целиком при пересборке, чтение идет без блокировки
+        private volatile NavigableSet<Entry> entries = new ConcurrentSkipListSet<>(ORDER);
+        private Map<Long, Integer> scores = new HashMap<>();
+
+        synchronized void offer(long filmId, int score) {
+            Integer previous = scores.remove(filmId);
+            if (previous != null) {
+                entries.remove(new Entry(filmId, previous));
+            }
+            if (score <= 0) {
+                return;
+            }
+            if (entries.size() >= RANKING_CAPACITY && ORDER.compare(new Entry(filmId, score), entries.last()) > 0) {
+                return;
+            }
+            entries.add(new Entry(filmId, score));
+            scores.put(filmId, score);
+            if (entries.size() > RANKING_CAPACITY) {
+                Entry evicted = entries.pollLast();
+                scores.remove(evicted.filmId());
+            }
+        }
+
+        synchronized void replace(long[] filmIds, int[] filmScores) {
+            NavigableSet<Entry> rebuilt = new ConcurrentSkipListSet<>(ORDER);
+            Map<Long, Integer> rebuiltScores = new HashMap<>();
+            for (int i = 0; i < filmIds.length; i++) {
+                rebuilt.add(new Entry(filmIds[i], filmScores[i]));
+                rebuiltScores.put(filmIds[i], filmScores[i]);
+            }
+            entries = rebuilt;
+            scores = rebuiltScores;
+        }
+
+        long[] top(int count) {
+            NavigableSet<Entry> current = entries;
+            long[] filmIds = new long[Math.min(count, current.size())];
+            int size = 0;
+            Iterator<Entry> iterator = current.iterator();
+            while (size < filmIds.length && iterator.hasNext()) {
+                filmIds[size++] = iterator.next().filmId();
+            }
+            return size == filmIds.length ? filmIds : Arrays.copyOf(filmIds, size);
+        }
+
+        private record Entry(long filmId, int score) {
+        }
+    }
+}
@@ -5,10 +5,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.logging.LogMarkers;
+import ru.yandex.practicum.filmorate.model.CompactIdSet;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -29,13 +32,10 @@ public class UserService {
             throw new ValidationException("Нельзя добавить себя в друзья: userId=" + userId);
         }
 
+        userStorage.addFriend(userId, friendId);
         User user = userStorage.getUserById(userId);
-        User friend = userStorage.getUserById(friendId);
 
-        user.addFriend(friendId);
-        friend.addFriend(userId);
-
-        log.info("Дружба между {} и {} установлена", userId, friendId);
+        log.info(LogMarkers.HOT_PATH, "Дружба между {} и {} установлена", userId, friendId);
         return user; // Возвращаем инициатора операции
     }
 
@@ -44,11 +44,9 @@ public class UserService {
             throw new ValidationException("ID=" + userId + " пользователя и ID= "
                     + removedFriendsId + " друга для добавления совпадают");
         }
-        User user = userStorage.getUserById(userId);
+        userStorage.removeFriend(userId, removedFriendsId);
         User removedFriend = userStorage.getUserById(removedFriendsId);
-        user.removeFriend(removedFriendsId);
-        removedFriend.removeFriend(userId);
-        log.info("Дружба между {} и {} удалена", userId, removedFriendsId);
+        log.info(LogMarkers.HOT_PATH, "Дружба между {} и {} удалена", userId, removedFriendsId);
         return removedFriend;
     }
 
@@ -56,7 +54,7 @@ public class UserService {
         User user = userStorage.getUserById(userId);
         Set<Long> friendsIds = user.getFriendsId();
         List<User> friends = userStorage.getUsersByIds(friendsIds);
-        log.info("Загружено {} друзей для пользователя {}", friends.size(), userId);
+        log.debug("Загружено {} друзей для пользователя {}", friends.size(), userId);
         return friends;
     }
 
@@ -66,22 +64,41 @@ public class UserService {
         }
         User firstUser = userStorage.getUserById(firstUserId);
         User secondUser = userStorage.getUserById(secondUserId);
-        Set<Long> mutualFriendsId = new HashSet<>(firstUser.getFriendsId());
-        mutualFriendsId.retainAll(secondUser.getFriendsId());
+        List<Long> mutualFriendsId = new ArrayList<>();
+        CompactIdSet.intersect(firstUser.getFriendsId(), secondUser.getFriendsId(), mutualFriendsId::add);
 
         if (mutualFriendsId.isEmpty()) {
-            log.info("У пользователей {} и {} нет общих друзей", firstUserId, secondUserId);
+            log.debug("У пользователей {} и {} нет общих друзей", firstUserId, secondUserId);
             return List.of();
         }
 
         List<User> commonFriends = userStorage.getUsersByIds(mutualFriendsId);
 
-        log.info("Создан список из {} общих друзей пользователей с ID = {} и ID = {}",
+        log.debug("Создан список из {} общих друзей пользователей с ID = {} и ID = {}",
                 commonFriends.size(), firstUserId, secondUserId);
 
         return commonFriends;
     }
 
+    public int countCommonFriends(Long firstUserId, Long secondUserId) {
+        if (firstUserId.equals(secondUserId)) {
+            throw new ValidationException("ID обоих пользователей совпадают");
+        }
+        User firstUser = userStorage.getUserById(firstUserId);
+        User secondUser = userStorage.getUserById(secondUserId);
+        return CompactIdSet.intersectionSize(firstUser.getFriendsId(), secondUser.getFriendsId());
+    }
+
+
+    // Запрашиваем на одного пользователя больше, чтобы понять, есть ли следующая страница
+    public Page<User> getUsersPage(long afterId, int limit) {
+        List<User> users = userStorage.getUsersPage(afterId, limit + 1);
+        if (users.size() <= limit) {
+            return new Page<>(users, null);
+        }
+        List<User> page = users.subList(0, limit);
+        return new Page<>(page, page.get(limit - 1).getId());
+    }
 
     public void clearAllUsers() {
         userStorage.clear();
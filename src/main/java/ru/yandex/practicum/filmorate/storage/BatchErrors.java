@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.storage;
+
+// Отклоненный элемент пакета: index — позиция в переданном в хранилище списке
+@FunctionalInterface
+public interface BatchErrors {
+    void reject(int index, String message);
+}
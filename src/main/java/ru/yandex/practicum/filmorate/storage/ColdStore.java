@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.function.Consumer;
+
+// Записи, которые еще не подняты в память хранилища (например, лежат в отображенном в память снимке).
+// Перед изменением хранилище кладет запись в свою карту и вытесняет ее отсюда: дальше ею владеет карта
+public interface ColdStore<T> {
+
+    // Каждый вызов декодирует новый объект; null, если записи нет или она уже вытеснена
+    T read(long id);
+
+    // Проверка без декодирования записи
+    boolean contains(long id);
+
+    // Есть ли невытесненная запись с таким уникальным ключом (у пользователей — email);
+    // декодируются только записи с совпавшим хешем ключа
+    boolean containsKey(String key);
+
+    // Вызывается под блокировкой записи, после того как она положена в карту хранилища
+    void evict(long id);
+
+    void forEach(Consumer<? super T> action);
+
+    // Наименьший ID невытесненной записи больше id или -1
+    long higherId(long id);
+
+    // weight — небольшое число, сохраненное рядом с ID (для фильмов — количество лайков)
+    void forEachId(IdConsumer action);
+
+    int size();
+
+    static <T> ColdStore<T> empty() {
+        return new ColdStore<>() {
+            @Override
+            public T read(long id) {
+                return null;
+            }
+
+            @Override
+            public boolean contains(long id) {
+                return false;
+            }
+
+            @Override
+            public boolean containsKey(String key) {
+                return false;
+            }
+
+            @Override
+            public void evict(long id) {
+            }
+
+            @Override
+            public void forEach(Consumer<? super T> action) {
+            }
+
+            @Override
+            public long higherId(long id) {
+                return -1;
+            }
+
+            @Override
+            public void forEachId(IdConsumer action) {
+            }
+
+            @Override
+            public int size() {
+                return 0;
+            }
+        };
+    }
+
+    @FunctionalInterface
+    interface IdConsumer {
+        void accept(long id, int weight);
+    }
+}
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+// Согласованные на момент открытия обходы хранилища без его копирования (copy-on-write).
+// Обход идет по возрастанию ID; пока он открыт, хранилище перед изменением записи впереди курсора
+// сохраняет ее прежнее состояние, поэтому память растет только с числом изменений во время обхода
+public class PointInTimeViews<T> {
+    private final Set<View<T>> active = ConcurrentHashMap.newKeySet();
+    private final UnaryOperator<T> copier;
+
+    public PointInTimeViews(UnaryOperator<T> copier) {
+        this.copier = copier;
+    }
+
+    public View<T> open() {
+        View<T> view = new View<>(copier);
+        active.add(view);
+        return view;
+    }
+
+    public void close(View<T> view) {
+        active.remove(view);
+    }
+
+    // Вызывается под блокировкой записи до ее изменения или удаления
+    public void beforeChange(long id, T current) {
+        if (active.isEmpty()) {
+            return;
+        }
+        for (View<T> view : active) {
+            view.beforeChange(id, current);
+        }
+    }
+
+    // Вызывается под блокировкой новой записи
+    public void created(long id) {
+        if (active.isEmpty()) {
+            return;
+        }
+        for (View<T> view : active) {
+            view.created(id);
+        }
+    }
+
+    public static final class View<T> {
+        private final UnaryOperator<T> copier;
+        private final Map<Long, T> preimages = new ConcurrentHashMap<>();
+        private final Set<Long> created = ConcurrentHashMap.newKeySet();
+        // Все записи с ID не больше курсора уже выданы обходом
+        private volatile long cursor;
+
+        private View(UnaryOperator<T> copier) {
+            this.copier = copier;
+        }
+
+        // Вызывается под блокировкой записи; null — запись не входит в срез
+        public T visit(long id, T current) {
+            cursor = id;
+            T preimage = preimages.remove(id);
+            if (preimage != null) {
+                return preimage;
+            }
+            if (current == null || created.remove(id)) {
+                return null;
+            }
+            return copier.apply(current);
+        }
+
+        // Записи, удаленные впереди курсора: обход их уже не встретит
+        public Collection<T> remaining() {
+            return new ArrayList<>(preimages.values());
+        }
+
+        private void beforeChange(long id, T current) {
+            if (id > cursor && !created.contains(id)) {
+                preimages.computeIfAbsent(id, key -> copier.apply(current));
+            }
+        }
+
+        private void created(long id) {
+            if (id > cursor) {
+                created.add(id);
+            }
+        }
+    }
+}
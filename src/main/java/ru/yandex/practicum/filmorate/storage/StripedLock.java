@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+public class StripedLock {
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    public StripedLock(int stripes) {
+        if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Количество страйпов должно быть степенью двойки: " + stripes);
+        }
+        this.locks = new ReentrantLock[stripes];
+        this.mask = stripes - 1;
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T withLock(long id, Supplier<T> action) {
+        ReentrantLock lock = locks[indexOf(id)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void withLock(long id, Runnable action) {
+        withLock(id, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    // Захватываем страйпы в порядке возрастания индекса, чтобы встречные операции не давали дедлок
+    public <T> T withLocks(long firstId, long secondId, Supplier<T> action) {
+        int first = indexOf(firstId);
+        int second = indexOf(secondId);
+        ReentrantLock outer = locks[Math.min(first, second)];
+        ReentrantLock inner = locks[Math.max(first, second)];
+        outer.lock();
+        try {
+            inner.lock();
+            try {
+                return action.get();
+            } finally {
+                inner.unlock();
+            }
+        } finally {
+            outer.unlock();
+        }
+    }
+
+    public void withLocks(long firstId, long secondId, Runnable action) {
+        withLocks(firstId, secondId, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    // Произвольный набор ID: страйпы захватываются без повторов и в том же порядке возрастания индекса
+    public <T> T withLocks(long[] ids, Supplier<T> action) {
+        boolean[] needed = new boolean[locks.length];
+        for (long id : ids) {
+            needed[indexOf(id)] = true;
+        }
+        int locked = 0;
+        int[] order = new int[locks.length];
+        try {
+            for (int i = 0; i < locks.length; i++) {
+                if (needed[i]) {
+                    locks[i].lock();
+                    order[locked++] = i;
+                }
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                locks[order[i]].unlock();
+            }
+        }
+    }
+
+    // Все страйпы сразу, в том же порядке возрастания: для пакетных операций над многими ID
+    public <T> T withAllLocks(Supplier<T> action) {
+        int locked = 0;
+        try {
+            for (ReentrantLock lock : locks) {
+                lock.lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                locks[i].unlock();
+            }
+        }
+    }
+
+    public void withAllLocks(Runnable action) {
+        withAllLocks(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private int indexOf(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
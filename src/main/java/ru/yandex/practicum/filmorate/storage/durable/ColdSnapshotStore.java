@@ -0,0 +1,126 @@
+package ru.yandex.practicum.filmorate.storage.durable;
+
+import ru.yandex.practicum.filmorate.exception.StorageException;
+import ru.yandex.practicum.filmorate.storage.ColdStore;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+// Холодный слой поверх отображенного снимка: записи декодируются при каждом чтении,
+// вытесненные записи отмечаются в битовой карте по их позиции в снимке
+final class ColdSnapshotStore<T> implements ColdStore<T> {
+    private final MappedSnapshot snapshot;
+    private final EntityReader<T> reader;
+    private final EntityReader<String> keyReader;
+    private final AtomicLongArray evicted;
+    private final AtomicInteger remaining;
+
+    ColdSnapshotStore(MappedSnapshot snapshot, EntityReader<T> reader) {
+        this(snapshot, reader, null);
+    }
+
+    // keyReader читает из записи только ее уникальный ключ, записанный в индекс снимка
+    ColdSnapshotStore(MappedSnapshot snapshot, EntityReader<T> reader, EntityReader<String> keyReader) {
+        this.snapshot = snapshot;
+        this.reader = reader;
+        this.keyReader = keyReader;
+        this.evicted = new AtomicLongArray((snapshot.size() + 63) >>> 6);
+        this.remaining = new AtomicInteger(snapshot.size());
+    }
+
+    @Override
+    public T read(long id) {
+        int index = snapshot.indexOf(id);
+        return index < 0 || isEvicted(index) ? null : decode(index);
+    }
+
+    @Override
+    public void evict(long id) {
+        int index = snapshot.indexOf(id);
+        if (index < 0) {
+            return;
+        }
+        long bit = 1L << index;
+        long word = evicted.getAndAccumulate(index >>> 6, bit, (current, mask) -> current | mask);
+        if ((word & bit) == 0) {
+            remaining.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        for (int index = 0; index < snapshot.size(); index++) {
+            if (!isEvicted(index)) {
+                action.accept(decode(index));
+            }
+        }
+    }
+
+    @Override
+    public long higherId(long id) {
+        for (int index = snapshot.higherIndex(id); index < snapshot.size(); index++) {
+            if (!isEvicted(index)) {
+                return snapshot.id(index);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void forEachId(IdConsumer action) {
+        for (int index = 0; index < snapshot.size(); index++) {
+            if (!isEvicted(index)) {
+                action.accept(snapshot.id(index), snapshot.weight(index));
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return remaining.get();
+    }
+
+    @Override
+    public boolean contains(long id) {
+        int index = snapshot.indexOf(id);
+        return index >= 0 && !isEvicted(index);
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        if (keyReader == null) {
+            return false;
+        }
+        return snapshot.anyWithKeyHash(MappedSnapshot.keyHash(key),
+                index -> !isEvicted(index) && Objects.equals(key, decode(keyReader, index)));
+    }
+
+    MappedSnapshot snapshot() {
+        return snapshot;
+    }
+
+    private boolean isEvicted(int index) {
+        return (evicted.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    private T decode(int index) {
+        return decode(reader, index);
+    }
+
+    private <R> R decode(EntityReader<R> entityReader, int index) {
+        try {
+            return entityReader.read(snapshot.record(index));
+        } catch (IOException e) {
+            throw new StorageException("Не удалось прочитать запись " + snapshot.id(index) + " из снимка " + snapshot, e);
+        }
+    }
+
+    @FunctionalInterface
+    interface EntityReader<T> {
+        T read(DataInput in) throws IOException;
+    }
+}
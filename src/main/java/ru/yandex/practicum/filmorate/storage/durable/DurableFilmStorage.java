@@ -0,0 +1,275 @@
+package ru.yandex.practicum.filmorate.storage.durable;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeEdge;
+import ru.yandex.practicum.filmorate.storage.BatchErrors;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.id.IdGenerator;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+// Чтение идет из памяти или из отображенного снимка; каждое изменение под блокировкой фильма сначала дописывается
+// в журнал и только потом применяется к памяти
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "durable")
+@Slf4j
+public class DurableFilmStorage extends InMemoryFilmStorage implements DurableJournal.StateHandler {
+    private static final byte ADD = 1;
+    private static final byte UPDATE = 2;
+    private static final byte REMOVE = 3;
+    private static final byte LIKE = 4;
+    private static final byte UNLIKE = 5;
+    private static final byte CLEAR = 6;
+    private static final byte ADD_ALL = 7;
+    private static final byte LIKE_ALL = 8;
+    private static final byte UNLIKE_USER_FILMS = 9;
+
+    private final DurableJournal journal;
+    private final AtomicLong maxIssuedId = new AtomicLong();
+
+    @Autowired
+    public DurableFilmStorage(@Qualifier("filmIdGenerator") IdGenerator idGenerator,
+                              DurableStorageProperties properties) {
+        super(idGenerator);
+        this.journal = new DurableJournal(properties.getDirectory().resolve("films"), properties, this);
+    }
+
+    @PostConstruct
+    public void start() {
+        journal.start();
+        startColdIndexing();
+    }
+
+    @PreDestroy
+    public void stop() {
+        journal.close();
+    }
+
+    public void snapshot() {
+        journal.snapshot();
+    }
+
+    // Запись дописывается в журнал до изменения памяти и под той же блокировкой: порядок LSN совпадает
+    // с порядком изменений, а при ошибке журнала память остается прежней
+    @Override
+    protected void insertFilm(Film film) {
+        locks.withLock(film.getId(), () -> {
+            journal.append(out -> {
+                out.writeByte(ADD);
+                EntityCodec.writeFilm(out, film);
+            });
+            super.insertFilm(film);
+            maxIssuedId.accumulateAndGet(film.getId(), Math::max);
+        });
+    }
+
+    // Пакет — одна запись журнала, дописанная под тем же захватом всех блокировок, что и вставка
+    @Override
+    protected void insertFilms(List<Film> films) {
+        locks.withAllLocks(() -> {
+            journal.append(out -> {
+                out.writeByte(ADD_ALL);
+                out.writeInt(films.size());
+                for (Film film : films) {
+                    EntityCodec.writeFilm(out, film);
+                }
+            });
+            super.insertFilms(films);
+            films.forEach(film -> maxIssuedId.accumulateAndGet(film.getId(), Math::max));
+        });
+    }
+
+    // Отсутствующий фильм в журнал не попадает: исключение с прежним текстом бросит super
+    @Override
+    public Film removeFilm(Long filmId) {
+        return locks.withLock(filmId, () -> {
+            if (hasFilm(filmId)) {
+                journal.append(out -> {
+                    out.writeByte(REMOVE);
+                    out.writeLong(filmId);
+                });
+            }
+            return super.removeFilm(filmId);
+        });
+    }
+
+    // Запись дописывается после проверок super и до изменения полей: отклоненное обновление в журнал не попадает
+    @Override
+    public Film updateFilm(Film updatedFilm) {
+        return super.updateFilm(updatedFilm, () -> journal.append(out -> {
+            out.writeByte(UPDATE);
+            EntityCodec.writeFilm(out, fieldsOf(updatedFilm));
+        }));
+    }
+
+    // В журнал попадают только лайки, которые изменят фильм: повтор не пишет лишнюю запись
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        return locks.withLock(filmId, () -> {
+            if (Boolean.FALSE.equals(isLikedBy(filmId, userId))) {
+                journal.append(out -> {
+                    out.writeByte(LIKE);
+                    out.writeLong(filmId);
+                    out.writeLong(userId);
+                });
+            }
+            return super.addLike(filmId, userId);
+        });
+    }
+
+    @Override
+    public boolean removeLike(Long filmId, Long userId) {
+        return locks.withLock(filmId, () -> {
+            if (Boolean.TRUE.equals(isLikedBy(filmId, userId))) {
+                journal.append(out -> {
+                    out.writeByte(UNLIKE);
+                    out.writeLong(filmId);
+                    out.writeLong(userId);
+                });
+            }
+            return super.removeLike(filmId, userId);
+        });
+    }
+
+    // В журнал попадают лайки к существующим фильмам, остальные отклонит super с прежними сообщениями
+    @Override
+    public void addLikes(List<LikeEdge> likes, BatchErrors errors) {
+        locks.withAllLocks(() -> {
+            List<LikeEdge> accepted = likes.stream()
+                    .filter(like -> hasFilm(like.filmId()))
+                    .toList();
+            if (!accepted.isEmpty()) {
+                journal.append(out -> {
+                    out.writeByte(LIKE_ALL);
+                    out.writeInt(accepted.size());
+                    for (LikeEdge like : accepted) {
+                        out.writeLong(like.filmId());
+                        out.writeLong(like.userId());
+                    }
+                });
+            }
+            super.addLikes(likes, errors);
+        });
+    }
+
+    // Блокируются только фильмы из обратного индекса, а в журнал пишется их список: при восстановлении
+    // лайки снимаются ровно с тех же фильмов
+    @Override
+    public long[] removeLikesOf(Long userId) {
+        long[] filmIds = likedFilmIds(userId);
+        if (filmIds.length == 0) {
+            return filmIds;
+        }
+        return locks.withLocks(filmIds, () -> {
+            journal.append(out -> {
+                out.writeByte(UNLIKE_USER_FILMS);
+                out.writeLong(userId);
+                out.writeInt(filmIds.length);
+                for (long filmId : filmIds) {
+                    out.writeLong(filmId);
+                }
+            });
+            return super.removeLikesOf(userId, filmIds);
+        });
+    }
+
+    @Override
+    public void clear() {
+        locks.withAllLocks(() -> {
+            journal.append(out -> out.writeByte(CLEAR));
+            super.clear();
+            maxIssuedId.set(0);
+        });
+    }
+
+    @Override
+    public void writeSnapshot(MappedSnapshotWriter writer) throws IOException {
+        writer.meta(maxIssuedId.get());
+        LongStream.Builder memoryIds = LongStream.builder();
+        forEachFilm(film -> memoryIds.add(film.getId()));
+        writer.writeAll(memoryIds.build().toArray(), coldSnapshot(), locks, this::inMemoryFilm,
+                film -> film.getFilmLikedUsersId().size(), null, EntityCodec::writeFilm);
+    }
+
+    @Override
+    public void loadSnapshot(MappedSnapshot snapshot) {
+        attachColdFilms(new ColdSnapshotStore<>(snapshot, EntityCodec::readFilm));
+        restoreIssuedId(snapshot.meta());
+    }
+
+    // Записи применяются к уже восстановленному состоянию, отсутствующие фильмы пропускаются
+    @Override
+    public void applyRecord(DataInput in) throws IOException {
+        byte type = in.readByte();
+        try {
+            switch (type) {
+                case ADD -> {
+                    Film film = EntityCodec.readFilm(in);
+                    restoreFilm(film);
+                    restoreIssuedId(film.getId());
+                }
+                case UPDATE -> super.updateFilm(EntityCodec.readFilm(in));
+                case REMOVE -> super.removeFilm(in.readLong());
+                case LIKE -> super.addLike(in.readLong(), in.readLong());
+                case UNLIKE -> super.removeLike(in.readLong(), in.readLong());
+                case CLEAR -> {
+                    super.clear();
+                    maxIssuedId.set(0);
+                }
+                case ADD_ALL -> {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        Film film = EntityCodec.readFilm(in);
+                        restoreFilm(film);
+                        restoreIssuedId(film.getId());
+                    }
+                }
+                case LIKE_ALL -> {
+                    List<LikeEdge> likes = new ArrayList<>();
+                    for (int count = in.readInt(); count > 0; count--) {
+                        likes.add(new LikeEdge(in.readLong(), in.readLong()));
+                    }
+                    super.addLikes(likes, (index, message) ->
+                            log.debug("Лайк из журнала пропущен: {}", message));
+                }
+                case UNLIKE_USER_FILMS -> {
+                    long userId = in.readLong();
+                    long[] filmIds = new long[in.readInt()];
+                    for (int i = 0; i < filmIds.length; i++) {
+                        filmIds[i] = in.readLong();
+                    }
+                    super.removeLikesOf(userId, filmIds);
+                }
+                default -> throw new IOException("Неизвестный тип записи журнала фильмов: " + type);
+            }
+        } catch (NotFoundException e) {
+            log.debug("Запись журнала фильмов пропущена: {}", e.getMessage());
+        }
+    }
+
+    private static Film fieldsOf(Film film) {
+        return new Film(film.getId(), film.getName(), film.getDescription(), film.getReleaseDate(), film.getDuration());
+    }
+
+    private ColdSnapshotStore<Film> coldSnapshot() {
+        return coldFilms() instanceof ColdSnapshotStore<Film> cold ? cold : null;
+    }
+
+    private void restoreIssuedId(long issued) {
+        maxIssuedId.accumulateAndGet(issued, Math::max);
+        restoreIdSequence(issued);
+    }
+}
@@ -0,0 +1,181 @@
+package ru.yandex.practicum.filmorate.storage.durable;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.exception.StorageException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+// Журнал изменений одного хранилища плюс периодические снимки его состояния.
+// Снимок «нечеткий»: он может содержать часть изменений после своего LSN, поэтому все записи журнала идемпотентны.
+// Снимок не читается целиком при старте, а отображается в память и отдается хранилищу как холодный слой
+@Slf4j
+public class DurableJournal implements Closeable {
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private final Path directory;
+    private final DurableStorageProperties properties;
+    private final StateHandler handler;
+    private final WriteAheadLog wal;
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private final AtomicLong recordsSinceSnapshot = new AtomicLong();
+    private ScheduledExecutorService scheduler;
+    private long lastSnapshotNanos;
+
+    public DurableJournal(Path directory, DurableStorageProperties properties, StateHandler handler) {
+        this.directory = directory;
+        this.properties = properties;
+        this.handler = handler;
+        this.wal = new WriteAheadLog(directory, properties.getFsync(), properties.getFsyncInterval().toMillis(),
+                properties.getMaxBatchSize());
+    }
+
+    public void start() {
+        long startedAt = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            long snapshotLsn = loadLatestSnapshot();
+            long[] replayed = new long[1];
+            long lastLsn = wal.replay(snapshotLsn, (lsn, payload) -> {
+                applyRecord(payload);
+                replayed[0]++;
+            });
+            wal.open(lastLsn);
+            recordsSinceSnapshot.set(replayed[0]);
+            log.info("Хранилище {} восстановлено за {} мс: снимок до LSN {}, проиграно записей журнала: {}",
+                    directory, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), snapshotLsn, replayed[0]);
+        } catch (IOException e) {
+            throw new StorageException("Не удалось восстановить хранилище " + directory, e);
+        }
+        lastSnapshotNanos = System.nanoTime();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-" + directory.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::snapshotIfDue, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public void append(RecordWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try {
+            writer.write(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        wal.append(bytes.toByteArray());
+        recordsSinceSnapshot.incrementAndGet();
+    }
+
+    public void snapshot() {
+        snapshotLock.lock();
+        try {
+            long lsn = wal.roll();
+            long startedAt = System.nanoTime();
+            recordsSinceSnapshot.set(0);
+            Path target = directory.resolve(SNAPSHOT_PREFIX + String.format("%020d", lsn) + SNAPSHOT_SUFFIX);
+            Path temporary = directory.resolve(target.getFileName() + ".tmp");
+            try (MappedSnapshotWriter writer = new MappedSnapshotWriter(temporary, lsn)) {
+                handler.writeSnapshot(writer);
+                writer.finish();
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            // Отображенный в память старый снимок остается доступен хранилищу и после удаления файла
+            for (Path old : snapshots()) {
+                if (!old.equals(target)) {
+                    Files.deleteIfExists(old);
+                }
+            }
+            wal.deleteSegmentsUpTo(lsn);
+            lastSnapshotNanos = System.nanoTime();
+            log.info("Снимок {} до LSN {} записан за {} мс", directory, lsn,
+                    TimeUnit.NANOSECONDS.toMillis(lastSnapshotNanos - startedAt));
+        } catch (IOException e) {
+            throw new StorageException("Не удалось записать снимок хранилища " + directory, e);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        wal.close();
+    }
+
+    private void snapshotIfDue() {
+        boolean byRecords = recordsSinceSnapshot.get() >= properties.getSnapshotEveryRecords();
+        boolean byTime = recordsSinceSnapshot.get() > 0
+                && System.nanoTime() - lastSnapshotNanos >= properties.getSnapshotInterval().toNanos();
+        if (!byRecords && !byTime) {
+            return;
+        }
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            log.error("Фоновый снимок {} не удался", directory, e);
+        }
+    }
+
+    private long loadLatestSnapshot() throws IOException {
+        List<Path> snapshots = snapshots();
+        if (snapshots.isEmpty()) {
+            return 0;
+        }
+        MappedSnapshot snapshot = MappedSnapshot.open(snapshots.get(snapshots.size() - 1));
+        handler.loadSnapshot(snapshot);
+        return snapshot.lsn();
+    }
+
+    private void applyRecord(byte[] payload) {
+        try {
+            handler.applyRecord(new DataInputStream(new ByteArrayInputStream(payload)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<Path> snapshots() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(SNAPSHOT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SNAPSHOT_SUFFIX))
+                    .sorted(Comparator.comparing(Path::getFileName))
+                    .toList();
+        }
+    }
+
+    interface StateHandler {
+
+        void writeSnapshot(MappedSnapshotWriter writer) throws IOException;
+
+        void loadSnapshot(MappedSnapshot snapshot) throws IOException;
+
+        void applyRecord(DataInput in) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface RecordWriter {
+        void write(DataOutput out) throws IOException;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.storage.durable;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "filmorate.storage.durable")
+public class DurableStorageProperties {
+    private Path directory = Path.of("data");
+    private FsyncPolicy fsync = FsyncPolicy.EVERY_COMMIT;
+    private Duration fsyncInterval = Duration.ofMillis(100);
+    private int maxBatchSize = 4096;
+    private Duration snapshotInterval = Duration.ofMinutes(5);
+    private long snapshotEveryRecords = 1_000_000;
+}
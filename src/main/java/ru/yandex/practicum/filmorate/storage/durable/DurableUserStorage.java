@@ -0,0 +1,284 @@
+package ru.yandex.practicum.filmorate.storage.durable;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.FriendEdge;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.BatchErrors;
+import ru.yandex.practicum.filmorate.storage.id.IdGenerator;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+// Чтение идет из памяти или из отображенного снимка; каждое изменение под блокировкой пользователя сначала
+// дописывается в журнал и только потом применяется к памяти
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "durable")
+@Slf4j
+public class DurableUserStorage extends InMemoryUserStorage implements DurableJournal.StateHandler {
+    private static final byte ADD = 1;
+    private static final byte UPDATE = 2;
+    private static final byte REMOVE = 3;
+    private static final byte FRIEND = 4;
+    private static final byte UNFRIEND = 5;
+    private static final byte CLEAR = 6;
+    private static final byte ADD_ALL = 7;
+    private static final byte FRIEND_ALL = 8;
+    private static final byte DROP_DANGLING_FRIEND = 9;
+
+    private final DurableJournal journal;
+    private final AtomicLong maxIssuedId = new AtomicLong();
+
+    @Autowired
+    public DurableUserStorage(@Qualifier("userIdGenerator") IdGenerator idGenerator,
+                              DurableStorageProperties properties) {
+        super(idGenerator);
+        this.journal = new DurableJournal(properties.getDirectory().resolve("users"), properties, this);
+    }
+
+    @PostConstruct
+    public void start() {
+        journal.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        journal.close();
+    }
+
+    public void snapshot() {
+        journal.snapshot();
+    }
+
+    // Запись дописывается в журнал до изменения памяти и под той же блокировкой: порядок LSN совпадает
+    // с порядком изменений, а при ошибке журнала память остается прежней
+    @Override
+    protected void insertUser(User user) {
+        locks.withLock(user.getId(), () -> {
+            journal.append(out -> {
+                out.writeByte(ADD);
+                EntityCodec.writeUser(out, user);
+            });
+            super.insertUser(user);
+            maxIssuedId.accumulateAndGet(user.getId(), Math::max);
+        });
+    }
+
+    // Пакет — одна запись журнала, дописанная под тем же захватом всех блокировок, что и вставка
+    @Override
+    protected void insertUsers(List<User> users) {
+        locks.withAllLocks(() -> {
+            journal.append(out -> {
+                out.writeByte(ADD_ALL);
+                out.writeInt(users.size());
+                for (User user : users) {
+                    EntityCodec.writeUser(out, user);
+                }
+            });
+            super.insertUsers(users);
+            users.forEach(user -> maxIssuedId.accumulateAndGet(user.getId(), Math::max));
+        });
+    }
+
+    // Удаление снимает обратные ссылки у друзей, поэтому удаляемый и все его друзья блокируются на время записи
+    // в журнал и каскада. Друзья читаются до захвата и перепроверяются под ним: новую дружбу без блокировки
+    // удаляемого не добавить, так что под захватом множество может только сократиться
+    @Override
+    public User removeUser(Long id) {
+        while (true) {
+            long[] friendIds = containsUser(id) ? getUserById(id).getFriendsId().toLongArray() : new long[0];
+            long[] lockedIds = Arrays.copyOf(friendIds, friendIds.length + 1);
+            lockedIds[friendIds.length] = id;
+            User removed = locks.withLocks(lockedIds, () -> {
+                if (!containsUser(id)) {
+                    return super.removeUser(id);
+                }
+                for (long friendId : getUserById(id).getFriendsId().toLongArray()) {
+                    if (Arrays.binarySearch(friendIds, friendId) < 0) {
+                        return null;
+                    }
+                }
+                journal.append(out -> {
+                    out.writeByte(REMOVE);
+                    out.writeLong(id);
+                });
+                return super.removeUser(id);
+            });
+            if (removed != null) {
+                return removed;
+            }
+        }
+    }
+
+    // Запись дописывается после проверок super, когда новый email уже занят за пользователем, и до изменения
+    // полей: отклоненное обновление в журнал не попадает
+    @Override
+    public User updateUser(User updatedUser) {
+        return super.updateUser(updatedUser, () -> journal.append(out -> {
+            out.writeByte(UPDATE);
+            EntityCodec.writeUser(out, fieldsOf(updatedUser));
+        }));
+    }
+
+    // Если кого-то из пары нет, в журнал ничего не попадает, а исключение с прежним текстом бросит super
+    @Override
+    public void addFriend(Long userId, Long friendId) {
+        locks.withLocks(userId, friendId, () -> {
+            if (containsUser(userId) && containsUser(friendId)) {
+                journal.append(out -> {
+                    out.writeByte(FRIEND);
+                    out.writeLong(userId);
+                    out.writeLong(friendId);
+                });
+            }
+            super.addFriend(userId, friendId);
+        });
+    }
+
+    @Override
+    public void removeFriend(Long userId, Long friendId) {
+        locks.withLocks(userId, friendId, () -> {
+            if (containsUser(userId) && containsUser(friendId)) {
+                journal.append(out -> {
+                    out.writeByte(UNFRIEND);
+                    out.writeLong(userId);
+                    out.writeLong(friendId);
+                });
+            }
+            super.removeFriend(userId, friendId);
+        });
+    }
+
+    // В журнал попадают дружбы, которые примет super; остальные он отклонит с прежними сообщениями
+    @Override
+    public void addFriends(List<FriendEdge> friendships, BatchErrors errors) {
+        locks.withAllLocks(() -> {
+            List<FriendEdge> accepted = friendships.stream()
+                    .filter(friendship -> !friendship.userId().equals(friendship.friendId()))
+                    .filter(friendship -> containsUser(friendship.userId()) && containsUser(friendship.friendId()))
+                    .toList();
+            if (!accepted.isEmpty()) {
+                journal.append(out -> {
+                    out.writeByte(FRIEND_ALL);
+                    out.writeInt(accepted.size());
+                    for (FriendEdge friendship : accepted) {
+                        out.writeLong(friendship.userId());
+                        out.writeLong(friendship.friendId());
+                    }
+                });
+            }
+            super.addFriends(friendships, errors);
+        });
+    }
+
+    @Override
+    protected boolean removeDanglingFriend(long userId, long friendId) {
+        return locks.withLocks(userId, friendId, () -> {
+            boolean dangling = containsUser(userId) && !containsUser(friendId)
+                    && getUserById(userId).getFriendsId().contains(friendId);
+            if (!dangling) {
+                return false;
+            }
+            journal.append(out -> {
+                out.writeByte(DROP_DANGLING_FRIEND);
+                out.writeLong(userId);
+                out.writeLong(friendId);
+            });
+            return super.removeDanglingFriend(userId, friendId);
+        });
+    }
+
+    @Override
+    public void clear() {
+        locks.withAllLocks(() -> {
+            journal.append(out -> out.writeByte(CLEAR));
+            super.clear();
+            maxIssuedId.set(0);
+        });
+    }
+
+    @Override
+    public void writeSnapshot(MappedSnapshotWriter writer) throws IOException {
+        writer.meta(maxIssuedId.get());
+        LongStream.Builder memoryIds = LongStream.builder();
+        forEachUser(user -> memoryIds.add(user.getId()));
+        writer.writeAll(memoryIds.build().toArray(), coldSnapshot(), locks, this::inMemoryUser,
+                user -> user.getFriendsId().size(), User::getEmail, EntityCodec::writeUser);
+    }
+
+    // Пользователи остаются в снимке целиком: уникальность email проверяется по индексу хешей email в самом снимке
+    @Override
+    public void loadSnapshot(MappedSnapshot snapshot) {
+        attachColdUsers(new ColdSnapshotStore<>(snapshot, EntityCodec::readUser, EntityCodec::readUserEmail));
+        restoreIssuedId(snapshot.meta());
+    }
+
+    // Записи применяются к уже восстановленному состоянию, отсутствующие пользователи пропускаются
+    @Override
+    public void applyRecord(DataInput in) throws IOException {
+        byte type = in.readByte();
+        try {
+            switch (type) {
+                case ADD -> {
+                    User user = EntityCodec.readUser(in);
+                    restoreUser(user);
+                    restoreIssuedId(user.getId());
+                }
+                case UPDATE -> super.updateUser(EntityCodec.readUser(in));
+                case REMOVE -> super.removeUser(in.readLong());
+                case FRIEND -> super.addFriend(in.readLong(), in.readLong());
+                case UNFRIEND -> super.removeFriend(in.readLong(), in.readLong());
+                case CLEAR -> {
+                    super.clear();
+                    maxIssuedId.set(0);
+                }
+                case ADD_ALL -> {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        User user = EntityCodec.readUser(in);
+                        restoreUser(user);
+                        restoreIssuedId(user.getId());
+                    }
+                }
+                case FRIEND_ALL -> {
+                    List<FriendEdge> friendships = new ArrayList<>();
+                    for (int count = in.readInt(); count > 0; count--) {
+                        friendships.add(new FriendEdge(in.readLong(), in.readLong()));
+                    }
+                    super.addFriends(friendships, (index, message) ->
+                            log.debug("Дружба из журнала пропущена: {}", message));
+                }
+                case DROP_DANGLING_FRIEND -> super.removeDanglingFriend(in.readLong(), in.readLong());
+                default -> throw new IOException("Неизвестный тип записи журнала пользователей: " + type);
+            }
+        } catch (NotFoundException | ValidationException e) {
+            log.debug("Запись журнала пользователей пропущена: {}", e.getMessage());
+        }
+    }
+
+    private static User fieldsOf(User user) {
+        return new User(user.getId(), user.getEmail(), user.getLogin(), user.getName(), user.getBirthday());
+    }
+
+    private ColdSnapshotStore<User> coldSnapshot() {
+        return coldUsers() instanceof ColdSnapshotStore<User> cold ? cold : null;
+    }
+
+    private void restoreIssuedId(long issued) {
+        maxIssuedId.accumulateAndGet(issued, Math::max);
+        restoreIdSequence(issued);
+    }
+}
@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.storage.durable;
+
+import ru.yandex.practicum.filmorate.model.CompactIdSet;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+// Двоичное представление фильмов и пользователей для журнала и снимков
+final class EntityCodec {
+    private static final int NULL_LENGTH = -1;
+
+    private EntityCodec() {
+    }
+
+    static void writeFilm(DataOutput out, Film film) throws IOException {
+        out.writeLong(film.getId());
+        writeString(out, film.getName());
+        writeString(out, film.getDescription());
+        writeDate(out, film.getReleaseDate());
+        writeNullableLong(out, film.getDuration());
+        writeIds(out, film.getFilmLikedUsersId());
+    }
+
+    static Film readFilm(DataInput in) throws IOException {
+        Film film = new Film(in.readLong(), readString(in), readString(in), readDate(in), readNullableLong(in));
+        readIds(in, film.getFilmLikedUsersId());
+        return film;
+    }
+
+    static void writeUser(DataOutput out, User user) throws IOException {
+        out.writeLong(user.getId());
+        writeString(out, user.getEmail());
+        writeString(out, user.getLogin());
+        writeString(out, user.getName());
+        writeDate(out, user.getBirthday());
+        writeIds(out, user.getFriendsId());
+    }
+
+    static User readUser(DataInput in) throws IOException {
+        User user = new User(in.readLong(), readString(in), readString(in), readString(in), readDate(in));
+        readIds(in, user.getFriendsId());
+        return user;
+    }
+
+    // Читает только ID и email, не трогая друзей
+    static String readUserEmail(DataInput in) throws IOException {
+        in.readLong();
+        return readString(in);
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDate(DataOutput out, LocalDate date) throws IOException {
+        out.writeBoolean(date != null);
+        if (date != null) {
+            out.writeLong(date.toEpochDay());
+        }
+    }
+
+    private static LocalDate readDate(DataInput in) throws IOException {
+        return in.readBoolean() ? LocalDate.ofEpochDay(in.readLong()) : null;
+    }
+
+    private static void writeNullableLong(DataOutput out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readNullableLong(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeIds(DataOutput out, CompactIdSet ids) throws IOException {
+        long[] values = ids.toLongArray();
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    private static void readIds(DataInput in, CompactIdSet ids) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            ids.add(in.readLong());
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package ru.yandex.practicum.filmorate.storage.durable;
+
+public enum FsyncPolicy {
+    // fsync после каждой групповой записи, ответ клиенту только после него
+    EVERY_COMMIT,
+    // fsync не чаще заданного интервала: при сбое питания можно потерять последний интервал
+    INTERVAL,
+    // сброс на диск остается на усмотрение ОС
+    NONE
+}
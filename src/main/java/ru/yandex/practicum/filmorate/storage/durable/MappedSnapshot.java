@@ -0,0 +1,247 @@
+package ru.yandex.practicum.filmorate.storage.durable;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntPredicate;
+import java.util.zip.CRC32;
+
+// Снимок, отображенный в память через FileChannel.map. Формат файла:
+// заголовок | тела записей | колонки ID, смещений, длин, весов и CRC32 записей, отсортированные по ID |
+// для снимков с ключом — колонка хешей ключей и индекс (хеш << 32 | позиция), упорядоченный по хешу.
+// При открытии проверяется сумма заголовка и колонок, тело записи — своей суммой при каждом чтении.
+// Файл отображается кусками по 1 ГБ; писатель следит, чтобы запись и элементы колонок не пересекали границу куска
+final class MappedSnapshot {
+    static final int MAGIC = 0x464D5348;
+    static final int VERSION = 3;
+    static final int HEADER_SIZE = 2 * Integer.BYTES + 12 * Long.BYTES;
+    static final int CHUNK_BITS = 30;
+    static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final Path path;
+    private final MappedByteBuffer[] chunks;
+    private final long lsn;
+    private final long meta;
+    private final int size;
+    private final long idsOffset;
+    private final long offsetsOffset;
+    private final long lengthsOffset;
+    private final long weightsOffset;
+    private final long checksumsOffset;
+    private final long keyHashesOffset;
+    private final long keyIndexOffset;
+    private final int keyCount;
+
+    private MappedSnapshot(Path path, MappedByteBuffer[] chunks, ByteBuffer header) {
+        this.path = path;
+        this.chunks = chunks;
+        this.lsn = header.getLong();
+        this.meta = header.getLong();
+        this.size = Math.toIntExact(header.getLong());
+        this.idsOffset = header.getLong();
+        this.offsetsOffset = header.getLong();
+        this.lengthsOffset = header.getLong();
+        this.weightsOffset = header.getLong();
+        this.checksumsOffset = header.getLong();
+        this.keyHashesOffset = header.getLong();
+        this.keyIndexOffset = header.getLong();
+        this.keyCount = Math.toIntExact(header.getLong());
+    }
+
+    static MappedSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Снимок " + path + " обрезан");
+            }
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((fileSize + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = (long) i << CHUNK_BITS;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, fileSize - start));
+            }
+            ByteBuffer header = chunks[0].duplicate();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Неизвестный формат снимка " + path);
+            }
+            MappedSnapshot snapshot = new MappedSnapshot(path, chunks, header);
+            long expected = header.getLong();
+            if (snapshot.idsOffset < HEADER_SIZE || snapshot.idsOffset > fileSize
+                    || snapshot.columnsChecksum(fileSize) != expected) {
+                throw new IOException("Контрольная сумма снимка " + path + " не совпала");
+            }
+            return snapshot;
+        }
+    }
+
+    long lsn() {
+        return lsn;
+    }
+
+    long meta() {
+        return meta;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long id(int index) {
+        return getLong(idsOffset + (long) index * Long.BYTES);
+    }
+
+    int weight(int index) {
+        return getInt(weightsOffset + (long) index * Integer.BYTES);
+    }
+
+    int indexOf(long id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleId = id(middle);
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    // Позиция первой записи с ID больше id или size(), если таких нет
+    int higherIndex(long id) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (id(middle) <= id) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Тело записи с проверкой его суммы: поврежденная запись не декодируется
+    DataInput record(int index) throws IOException {
+        ByteBuffer bytes = recordBytes(index);
+        if (crc(bytes.duplicate()) != recordChecksum(index)) {
+            throw new IOException("Контрольная сумма записи " + id(index) + " снимка " + path + " не совпала");
+        }
+        return new DataInputStream(new BufferInputStream(bytes));
+    }
+
+    int recordChecksum(int index) {
+        return getInt(checksumsOffset + (long) index * Integer.BYTES);
+    }
+
+    int keyHash(int index) {
+        return keyHashesOffset == 0 ? 0 : getInt(keyHashesOffset + (long) index * Integer.BYTES);
+    }
+
+    // Передает в test позиции записей с таким хешем ключа, пока test не вернет true
+    boolean anyWithKeyHash(int hash, IntPredicate test) {
+        long from = (long) hash << 32;
+        int low = 0;
+        int high = keyCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keyEntry(middle) < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int i = low; i < keyCount; i++) {
+            long entry = keyEntry(i);
+            if ((int) (entry >> 32) != hash) {
+                return false;
+            }
+            if (test.test((int) entry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static int keyHash(String key) {
+        return key == null ? 0 : key.hashCode();
+    }
+
+    static int crc(ByteBuffer bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    ByteBuffer recordBytes(int index) {
+        long offset = getLong(offsetsOffset + (long) index * Long.BYTES);
+        int length = getInt(lengthsOffset + (long) index * Integer.BYTES);
+        return chunks[(int) (offset >>> CHUNK_BITS)].slice((int) (offset & CHUNK_MASK), length);
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+
+    private long getLong(long position) {
+        return chunks[(int) (position >>> CHUNK_BITS)].getLong((int) (position & CHUNK_MASK));
+    }
+
+    private int getInt(long position) {
+        return chunks[(int) (position >>> CHUNK_BITS)].getInt((int) (position & CHUNK_MASK));
+    }
+
+    private long keyEntry(int index) {
+        return getLong(keyIndexOffset + (long) index * Long.BYTES);
+    }
+
+    // Сумма колонок (от колонки ID до конца файла), затем полей заголовка между версией и самой суммой.
+    // Тела записей сюда не входят: их проверяют собственные суммы при чтении
+    private long columnsChecksum(long fileSize) {
+        CRC32 crc = new CRC32();
+        for (int i = (int) (idsOffset >>> CHUNK_BITS); i < chunks.length; i++) {
+            long start = (long) i << CHUNK_BITS;
+            ByteBuffer chunk = chunks[i].duplicate();
+            chunk.position((int) (Math.max(idsOffset, start) - start));
+            chunk.limit((int) (Math.min(fileSize, start + CHUNK_SIZE) - start));
+            crc.update(chunk);
+        }
+        crc.update(chunks[0].duplicate().position(2 * Integer.BYTES).limit(HEADER_SIZE - Long.BYTES));
+        return crc.getValue();
+    }
+
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
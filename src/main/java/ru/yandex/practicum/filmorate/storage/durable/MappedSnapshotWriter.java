@@ -0,0 +1,274 @@
+package ru.yandex.practicum.filmorate.storage.durable;
+
+import ru.yandex.practicum.filmorate.storage.StripedLock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32;
+
+// Пишет снимок в формате MappedSnapshot; записи должны поступать строго по возрастанию ID
+final class MappedSnapshotWriter implements Closeable {
+    private final FileChannel channel;
+    private final long lsn;
+    private final CRC32 crc = new CRC32();
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream recordOut = new DataOutputStream(recordBytes);
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+    private long position = MappedSnapshot.HEADER_SIZE;
+    private long meta;
+    private long[] ids = new long[1024];
+    private long[] offsets = new long[1024];
+    private int[] lengths = new int[1024];
+    private int[] weights = new int[1024];
+    private int[] checksums = new int[1024];
+    private int[] keyHashes = new int[1024];
+    private boolean keyed;
+    // В общую сумму попадают только колонки: тела записей защищены своими суммами
+    private boolean checksumming;
+    private int size;
+
+    MappedSnapshotWriter(Path path, long lsn) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.channel.position(MappedSnapshot.HEADER_SIZE);
+        this.lsn = lsn;
+    }
+
+    // Произвольное число хранилища, например последний выданный ID
+    void meta(long value) {
+        meta = value;
+    }
+
+    // Объединяет ID из памяти с холодным снимком и пишет каждую запись под ее блокировкой:
+    // из памяти, если она поднята, иначе копирует байты из холодного снимка без декодирования.
+    // key — уникальный ключ записи для индекса по хешу (у пользователей — email) или null
+    <T> void writeAll(long[] memoryIds, ColdSnapshotStore<T> cold, StripedLock locks, LongFunction<T> memory,
+                      ToIntFunction<T> weight, Function<T, String> key, EntityWriter<T> writer) throws IOException {
+        keyed = key != null;
+        Arrays.sort(memoryIds);
+        int coldSize = cold == null ? 0 : cold.snapshot().size();
+        int memoryIndex = 0;
+        int coldIndex = 0;
+        try {
+            while (memoryIndex < memoryIds.length || coldIndex < coldSize) {
+                long memoryId = memoryIndex < memoryIds.length ? memoryIds[memoryIndex] : Long.MAX_VALUE;
+                long coldId = coldIndex < coldSize ? cold.snapshot().id(coldIndex) : Long.MAX_VALUE;
+                long id = Math.min(memoryId, coldId);
+                if (memoryId == id) {
+                    memoryIndex++;
+                }
+                if (coldId == id) {
+                    coldIndex++;
+                }
+                locks.withLock(id, () -> {
+                    try {
+                        T entity = memory.apply(id);
+                        if (entity != null) {
+                            int keyHash = keyed ? MappedSnapshot.keyHash(key.apply(entity)) : 0;
+                            write(id, weight.applyAsInt(entity), keyHash, out -> writer.write(out, entity));
+                        } else if (cold != null && cold.contains(id)) {
+                            copy(cold.snapshot(), cold.snapshot().indexOf(id));
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    void write(long id, int weight, int keyHash, DurableJournal.RecordWriter record) throws IOException {
+        recordBytes.reset();
+        record.write(recordOut);
+        ByteBuffer bytes = ByteBuffer.wrap(recordBytes.toByteArray());
+        append(id, weight, keyHash, MappedSnapshot.crc(bytes.duplicate()), bytes);
+    }
+
+    // Сумма записи переносится вместе с байтами: повреждение в старом снимке не маскируется новой суммой
+    void copy(MappedSnapshot source, int index) throws IOException {
+        append(source.id(index), source.weight(index), source.keyHash(index), source.recordChecksum(index),
+                source.recordBytes(index));
+    }
+
+    void finish() throws IOException {
+        long idsOffset = align(Long.BYTES);
+        flush();
+        checksumming = true;
+        for (int i = 0; i < size; i++) {
+            putLong(ids[i]);
+        }
+        long offsetsOffset = position;
+        for (int i = 0; i < size; i++) {
+            putLong(offsets[i]);
+        }
+        long lengthsOffset = position;
+        for (int i = 0; i < size; i++) {
+            putInt(lengths[i]);
+        }
+        long weightsOffset = position;
+        for (int i = 0; i < size; i++) {
+            putInt(weights[i]);
+        }
+        long checksumsOffset = position;
+        for (int i = 0; i < size; i++) {
+            putInt(checksums[i]);
+        }
+        long keyHashesOffset = 0;
+        long keyIndexOffset = 0;
+        if (keyed) {
+            keyHashesOffset = position;
+            for (int i = 0; i < size; i++) {
+                putInt(keyHashes[i]);
+            }
+            long[] keyIndex = new long[size];
+            for (int i = 0; i < size; i++) {
+                keyIndex[i] = ((long) keyHashes[i] << 32) | i;
+            }
+            Arrays.sort(keyIndex);
+            keyIndexOffset = align(Long.BYTES);
+            for (long entry : keyIndex) {
+                putLong(entry);
+            }
+        }
+        flush();
+
+        ByteBuffer fields = ByteBuffer.allocate(11 * Long.BYTES)
+                .putLong(lsn)
+                .putLong(meta)
+                .putLong(size)
+                .putLong(idsOffset)
+                .putLong(offsetsOffset)
+                .putLong(lengthsOffset)
+                .putLong(weightsOffset)
+                .putLong(checksumsOffset)
+                .putLong(keyHashesOffset)
+                .putLong(keyIndexOffset)
+                .putLong(keyed ? size : 0)
+                .flip();
+        crc.update(fields.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(MappedSnapshot.HEADER_SIZE)
+                .putInt(MappedSnapshot.MAGIC)
+                .putInt(MappedSnapshot.VERSION)
+                .put(fields)
+                .putLong(crc.getValue())
+                .flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void append(long id, int weight, int keyHash, int checksum, ByteBuffer record) throws IOException {
+        if (size > 0 && id <= ids[size - 1]) {
+            throw new IllegalStateException("ID записей снимка должны возрастать: " + id + " после " + ids[size - 1]);
+        }
+        int length = record.remaining();
+        if (length > MappedSnapshot.CHUNK_SIZE) {
+            throw new IOException("Запись " + id + " не помещается в кусок снимка: " + length + " байт");
+        }
+        // Запись не должна пересекать границу куска отображения
+        long chunkEnd = (position | (MappedSnapshot.CHUNK_SIZE - 1)) + 1;
+        if (position + length > chunkEnd) {
+            pad(chunkEnd - position);
+        }
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+            checksums = Arrays.copyOf(checksums, capacity);
+            keyHashes = Arrays.copyOf(keyHashes, capacity);
+        }
+        ids[size] = id;
+        offsets[size] = position;
+        lengths[size] = length;
+        weights[size] = weight;
+        checksums[size] = checksum;
+        keyHashes[size] = keyHash;
+        size++;
+        put(record);
+    }
+
+    private long align(int alignment) throws IOException {
+        long misalignment = position % alignment;
+        if (misalignment != 0) {
+            pad(alignment - misalignment);
+        }
+        return position;
+    }
+
+    private void pad(long count) throws IOException {
+        for (long i = 0; i < count; i++) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put((byte) 0);
+        }
+        position += count;
+    }
+
+    private void put(ByteBuffer bytes) throws IOException {
+        position += bytes.remaining();
+        while (bytes.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int count = Math.min(buffer.remaining(), bytes.remaining());
+            buffer.put(buffer.position(), bytes, bytes.position(), count);
+            buffer.position(buffer.position() + count);
+            bytes.position(bytes.position() + count);
+        }
+    }
+
+    private void putLong(long value) throws IOException {
+        if (buffer.remaining() < Long.BYTES) {
+            flush();
+        }
+        buffer.putLong(value);
+        position += Long.BYTES;
+    }
+
+    private void putInt(int value) throws IOException {
+        if (buffer.remaining() < Integer.BYTES) {
+            flush();
+        }
+        buffer.putInt(value);
+        position += Integer.BYTES;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        if (checksumming) {
+            crc.update(buffer.duplicate());
+        }
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @FunctionalInterface
+    interface EntityWriter<T> {
+        void write(DataOutput out, T entity) throws IOException;
+    }
+}
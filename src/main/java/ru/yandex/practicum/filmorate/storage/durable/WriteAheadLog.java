@@ -0,0 +1,366 @@
+package ru.yandex.practicum.filmorate.storage.durable;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.exception.StorageException;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Журнал из сегментов wal-<первый LSN>.log; кадр записи: длина, LSN, CRC32, данные
+@Slf4j
+public class WriteAheadLog implements Closeable {
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int FRAME_HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int MAX_RECORD_SIZE = 64 << 20;
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<PendingRecord> queue = new LinkedBlockingQueue<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private long lastLsn;
+    private Thread writer;
+    private FileChannel segment;
+    private long lastFsyncNanos;
+    // Длина текущего сегмента без незавершенной группы: до нее обрезается оборванная запись
+    private long committedSize;
+    private volatile boolean closed;
+    // Поток записи остановлен или сегмент не удалось привести в порядок: новые записи сразу отклоняются
+    private volatile Throwable failure;
+
+    public WriteAheadLog(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis, int maxBatchSize) {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    // Проигрывает записи с LSN больше afterLsn; оборванный хвост последнего сегмента обрезается
+    public long replay(long afterLsn, RecordConsumer consumer) throws IOException {
+        Files.createDirectories(directory);
+        long lsn = afterLsn;
+        List<Path> segments = segments();
+        for (int i = 0; i < segments.size(); i++) {
+            Path path = segments.get(i);
+            long validLength = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+                while (true) {
+                    int length;
+                    try {
+                        length = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (length < 0 || length > MAX_RECORD_SIZE) {
+                        throw new IOException("Некорректная длина записи: " + length);
+                    }
+                    long recordLsn = in.readLong();
+                    int checksum = in.readInt();
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+                    if (checksum(payload) != checksum) {
+                        throw new IOException("Контрольная сумма записи " + recordLsn + " не совпала");
+                    }
+                    if (recordLsn > lsn) {
+                        consumer.accept(recordLsn, payload);
+                        lsn = recordLsn;
+                    }
+                    validLength += FRAME_HEADER_SIZE + length;
+                }
+            } catch (IOException e) {
+                if (i < segments.size() - 1) {
+                    throw new StorageException("Сегмент журнала " + path + " поврежден в середине журнала", e);
+                }
+                log.warn("Журнал {} оборван после {} байт, хвост отброшен: {}", path, validLength, e.getMessage());
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(validLength);
+                }
+            }
+        }
+        return lsn;
+    }
+
+    public void open(long lastRecoveredLsn) throws IOException {
+        lastLsn = lastRecoveredLsn;
+        segment = openSegment(lastLsn + 1);
+        committedSize = segment.size();
+        lastFsyncNanos = System.nanoTime();
+        writer = new Thread(this::writeLoop, "wal-writer-" + directory.getFileName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Возвращается после записи (и fsync, если так требует политика) всей группы, куда попала запись
+    public long append(byte[] payload) {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        long lsn;
+        appendLock.lock();
+        try {
+            ensureWritable();
+            lsn = ++lastLsn;
+            queue.add(new PendingRecord(lsn, payload, written));
+        } finally {
+            appendLock.unlock();
+        }
+        await(written);
+        return lsn;
+    }
+
+    // Начинает новый сегмент и возвращает LSN последней записи, оставшейся в предыдущих
+    public long roll() {
+        CompletableFuture<Void> rolled = new CompletableFuture<>();
+        long lsn;
+        appendLock.lock();
+        try {
+            ensureWritable();
+            lsn = lastLsn;
+            queue.add(new PendingRecord(lsn + 1, null, rolled));
+        } finally {
+            appendLock.unlock();
+        }
+        await(rolled);
+        return lsn;
+    }
+
+    public void deleteSegmentsUpTo(long lsn) throws IOException {
+        for (Path path : segments()) {
+            if (firstLsn(path) <= lsn) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            appendLock.unlock();
+        }
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void ensureWritable() {
+        if (closed) {
+            throw new StorageException("Журнал " + directory + " закрыт", null);
+        }
+        if (failure != null) {
+            throw new StorageException("Журнал " + directory + " недоступен для записи", failure);
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingRecord> batch = new ArrayList<>(maxBatchSize);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        Throwable stopReason = null;
+        try {
+            while (!closed || !queue.isEmpty()) {
+                PendingRecord first = queue.poll(pollTimeoutNanos(), TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    fsyncIfDue();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                try {
+                    buffer = writeBatch(batch, buffer);
+                    batch.forEach(record -> record.written().complete(null));
+                } catch (IOException | RuntimeException e) {
+                    log.error("Ошибка записи журнала {}", directory, e);
+                    // Уже подтвержденные записи (до смены сегмента) completeExceptionally не затрагивает
+                    batch.forEach(record -> record.written().completeExceptionally(e));
+                    if (!discardUncommitted()) {
+                        stopReason = e;
+                        return;
+                    }
+                }
+                batch.clear();
+            }
+            segment.force(false);
+            segment.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopReason = e;
+        } catch (IOException e) {
+            log.error("Ошибка закрытия журнала {}", directory, e);
+        } catch (RuntimeException | Error e) {
+            stopReason = e;
+            throw e;
+        } finally {
+            failPending(stopReason);
+        }
+    }
+
+    // Оборванная группа обрезается, иначе следующие записи легли бы за поврежденным кадром и при восстановлении
+    // сегмент считался бы поврежденным в середине. Если обрезать не удалось, писать в сегмент больше нельзя
+    private boolean discardUncommitted() {
+        try {
+            if (segment.size() > committedSize) {
+                segment.truncate(committedSize);
+            }
+            return true;
+        } catch (IOException e) {
+            log.error("Не удалось отбросить оборванную запись журнала {}, запись остановлена", directory, e);
+            return false;
+        }
+    }
+
+    // Поток записи завершается: ожидающие и все последующие записи получают ошибку, а не ждут вечно
+    private void failPending(Throwable reason) {
+        StorageException stopped = new StorageException("Поток записи журнала " + directory + " остановлен", reason);
+        appendLock.lock();
+        try {
+            if (failure == null) {
+                failure = stopped;
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        List<PendingRecord> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        pending.forEach(record -> record.written().completeExceptionally(stopped));
+    }
+
+    private ByteBuffer writeBatch(List<PendingRecord> batch, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        for (PendingRecord record : batch) {
+            if (record.payload() == null) {
+                flush(buffer);
+                segment.force(false);
+                segment.close();
+                // Записи до смены сегмента уже на диске: их подтверждаем сразу, откат затронет только новый сегмент
+                for (PendingRecord previous : batch) {
+                    if (previous == record) {
+                        break;
+                    }
+                    previous.written().complete(null);
+                }
+                segment = openSegment(record.lsn());
+                committedSize = segment.size();
+                lastFsyncNanos = System.nanoTime();
+                continue;
+            }
+            int frameSize = FRAME_HEADER_SIZE + record.payload().length;
+            if (buffer.remaining() < frameSize) {
+                flush(buffer);
+                if (buffer.capacity() < frameSize) {
+                    buffer = ByteBuffer.allocateDirect(frameSize);
+                }
+            }
+            buffer.putInt(record.payload().length)
+                    .putLong(record.lsn())
+                    .putInt(checksum(record.payload()))
+                    .put(record.payload());
+        }
+        flush(buffer);
+        if (fsyncPolicy == FsyncPolicy.EVERY_COMMIT) {
+            segment.force(false);
+            lastFsyncNanos = System.nanoTime();
+        } else {
+            fsyncIfDue();
+        }
+        committedSize = segment.size();
+        return buffer;
+    }
+
+    private void flush(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void fsyncIfDue() {
+        if (fsyncPolicy != FsyncPolicy.INTERVAL || System.nanoTime() - lastFsyncNanos < fsyncIntervalNanos) {
+            return;
+        }
+        try {
+            segment.force(false);
+            lastFsyncNanos = System.nanoTime();
+        } catch (IOException e) {
+            log.error("Ошибка fsync журнала {}", directory, e);
+        }
+    }
+
+    private long pollTimeoutNanos() {
+        return fsyncPolicy == FsyncPolicy.INTERVAL ? fsyncIntervalNanos : TimeUnit.MILLISECONDS.toNanos(100);
+    }
+
+    private FileChannel openSegment(long firstLsn) throws IOException {
+        Path path = directory.resolve(SEGMENT_PREFIX + String.format("%020d", firstLsn) + SEGMENT_SUFFIX);
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long firstLsn(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static void await(CompletableFuture<Void> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw new StorageException("Не удалось записать изменение в журнал", new UncheckedIOException(io));
+            }
+            throw new StorageException("Не удалось записать изменение в журнал", cause);
+        }
+    }
+
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(long lsn, byte[] payload);
+    }
+
+    private record PendingRecord(long lsn, byte[] payload, CompletableFuture<Void> written) {
+    }
+}
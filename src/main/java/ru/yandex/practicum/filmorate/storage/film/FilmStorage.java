@@ -1,20 +1,67 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeEdge;
+import ru.yandex.practicum.filmorate.storage.BatchErrors;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
     Film addFilm(Film film);
 
+    // Пакетная вставка: фильмам выдаются ID, отклоненные передаются в errors
+    void addFilms(List<Film> films, BatchErrors errors);
+
     Film removeFilm(Long filmId);
 
     Film updateFilm(Film updatedFilm);
 
     List<Film> getAllFilm();
 
+    // До limit фильмов с ID больше afterId по возрастанию ID
+    List<Film> getFilmsPage(long afterId, int limit);
+
+    // Передает в action все фильмы в состоянии на момент вызова, не собирая их в список
+    void exportFilms(Consumer<Film> action);
+
     Film getFilmById(Long filmId);
 
+    // Фильмы в порядке filmIds, отсутствующие пропускаются
+    List<Film> getFilmsByIds(Collection<Long> filmIds);
+
+    // true, если лайк добавлен или снят этим вызовом; повторный лайк ничего не меняет
+    boolean addLike(Long filmId, Long userId);
+
+    boolean removeLike(Long filmId, Long userId);
+
+    void addLikes(List<LikeEdge> likes, BatchErrors errors);
+
+    // Фильмы, лайкнутые пользователем, по обратному индексу в порядке возрастания ID
+    List<Film> getFilmsLikedBy(Long userId);
+
+    // Снимает все лайки пользователя и возвращает ID фильмов, с которых они сняты
+    long[] removeLikesOf(Long userId);
+
+    List<Film> getMostPopularFilms(int count);
+
+    // До limit фильмов, подходящих под запрос по названию и описанию, в порядке BM25
+    List<Film> searchFilms(String query, int limit);
+
+    // До limit фильмов с ID больше afterId, датой релиза в [releasedFrom, releasedTo] и продолжительностью
+    // в [minDuration, maxDuration] по возрастанию ID; null — граница не задана
+    List<Film> findFilms(LocalDate releasedFrom, LocalDate releasedTo, Long minDuration, Long maxDuration,
+                         long afterId, int limit);
+
+    // Для метрик: фильмы в памяти и в холодном слое, сумма лайков и число фильмов в рейтинге популярных
+    int size();
+
+    long likeCount();
+
+    int popularCount();
+
     void clear();
 }
@@ -1,20 +1,73 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.logging.LogMarkers;
+import ru.yandex.practicum.filmorate.model.CompactIdSet;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeEdge;
+import ru.yandex.practicum.filmorate.storage.BatchErrors;
+import ru.yandex.practicum.filmorate.storage.ColdStore;
+import ru.yandex.practicum.filmorate.storage.PointInTimeViews;
+import ru.yandex.practicum.filmorate.storage.StripedLock;
+import ru.yandex.practicum.filmorate.storage.id.IdGenerator;
+import ru.yandex.practicum.filmorate.storage.id.SequenceIdGenerator;
+
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+import java.util.stream.LongStream;
 
 @Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "memory", matchIfMissing = true)
 @Slf4j
 public class InMemoryFilmStorage implements FilmStorage {
-    private final Map<Long, Film> films = new HashMap<>();
+    private final Map<Long, Film> films = new ConcurrentHashMap<>();
+    // Упорядоченные ID фильмов из films для постраничной выдачи
+    private final NavigableSet<Long> filmIds = new ConcurrentSkipListSet<>();
+    protected final StripedLock locks = new StripedLock(64);
+    private final PopularityIndex popularityIndex = new PopularityIndex();
+    // Обратный индекс лайков: пользователь -> лайкнутые фильмы, меняется под блокировкой фильма вместе с его лайками
+    private final Map<Long, CompactIdSet> filmsByUser = new ConcurrentHashMap<>();
+    private final PointInTimeViews<Film> pointInTimeViews = new PointInTimeViews<>(Film::copy);
+    private final IdGenerator idGenerator;
+    private volatile ColdStore<Film> coldFilms = ColdStore.empty();
+    private final SearchIndex searchIndex = new SearchIndex();
+    // Дата релиза хранится номером дня от эпохи; фильмы без продолжительности в ее индекс не попадают
+    private final RangeIndex releaseDateIndex = new RangeIndex();
+    private final RangeIndex durationIndex = new RangeIndex();
+    // Фильмы из холодного слоя попадают в обратный индекс лайков и в индексы по полям фоновым проходом по возрастанию ID.
+    // coldIndexedUpTo — последний пройденный ID: фильм правее него индексируется при подъеме в память
+    private volatile boolean coldIndexed = true;
+    private volatile long coldIndexedUpTo;
+    private final AtomicReference<CompletableFuture<Void>> coldIndexing = new AtomicReference<>();
+
+    public InMemoryFilmStorage() {
+        this(new SequenceIdGenerator());
+    }
+
+    @Autowired
+    public InMemoryFilmStorage(@Qualifier("filmIdGenerator") IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
 
     @Override
     public Film addFilm(Film film) {
@@ -26,39 +79,124 @@ public class InMemoryFilmStorage implements FilmStorage {
             throw new ValidationException("Дата релиза не может быть раньше 28 декабря 1895 года");
         }
 
-        film.setId(getNextId());
-        films.put(film.getId(), film);
-        log.info("Успешно добавлен новый фильм с ID: {}", film.getId());
+        film.setId(idGenerator.nextId());
+        insertFilm(film);
+        log.info(LogMarkers.HOT_PATH, "Успешно добавлен новый фильм с ID: {}", film.getId());
         return film;
     }
 
+    // ID выдаются одним диапазоном на пакет, все фильмы кладутся под одним захватом блокировок
     @Override
-    public Film removeFilm(Long filmId) {
-        Film film = films.get(filmId);
-        if (film == null) {
-            throw new NotFoundException("Попытка удаления фильма. Фильм с ID: " + filmId + " не найден");
+    public void addFilms(List<Film> newFilms, BatchErrors errors) {
+        List<Film> accepted = new ArrayList<>(newFilms.size());
+        for (int i = 0; i < newFilms.size(); i++) {
+            Film film = newFilms.get(i);
+            if (film.getReleaseDate().isBefore(LocalDate.of(1895, 12, 28))) {
+                errors.reject(i, "Дата релиза не может быть раньше 28 декабря 1895 года");
+            } else {
+                accepted.add(film);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return;
         }
-        log.info("Фильм с ID: {} успешно удален.", filmId);
-        return films.remove(filmId);
+        long[] ids = idGenerator.nextIds(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            accepted.get(i).setId(ids[i]);
+        }
+        insertFilms(accepted);
+        log.info("Пакетно добавлено фильмов: {}, ID с {} по {}", accepted.size(), ids[0], ids[ids.length - 1]);
+    }
+
+    @Override
+    public Film removeFilm(Long filmId) {
+        return locks.withLock(filmId, () -> {
+            Film film = memoryFilm(filmId);
+            if (film == null) {
+                throw new NotFoundException("Попытка удаления фильма. Фильм с ID: " + filmId + " не найден");
+            }
+            pointInTimeViews.beforeChange(filmId, film);
+            films.remove(filmId);
+            filmIds.remove(filmId);
+            popularityIndex.remove(filmId, film.getFilmLikedUsersId().size());
+            film.getFilmLikedUsersId().forEachId(userId -> unindexLike(userId, filmId));
+            unindexFields(film);
+            log.info(LogMarkers.HOT_PATH, "Фильм с ID: {} успешно удален.", filmId);
+            return film;
+        });
     }
 
     @Override
     public List<Film> getAllFilm() {
-        return new ArrayList<>(films.values());
+        ColdStore<Film> cold = coldFilms;
+        if (cold.size() == 0) {
+            return new ArrayList<>(films.values());
+        }
+        // Запись могут поднять в память во время обхода, поэтому дубликаты схлопываются по ID
+        Map<Long, Film> all = new LinkedHashMap<>();
+        cold.forEach(film -> all.put(film.getId(), film));
+        films.values().forEach(film -> all.put(film.getId(), film));
+        return new ArrayList<>(all.values());
+    }
+
+    @Override
+    public List<Film> getFilmsPage(long afterId, int limit) {
+        List<Film> page = new ArrayList<>(Math.min(limit, 1024));
+        walkIds(afterId, filmId -> {
+            Film film = findFilm(filmId);
+            if (film != null) {
+                page.add(film);
+            }
+            return page.size() < limit;
+        });
+        return page;
+    }
+
+    // Согласованный срез на момент вызова: изменения во время обхода в него не попадают
+    @Override
+    public void exportFilms(Consumer<Film> action) {
+        PointInTimeViews.View<Film> view = pointInTimeViews.open();
+        try {
+            walkIds(0, filmId -> {
+                Film exported = locks.withLock(filmId, () -> view.visit(filmId, findFilm(filmId)));
+                if (exported != null) {
+                    action.accept(exported);
+                }
+                return true;
+            });
+            view.remaining().forEach(action);
+        } finally {
+            pointInTimeViews.close(view);
+        }
     }
 
     @Override
     public Film getFilmById(Long filmId) {
-        Film film = films.get(filmId);
+        Film film = findFilm(filmId);
         if (film == null) {
             throw new NotFoundException("Фильм с ID: " + filmId + " не найден");
         }
-        log.info("Фильм с ID: {} найден и успешно предоставлен в ответ на запрос.", filmId);
+        log.debug("Фильм с ID: {} найден и успешно предоставлен в ответ на запрос.", filmId);
         return film;
     }
 
+    @Override
+    public List<Film> getFilmsByIds(Collection<Long> filmIds) {
+        return filmIds.stream()
+                .map(this::findFilm)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
     @Override
     public Film updateFilm(Film updatedFilm) {
+        return updateFilm(updatedFilm, () -> {
+        });
+    }
+
+    // beforeChange вызывается под блокировкой фильма после всех проверок, до изменения полей:
+    // если он бросит исключение, фильм остается прежним
+    protected Film updateFilm(Film updatedFilm, Runnable beforeChange) {
         if (updatedFilm == null) {
             throw new ValidationException("Запрос на обновление данных фильма поступил с пустым телом");
         }
@@ -68,36 +206,445 @@ public class InMemoryFilmStorage implements FilmStorage {
             throw new ValidationException("ID фильма должен быть указан");
         }
 
+        if (updatedFilm.getReleaseDate() != null
+                && updatedFilm.getReleaseDate().isBefore(LocalDate.of(1895, 12, 28))) {
+            throw new ValidationException("Дата релиза не может быть раньше 28 декабря 1895 года");
+        }
+
+        return locks.withLock(filmId, () -> {
+            Film film = requireMemoryFilm(filmId);
+            beforeChange.run();
+            pointInTimeViews.beforeChange(filmId, film);
+            unindexFields(film);
+            film.setName(updatedFilm.getName());
+            film.setDescription(updatedFilm.getDescription());
+            film.setReleaseDate(updatedFilm.getReleaseDate());
+            film.setDuration(updatedFilm.getDuration());
+            indexFields(film);
+            log.info(LogMarkers.HOT_PATH, "Данные фильма с ID: {} успешно обновлены", film.getId());
+            return film;
+        });
+    }
+
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        return locks.withLock(filmId, () -> {
+            Film film = requireMemoryFilm(filmId);
+            pointInTimeViews.beforeChange(filmId, film);
+            int likesBefore = film.getFilmLikedUsersId().size();
+            if (!film.addLike(userId)) {
+                return false;
+            }
+            popularityIndex.update(filmId, likesBefore, film.getFilmLikedUsersId().size());
+            indexLike(userId, filmId);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean removeLike(Long filmId, Long userId) {
+        return locks.withLock(filmId, () -> {
+            Film film = requireMemoryFilm(filmId);
+            pointInTimeViews.beforeChange(filmId, film);
+            int likesBefore = film.getFilmLikedUsersId().size();
+            if (!film.removeLike(userId)) {
+                return false;
+            }
+            popularityIndex.update(filmId, likesBefore, film.getFilmLikedUsersId().size());
+            unindexLike(userId, filmId);
+            return true;
+        });
+    }
+
+    @Override
+    public void addLikes(List<LikeEdge> likes, BatchErrors errors) {
+        locks.withAllLocks(() -> {
+            for (int i = 0; i < likes.size(); i++) {
+                LikeEdge like = likes.get(i);
+                Film film = memoryFilm(like.filmId());
+                if (film == null) {
+                    errors.reject(i, "Фильм с ID: " + like.filmId() + " не найден");
+                    continue;
+                }
+                pointInTimeViews.beforeChange(film.getId(), film);
+                int likesBefore = film.getFilmLikedUsersId().size();
+                film.addLike(like.userId());
+                popularityIndex.update(film.getId(), likesBefore, film.getFilmLikedUsersId().size());
+                indexLike(like.userId(), film.getId());
+            }
+        });
+    }
+
+    @Override
+    public List<Film> getFilmsLikedBy(Long userId) {
+        ensureColdIndexed();
+        CompactIdSet liked = filmsByUser.get(userId);
+        if (liked == null) {
+            return List.of();
+        }
+        return getFilmsByIds(LongStream.of(liked.toLongArray()).boxed().toList());
+    }
+
+    @Override
+    public List<Film> searchFilms(String query, int limit) {
+        ensureColdIndexed();
+        return getFilmsByIds(LongStream.of(searchIndex.search(query, limit)).boxed().toList());
+    }
+
+    // Каждое заданное условие дает упорядоченный набор ID из своего индекса, наборы пересекаются слиянием.
+    // Фильм перечитывается и проверяется еще раз: между чтением индекса и фильма его могли изменить
+    @Override
+    public List<Film> findFilms(LocalDate releasedFrom, LocalDate releasedTo, Long minDuration, Long maxDuration,
+                                long afterId, int limit) {
+        ensureColdIndexed();
+        long[] matched = null;
+        if (releasedFrom != null || releasedTo != null) {
+            matched = releaseDateIndex.range(releasedFrom == null ? Long.MIN_VALUE : releasedFrom.toEpochDay(),
+                    releasedTo == null ? Long.MAX_VALUE : releasedTo.toEpochDay());
+        }
+        if (minDuration != null || maxDuration != null) {
+            long[] byDuration = durationIndex.range(minDuration == null ? Long.MIN_VALUE : minDuration,
+                    maxDuration == null ? Long.MAX_VALUE : maxDuration);
+            matched = matched == null ? byDuration : RangeIndex.intersect(matched, byDuration);
+        }
+        if (matched == null) {
+            return getFilmsPage(afterId, limit);
+        }
+        int from = Arrays.binarySearch(matched, afterId);
+        from = from >= 0 ? from + 1 : -from - 1;
+        return Arrays.stream(matched, from, matched.length)
+                .mapToObj(this::findFilm)
+                .filter(Objects::nonNull)
+                .filter(film -> inRange(film.getReleaseDate(), releasedFrom, releasedTo)
+                        && inRange(film.getDuration(), minDuration, maxDuration))
+                .limit(limit)
+                .toList();
+    }
+
+    // Снимает лайки пользователя только с тех фильмов, которые он лайкал, по обратному индексу
+    @Override
+    public long[] removeLikesOf(Long userId) {
+        return removeLikesOf(userId, likedFilmIds(userId));
+    }
+
+    // Снимает лайк пользователя с перечисленных фильмов и возвращает ID тех, где лайк действительно был
+    protected long[] removeLikesOf(Long userId, long[] filmIds) {
+        LongStream.Builder unliked = LongStream.builder();
+        for (long filmId : filmIds) {
+            locks.withLock(filmId, () -> {
+                Film film = memoryFilm(filmId);
+                if (film == null || !film.getFilmLikedUsersId().contains(userId)) {
+                    return;
+                }
+                pointInTimeViews.beforeChange(filmId, film);
+                int likesBefore = film.getFilmLikedUsersId().size();
+                film.removeLike(userId);
+                popularityIndex.update(filmId, likesBefore, film.getFilmLikedUsersId().size());
+                unindexLike(userId, filmId);
+                unliked.add(filmId);
+            });
+        }
+        long[] result = unliked.build().toArray();
+        log.info("Сняты лайки пользователя с ID: {} с {} фильмов", userId, result.length);
+        return result;
+    }
+
+    @Override
+    public List<Film> getMostPopularFilms(int count) {
+        return popularityIndex.top(count).stream()
+                .map(this::findFilm)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // Вставка фильма с уже выданным ID; наследник может дописать ее в журнал под той же блокировкой
+    protected void insertFilm(Film film) {
+        locks.withLock(film.getId(), () -> putNewFilm(film));
+    }
+
+    protected void insertFilms(List<Film> newFilms) {
+        locks.withAllLocks(() -> newFilms.forEach(this::putNewFilm));
+    }
+
+    protected boolean hasFilm(Long filmId) {
+        return findFilm(filmId) != null;
+    }
+
+    // Для отсутствующего фильма — null
+    protected Boolean isLikedBy(Long filmId, Long userId) {
+        Film film = findFilm(filmId);
+        return film == null ? null : film.getFilmLikedUsersId().contains(userId);
+    }
+
+    // ID фильмов, лайкнутых пользователем, по обратному индексу
+    protected long[] likedFilmIds(Long userId) {
+        ensureColdIndexed();
+        CompactIdSet liked = filmsByUser.get(userId);
+        return liked == null ? new long[0] : liked.toLongArray();
+    }
+
+    // Восстановление из снимка или журнала: фильм кладется с уже выданным ID
+    protected void restoreFilm(Film film) {
+        locks.withLock(film.getId(), () -> {
+            Film previous = films.put(film.getId(), film);
+            filmIds.add(film.getId());
+            boolean previousIndexed = previous != null;
+            if (previous == null) {
+                previous = coldFilms.read(film.getId());
+                coldFilms.evict(film.getId());
+                previousIndexed = previous != null && isColdFilmIndexed(film.getId());
+            }
+            if (previous != null) {
+                popularityIndex.remove(previous.getId(), previous.getFilmLikedUsersId().size());
+            }
+            if (previousIndexed) {
+                previous.getFilmLikedUsersId().forEachId(userId -> unindexLike(userId, film.getId()));
+                unindexFields(previous);
+            }
+            popularityIndex.update(film.getId(), 0, film.getFilmLikedUsersId().size());
+            indexLikes(film);
+            indexFields(film);
+        });
+        idGenerator.advanceTo(film.getId());
+    }
+
+    protected void restoreIdSequence(long usedId) {
+        idGenerator.advanceTo(usedId);
+    }
+
+    protected void forEachFilm(Consumer<Film> action) {
+        films.values().forEach(action);
+    }
+
+    // Только фильм, уже поднятый в память; холодный слой не проверяется
+    protected Film inMemoryFilm(Long filmId) {
+        return films.get(filmId);
+    }
+
+    protected ColdStore<Film> coldFilms() {
+        return coldFilms;
+    }
+
+    // Подключается при старте до первых изменений: рейтинг строится по счетчикам лайков без чтения самих фильмов,
+    // остальные индексы — фоновым проходом из startColdIndexing
+    protected void attachColdFilms(ColdStore<Film> cold) {
+        coldFilms = cold;
+        cold.forEachId((filmId, likes) -> popularityIndex.update(filmId, 0, likes));
+        coldIndexedUpTo = 0;
+        coldIndexing.set(null);
+        coldIndexed = cold.size() == 0;
+    }
+
+    // Запускает фоновую индексацию холодного слоя; повторные вызовы ничего не делают
+    protected void startColdIndexing() {
+        if (coldIndexed) {
+            return;
+        }
+        CompletableFuture<Void> indexing = new CompletableFuture<>();
+        if (!coldIndexing.compareAndSet(null, indexing)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                indexColdFilms();
+                indexing.complete(null);
+            } catch (RuntimeException | Error e) {
+                log.error("Индексация холодных фильмов не удалась", e);
+                indexing.completeExceptionally(e);
+            }
+        }, "cold-film-indexer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Слияние упорядоченных ID из памяти и из холодного слоя: шаг стоит O(log n), пока action возвращает true
+    private void walkIds(long afterId, LongPredicate action) {
+        ColdStore<Film> cold = coldFilms;
+        Long memoryId = filmIds.higher(afterId);
+        long coldId = cold.higherId(afterId);
+        while (memoryId != null || coldId >= 0) {
+            long id = memoryId != null && (coldId < 0 || memoryId <= coldId) ? memoryId : coldId;
+            if (memoryId != null && memoryId == id) {
+                memoryId = filmIds.higher(id);
+            }
+            if (coldId == id) {
+                coldId = cold.higherId(id);
+            }
+            if (!action.test(id)) {
+                return;
+            }
+        }
+    }
+
+    // Запросы к индексам ждут фоновый проход, если он еще идет; вызывается без блокировок фильмов,
+    // иначе проход не сможет захватить их
+    private void ensureColdIndexed() {
+        if (coldIndexed) {
+            return;
+        }
+        startColdIndexing();
+        CompletableFuture<Void> indexing = coldIndexing.get();
+        if (indexing != null) {
+            indexing.join();
+        }
+    }
+
+    // Каждый фильм индексируется под своей блокировкой ровно один раз: либо здесь, пока он в холодном слое,
+    // либо при подъеме в память, если проход до него еще не дошел
+    private void indexColdFilms() {
+        ColdStore<Film> cold = coldFilms;
+        long startedAt = System.nanoTime();
+        for (long id = cold.higherId(0); id >= 0 && coldFilms == cold; id = cold.higherId(id)) {
+            long filmId = id;
+            locks.withLock(filmId, () -> {
+                if (coldFilms != cold) {
+                    return;
+                }
+                Film film = cold.read(filmId);
+                if (film != null) {
+                    indexLikes(film);
+                    indexFields(film);
+                }
+                coldIndexedUpTo = filmId;
+            });
+        }
+        if (coldFilms != cold) {
+            return;
+        }
+        coldIndexed = true;
+        log.info("Холодные фильмы проиндексированы за {} мс",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+
+    // Вызывается под блокировкой фильма
+    private boolean isColdFilmIndexed(long filmId) {
+        return coldIndexed || filmId <= coldIndexedUpTo;
+    }
+
+    // Вызывается под блокировкой фильма
+    private void putNewFilm(Film film) {
+        films.put(film.getId(), film);
+        filmIds.add(film.getId());
+        pointInTimeViews.created(film.getId());
+        popularityIndex.update(film.getId(), 0, film.getFilmLikedUsersId().size());
+        indexLikes(film);
+        indexFields(film);
+    }
+
+    // Вызывается под блокировкой фильма
+    private void indexFields(Film film) {
+        searchIndex.add(film.getId(), film.getName(), film.getDescription());
+        if (film.getReleaseDate() != null) {
+            releaseDateIndex.add(film.getId(), film.getReleaseDate().toEpochDay());
+        }
+        if (film.getDuration() != null) {
+            durationIndex.add(film.getId(), film.getDuration());
+        }
+    }
+
+    // Снимается до изменения полей, пока в фильме старые значения
+    private void unindexFields(Film film) {
+        searchIndex.remove(film.getId(), film.getName(), film.getDescription());
+        if (film.getReleaseDate() != null) {
+            releaseDateIndex.remove(film.getId(), film.getReleaseDate().toEpochDay());
+        }
+        if (film.getDuration() != null) {
+            durationIndex.remove(film.getId(), film.getDuration());
+        }
+    }
+
+    private static <T extends Comparable<? super T>> boolean inRange(T value, T from, T to) {
+        if (from == null && to == null) {
+            return true;
+        }
+        return value != null && (from == null || value.compareTo(from) >= 0) && (to == null || value.compareTo(to) <= 0);
+    }
+
+    private void indexLikes(Film film) {
+        film.getFilmLikedUsersId().forEachId(userId -> indexLike(userId, film.getId()));
+    }
+
+    // compute держит ключ, поэтому добавление не теряется при одновременном удалении опустевшего множества
+    private void indexLike(long userId, long filmId) {
+        filmsByUser.compute(userId, (id, liked) -> {
+            CompactIdSet filmIds = liked == null ? new CompactIdSet() : liked;
+            filmIds.add(filmId);
+            return filmIds;
+        });
+    }
+
+    private void unindexLike(long userId, long filmId) {
+        filmsByUser.computeIfPresent(userId, (id, liked) -> {
+            liked.remove(filmId);
+            return liked.isEmpty() ? null : liked;
+        });
+    }
+
+    private Film findFilm(Long filmId) {
         Film film = films.get(filmId);
         if (film == null) {
-            throw new NotFoundException("Фильм с ID: " + filmId + " не найден");
+            film = coldFilms.read(filmId);
+            if (film == null) {
+                // Между двумя чтениями фильм могли поднять в память
+                film = films.get(filmId);
+            }
         }
+        return film;
+    }
 
-        if (updatedFilm.getReleaseDate() != null
-                && updatedFilm.getReleaseDate().isBefore(LocalDate.of(1895, 12, 28))) {
-            throw new ValidationException("Дата релиза не может быть раньше 28 декабря 1895 года");
+    // Вызывается под блокировкой фильма: холодная запись поднимается в память перед изменением
+    private Film memoryFilm(Long filmId) {
+        Film film = films.get(filmId);
+        if (film == null) {
+            film = coldFilms.read(filmId);
+            if (film != null) {
+                films.put(filmId, film);
+                filmIds.add(filmId);
+                coldFilms.evict(filmId);
+                if (!isColdFilmIndexed(filmId)) {
+                    indexLikes(film);
+                    indexFields(film);
+                }
+            }
         }
+        return film;
+    }
 
-        film.setName(updatedFilm.getName());
-        film.setDescription(updatedFilm.getDescription());
-        film.setReleaseDate(updatedFilm.getReleaseDate());
-        film.setDuration(updatedFilm.getDuration());
-        log.info("Данные фильма с ID: {} успешно обновлены", film.getId());
+    private Film requireMemoryFilm(Long filmId) {
+        Film film = memoryFilm(filmId);
+        if (film == null) {
+            throw new NotFoundException("Фильм с ID: " + filmId + " не найден");
+        }
         return film;
     }
 
+    @Override
+    public int size() {
+        return films.size() + coldFilms.size();
+    }
+
+    @Override
+    public long likeCount() {
+        return popularityIndex.likes();
+    }
+
+    @Override
+    public int popularCount() {
+        return popularityIndex.size();
+    }
+
     @Override
     public void clear() {
         films.clear();
+        filmIds.clear();
+        coldFilms = ColdStore.empty();
+        popularityIndex.clear();
+        filmsByUser.clear();
+        searchIndex.clear();
+        releaseDateIndex.clear();
+        durationIndex.clear();
+        coldIndexed = true;
+        idGenerator.reset();
         log.info("Хранилище films очищено. Текущий размер: {}", films.size());
     }
-
-    private long getNextId() {
-        long currentMaxId = films.keySet()
-                .stream()
-                .mapToLong(id -> id)
-                .max()
-                .orElse(0);
-        return ++currentMaxId;
-    }
 }
@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+// Рейтинг фильмов с лайками: больше лайков — выше, при равенстве выше меньший ID
+class PopularityIndex {
+    private static final Comparator<Entry> ORDER = Comparator.comparingInt(Entry::likes).reversed()
+            .thenComparingLong(Entry::filmId);
+    private static final int OPTIMISTIC_ATTEMPTS = 3;
+
+    private final NavigableSet<Entry> ranking = new ConcurrentSkipListSet<>(ORDER);
+    // Все изменения счетчиков лайков проходят через update, поэтому здесь же ведутся их сумма и размер рейтинга:
+    // size() у ConcurrentSkipListSet обходит весь набор
+    private final LongAdder likes = new LongAdder();
+    private final LongAdder films = new LongAdder();
+    // Перестановка фильма — это удаление и вставка; читатель не должен увидеть промежуточное состояние,
+    // иначе фильм пропадет из выдачи или попадет в нее дважды. Перестановки разных фильмов друг другу не мешают
+    // и берут блокировку на чтение; на запись ее берет только выдача, которой не удался обход без блокировки
+    private final StampedLock reposition = new StampedLock();
+    // Число завершенных перестановок: по нему обход без блокировки узнает, что рейтинг менялся
+    private final AtomicLong repositions = new AtomicLong();
+
+    // Вызывается под блокировкой фильма, поэтому старое значение счетчика достоверно
+    void update(long filmId, int oldLikes, int newLikes) {
+        if (oldLikes == newLikes) {
+            return;
+        }
+        likes.add(newLikes - oldLikes);
+        long stamp = reposition.readLock();
+        try {
+            if (oldLikes > 0 && ranking.remove(new Entry(filmId, oldLikes))) {
+                films.decrement();
+            }
+            if (newLikes > 0 && ranking.add(new Entry(filmId, newLikes))) {
+                films.increment();
+            }
+            repositions.incrementAndGet();
+        } finally {
+            reposition.unlockRead(stamp);
+        }
+    }
+
+    void remove(long filmId, int likes) {
+        update(filmId, likes, 0);
+    }
+
+    // Сначала несколько обходов без блокировки: обход годится, если перед ним и после него ни одна перестановка
+    // не шла и ни одна не завершилась. Если лайки идут непрерывно — обход под блокировкой на запись
+    List<Long> top(int count) {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            long before = repositions.get();
+            if (reposition.isReadLocked()) {
+                Thread.onSpinWait();
+                continue;
+            }
+            List<Long> filmIds = collect(count);
+            if (!reposition.isReadLocked() && repositions.get() == before) {
+                return filmIds;
+            }
+        }
+        long stamp = reposition.writeLock();
+        try {
+            return collect(count);
+        } finally {
+            reposition.unlockWrite(stamp);
+        }
+    }
+
+    private List<Long> collect(int count) {
+        List<Long> filmIds = new ArrayList<>(Math.max(0, Math.min(count, films.intValue())));
+        Iterator<Entry> iterator = ranking.iterator();
+        while (filmIds.size() < count && iterator.hasNext()) {
+            filmIds.add(iterator.next().filmId());
+        }
+        return filmIds;
+    }
+
+    int size() {
+        return films.intValue();
+    }
+
+    long likes() {
+        return likes.sum();
+    }
+
+    void clear() {
+        long stamp = reposition.writeLock();
+        try {
+            ranking.clear();
+            likes.reset();
+            films.reset();
+            repositions.incrementAndGet();
+        } finally {
+            reposition.unlockWrite(stamp);
+        }
+    }
+
+    private record Entry(long filmId, int likes) {
+    }
+}
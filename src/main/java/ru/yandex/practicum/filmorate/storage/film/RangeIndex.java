@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Упорядоченный индекс фильмов по числовому значению поля: диапазон значений читается без обхода всех фильмов
+class RangeIndex {
+    private static final Comparator<Entry> ORDER = Comparator.comparingLong(Entry::value)
+            .thenComparingLong(Entry::filmId);
+
+    private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<>(ORDER);
+
+    // Вызывается под блокировкой фильма вместе с remove старого значения
+    void add(long filmId, long value) {
+        entries.add(new Entry(value, filmId));
+    }
+
+    void remove(long filmId, long value) {
+        entries.remove(new Entry(value, filmId));
+    }
+
+    // ID фильмов со значением в [from, to] по возрастанию ID
+    long[] range(long from, long to) {
+        if (from > to) {
+            return new long[0];
+        }
+        long[] filmIds = new long[16];
+        int size = 0;
+        for (Entry entry : entries.subSet(new Entry(from, Long.MIN_VALUE), true, new Entry(to, Long.MAX_VALUE), true)) {
+            if (size == filmIds.length) {
+                filmIds = Arrays.copyOf(filmIds, size * 2);
+            }
+            filmIds[size++] = entry.filmId();
+        }
+        filmIds = Arrays.copyOf(filmIds, size);
+        Arrays.sort(filmIds);
+        return filmIds;
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    // Пересечение двух упорядоченных наборов ID слиянием
+    static long[] intersect(long[] first, long[] second) {
+        long[] common = new long[Math.min(first.length, second.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                common[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, size);
+    }
+
+    private record Entry(long value, long filmId) {
+    }
+}
@@ -0,0 +1,576 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Обратный индекс по названию и описанию с ранжированием BM25.
+// Каждая индексация фильма получает новый номер документа, поэтому списки документов терма только дописываются
+// в конец: номер кодируется разностью с предыдущим в varint, за ним частота терма. Старая версия фильма
+// после изменения или удаления помечается удаленной, а список сжимается, когда удаленных в нем становится больше живых.
+// Когда удаленных номеров становится больше живых во всем индексе, живые документы перенумеровываются подряд
+// с сохранением порядка, и списки переписываются под новые номера: номера не растут бесконечно от изменений
+final class SearchIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // Запас на погрешность сложения double при сравнении верхних оценок с порогом
+    private static final double EPSILON = 1e-9;
+    // Меньший индекс не перенумеровывается: копирование массивов дороже, чем занятые номера
+    private static final int MIN_RENUMBER_DOCS = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<Long, Integer> docByFilm = new HashMap<>();
+    // Номер документа -> ID фильма и длина документа в термах; удаленные отмечены в битовой карте
+    private long[] filmIds = new long[1024];
+    private int[] lengths = new int[1024];
+    private long[] deleted = new long[16];
+    private int docCount;
+    private int liveDocs;
+    private long totalLength;
+
+    void add(long filmId, String name, String description) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        TextAnalyzer.forEachTerm(name, term -> frequencies.merge(term, 1, Integer::sum));
+        TextAnalyzer.forEachTerm(description, term -> frequencies.merge(term, 1, Integer::sum));
+        int length = frequencies.values().stream().mapToInt(Integer::intValue).sum();
+        lock.writeLock().lock();
+        try {
+            removeLocked(filmId, null, null);
+            int doc = docCount++;
+            ensureDocCapacity(docCount);
+            filmIds[doc] = filmId;
+            lengths[doc] = length;
+            docByFilm.put(filmId, doc);
+            liveDocs++;
+            totalLength += length;
+            frequencies.forEach((term, frequency) ->
+                    postings.computeIfAbsent(term, key -> new Postings()).append(doc, frequency, length, filmId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // name и description — текст, с которым фильм был проиндексирован: по нему находятся его списки
+    void remove(long filmId, String name, String description) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(filmId, name, description);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // До limit ID фильмов по убыванию BM25, при равенстве по возрастанию ID.
+    // Обход документ за документом (MaxScore): термы, которые вместе не дотягивают до порога худшего из отобранных,
+    // только досчитывают кандидатов, а блоки, чья верхняя оценка ниже порога, пропускаются целиком
+    long[] search(String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>(TextAnalyzer.terms(query));
+        lock.readLock().lock();
+        try {
+            if (liveDocs == 0 || terms.isEmpty() || limit <= 0) {
+                return new long[0];
+            }
+            double averageLength = Math.max(1.0, (double) totalLength / liveDocs);
+            List<Cursor> found = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list != null && list.live() > 0) {
+                    int documentFrequency = list.live();
+                    double idf = Math.log(1 + (liveDocs - documentFrequency + 0.5) / (documentFrequency + 0.5));
+                    found.add(new Cursor(list, lengths, idf, averageLength));
+                }
+            }
+            found.sort(Comparator.comparingDouble(cursor -> cursor.upperBound));
+            Cursor[] cursors = found.toArray(new Cursor[0]);
+            double[] prefixBound = new double[cursors.length];
+            for (int i = 0; i < cursors.length; i++) {
+                prefixBound[i] = (i == 0 ? 0 : prefixBound[i - 1]) + cursors[i].upperBound;
+            }
+            TopDocs top = new TopDocs(limit);
+            // Вклады термов складываются в одном порядке для всех документов, чтобы равные очки совпадали до бита
+            double[] contributions = new double[cursors.length];
+            // Курсоры [0, firstEssential) сами по себе не выводят документ в верхушку
+            int firstEssential = 0;
+            while (firstEssential < cursors.length) {
+                int pivot = Integer.MAX_VALUE;
+                double blockBound = firstEssential == 0 ? 0 : prefixBound[firstEssential - 1];
+                int blockEnd = Integer.MAX_VALUE;
+                long blockMinFilmId = Long.MAX_VALUE;
+                for (int i = firstEssential; i < cursors.length; i++) {
+                    pivot = Math.min(pivot, cursors[i].doc);
+                }
+                if (pivot == Integer.MAX_VALUE) {
+                    break;
+                }
+                for (int i = firstEssential; i < cursors.length; i++) {
+                    Cursor cursor = cursors[i];
+                    if (cursor.doc != Integer.MAX_VALUE && cursor.blockFirstDoc() <= pivot) {
+                        blockBound += cursor.blockBound();
+                        blockEnd = Math.min(blockEnd, cursor.blockLastDoc());
+                        blockMinFilmId = Math.min(blockMinFilmId, cursor.blockMinFilmId());
+                    } else if (cursor.doc != Integer.MAX_VALUE) {
+                        blockEnd = Math.min(blockEnd, cursor.doc - 1);
+                    }
+                }
+                if (top.cannotEnter(blockBound, blockMinFilmId)) {
+                    for (int i = firstEssential; i < cursors.length; i++) {
+                        cursors[i].advance(blockEnd + 1);
+                    }
+                    continue;
+                }
+                Arrays.fill(contributions, 0);
+                double score = 0;
+                for (int i = firstEssential; i < cursors.length; i++) {
+                    if (cursors[i].doc == pivot) {
+                        contributions[i] = cursors[i].score();
+                        score += contributions[i];
+                        cursors[i].next();
+                    }
+                }
+                if (isDeleted(pivot)) {
+                    continue;
+                }
+                long filmId = filmIds[pivot];
+                for (int i = firstEssential - 1; i >= 0 && !top.cannotEnter(score + prefixBound[i], filmId); i--) {
+                    cursors[i].advance(pivot);
+                    if (cursors[i].doc == pivot) {
+                        contributions[i] = cursors[i].score();
+                        score += contributions[i];
+                    }
+                }
+                score = 0;
+                for (double contribution : contributions) {
+                    score += contribution;
+                }
+                if (top.offer(score, filmId)) {
+                    while (firstEssential < cursors.length && top.cannotEnter(prefixBound[firstEssential], 0)) {
+                        firstEssential++;
+                    }
+                }
+            }
+            return top.filmIds();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Выданные номера документов вместе с удаленными
+    int documents() {
+        lock.readLock().lock();
+        try {
+            return docCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            docByFilm.clear();
+            filmIds = new long[1024];
+            lengths = new int[1024];
+            deleted = new long[16];
+            docCount = 0;
+            liveDocs = 0;
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Без текста (повторная индексация того же фильма) неизвестно, в каких списках лежит документ: счетчики
+    // удаленных уточняет перенумерация, которая переписывает все списки. Хранилище снимает фильм с текстом,
+    // поэтому этот путь редкий
+    private void removeLocked(long filmId, String name, String description) {
+        Integer doc = docByFilm.remove(filmId);
+        if (doc == null) {
+            return;
+        }
+        deleted[doc >>> 6] |= 1L << doc;
+        liveDocs--;
+        totalLength -= lengths[doc];
+        if (name == null && description == null) {
+            renumberLocked();
+            return;
+        }
+        Set<String> terms = new LinkedHashSet<>();
+        TextAnalyzer.forEachTerm(name, terms::add);
+        TextAnalyzer.forEachTerm(description, terms::add);
+        for (String term : terms) {
+            Postings list = postings.get(term);
+            if (list == null) {
+                continue;
+            }
+            list.dead++;
+            if (list.live() == 0) {
+                postings.remove(term);
+            } else if (list.dead > list.live()) {
+                list.compact(this::liveDoc, lengths, filmIds);
+            }
+        }
+        if (docCount >= MIN_RENUMBER_DOCS && docCount - liveDocs > liveDocs) {
+            renumberLocked();
+        }
+    }
+
+    // Живые документы получают номера 0..liveDocs-1 в прежнем порядке, поэтому списки остаются упорядоченными
+    private void renumberLocked() {
+        int[] renumbered = new int[docCount];
+        int next = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            renumbered[doc] = isDeleted(doc) ? -1 : next++;
+        }
+        postings.values().removeIf(list -> {
+            list.compact(doc -> renumbered[doc], lengths, filmIds);
+            return list.docs == 0;
+        });
+        int capacity = Math.max(1024, next);
+        long[] renumberedFilmIds = new long[capacity];
+        int[] renumberedLengths = new int[capacity];
+        for (int doc = 0; doc < docCount; doc++) {
+            if (renumbered[doc] >= 0) {
+                renumberedFilmIds[renumbered[doc]] = filmIds[doc];
+                renumberedLengths[renumbered[doc]] = lengths[doc];
+            }
+        }
+        docByFilm.replaceAll((filmId, doc) -> renumbered[doc]);
+        filmIds = renumberedFilmIds;
+        lengths = renumberedLengths;
+        deleted = new long[Math.max(16, (capacity + 63) >>> 6)];
+        docCount = next;
+    }
+
+    private int liveDoc(int doc) {
+        return isDeleted(doc) ? -1 : doc;
+    }
+
+    private boolean isDeleted(int doc) {
+        return (deleted[doc >>> 6] & (1L << doc)) != 0;
+    }
+
+    private void ensureDocCapacity(int capacity) {
+        if (capacity > filmIds.length) {
+            int grown = Math.max(capacity, filmIds.length * 2);
+            filmIds = Arrays.copyOf(filmIds, grown);
+            lengths = Arrays.copyOf(lengths, grown);
+        }
+        if ((capacity + 63) >>> 6 > deleted.length) {
+            deleted = Arrays.copyOf(deleted, Math.max((capacity + 63) >>> 6, deleted.length * 2));
+        }
+    }
+
+    private static double score(double idf, int frequency, int length, double averageLength) {
+        return idf * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+    }
+
+    // Новый номер документа при сжатии списка; -1 — документ выбрасывается
+    @FunctionalInterface
+    private interface DocMapping {
+        int map(int doc);
+    }
+
+    // Сжатый список документов терма: пары (разность номеров, частота) в varint, по BLOCK пар в блоке.
+    // Для блока хранятся смещение, последний номер, максимум частоты, минимум длины документа и минимум ID фильма:
+    // из них получается верхняя оценка BM25 любого документа блока
+    private static final class Postings {
+        private static final int BLOCK = 128;
+
+        private byte[] data = new byte[16];
+        private int size;
+        private int lastDoc = -1;
+        private int docs;
+        private int dead;
+        private int[] blockOffsets = new int[1];
+        private int[] blockFirstDocs = new int[1];
+        private int[] blockLastDocs = new int[1];
+        private int[] blockMaxFrequencies = new int[1];
+        private int[] blockMinLengths = new int[1];
+        private long[] blockMinFilmIds = new long[1];
+
+        int live() {
+            return docs - dead;
+        }
+
+        int blocks() {
+            return (docs + BLOCK - 1) / BLOCK;
+        }
+
+        void append(int doc, int frequency, int length, long filmId) {
+            int block = docs / BLOCK;
+            if (docs % BLOCK == 0) {
+                if (block == blockOffsets.length) {
+                    int grown = blockOffsets.length * 2;
+                    blockOffsets = Arrays.copyOf(blockOffsets, grown);
+                    blockFirstDocs = Arrays.copyOf(blockFirstDocs, grown);
+                    blockLastDocs = Arrays.copyOf(blockLastDocs, grown);
+                    blockMaxFrequencies = Arrays.copyOf(blockMaxFrequencies, grown);
+                    blockMinLengths = Arrays.copyOf(blockMinLengths, grown);
+                    blockMinFilmIds = Arrays.copyOf(blockMinFilmIds, grown);
+                }
+                blockOffsets[block] = size;
+                blockFirstDocs[block] = doc;
+                blockMaxFrequencies[block] = frequency;
+                blockMinLengths[block] = length;
+                blockMinFilmIds[block] = filmId;
+            } else {
+                blockMaxFrequencies[block] = Math.max(blockMaxFrequencies[block], frequency);
+                blockMinLengths[block] = Math.min(blockMinLengths[block], length);
+                blockMinFilmIds[block] = Math.min(blockMinFilmIds[block], filmId);
+            }
+            if (data.length - size < 10) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            // Первый документ блока пишется разностью с последним документом предыдущего блока
+            size = writeVarInt(data, size, doc - lastDoc);
+            size = writeVarInt(data, size, frequency);
+            blockLastDocs[block] = doc;
+            lastDoc = doc;
+            docs++;
+        }
+
+        void compact(DocMapping mapping, int[] lengths, long[] filmIds) {
+            Postings compacted = new Postings();
+            Cursor cursor = new Cursor(this, lengths, 0, 1);
+            for (; cursor.doc != Integer.MAX_VALUE; cursor.next()) {
+                int doc = mapping.map(cursor.doc);
+                if (doc >= 0) {
+                    compacted.append(doc, cursor.frequency, lengths[cursor.doc], filmIds[cursor.doc]);
+                }
+            }
+            data = compacted.data;
+            size = compacted.size;
+            lastDoc = compacted.lastDoc;
+            docs = compacted.docs;
+            dead = 0;
+            blockOffsets = compacted.blockOffsets;
+            blockFirstDocs = compacted.blockFirstDocs;
+            blockLastDocs = compacted.blockLastDocs;
+            blockMaxFrequencies = compacted.blockMaxFrequencies;
+            blockMinLengths = compacted.blockMinLengths;
+            blockMinFilmIds = compacted.blockMinFilmIds;
+        }
+
+        private static int writeVarInt(byte[] target, int position, int value) {
+            while ((value & ~0x7F) != 0) {
+                target[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            target[position++] = (byte) value;
+            return position;
+        }
+    }
+
+    // Позиция в списке терма; doc == Integer.MAX_VALUE, когда список закончился
+    private static final class Cursor {
+        private final Postings list;
+        private final int[] lengths;
+        private final double idf;
+        private final double averageLength;
+        private final double upperBound;
+        private final int blocks;
+        private final int end;
+        private int block;
+        private int position;
+        private int previousDoc = -1;
+        private int doc;
+        private int frequency;
+
+        Cursor(Postings list, int[] lengths, double idf, double averageLength) {
+            this.list = list;
+            this.lengths = lengths;
+            this.idf = idf;
+            this.averageLength = averageLength;
+            this.blocks = list.blocks();
+            this.end = list.size;
+            double bound = 0;
+            for (int i = 0; i < blocks; i++) {
+                bound = Math.max(bound, blockBound(i));
+            }
+            this.upperBound = bound;
+            next();
+        }
+
+        void next() {
+            if (position >= end) {
+                doc = Integer.MAX_VALUE;
+                return;
+            }
+            if (block + 1 < blocks && position >= list.blockOffsets[block + 1]) {
+                block++;
+            }
+            int value = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = list.data[position++];
+                value |= (current & 0x7F) << shift;
+                shift += 7;
+            } while (current < 0);
+            doc = previousDoc + value;
+            previousDoc = doc;
+            value = 0;
+            shift = 0;
+            do {
+                current = list.data[position++];
+                value |= (current & 0x7F) << shift;
+                shift += 7;
+            } while (current < 0);
+            frequency = value;
+        }
+
+        // Первый документ не меньше target; блоки, целиком лежащие до target, пропускаются без декодирования
+        void advance(int target) {
+            if (doc >= target) {
+                return;
+            }
+            int targetBlock = block;
+            while (targetBlock + 1 < blocks && list.blockFirstDocs[targetBlock + 1] <= target) {
+                targetBlock++;
+            }
+            if (targetBlock != block) {
+                block = targetBlock;
+                position = list.blockOffsets[block];
+                previousDoc = block == 0 ? -1 : list.blockLastDocs[block - 1];
+                next();
+            }
+            while (doc < target) {
+                next();
+            }
+        }
+
+        double score() {
+            return SearchIndex.score(idf, frequency, lengths[doc], averageLength);
+        }
+
+        int blockFirstDoc() {
+            return list.blockFirstDocs[block];
+        }
+
+        int blockLastDoc() {
+            return list.blockLastDocs[block];
+        }
+
+        long blockMinFilmId() {
+            return list.blockMinFilmIds[block];
+        }
+
+        double blockBound() {
+            return blockBound(block);
+        }
+
+        private double blockBound(int index) {
+            return SearchIndex.score(idf, list.blockMaxFrequencies[index], list.blockMinLengths[index], averageLength);
+        }
+    }
+
+    // Верхушка из limit лучших: куча с худшим в корне, при равенстве очков хуже больший ID
+    private static final class TopDocs {
+        private final double[] scores;
+        private final long[] filmIds;
+        private int size;
+
+        TopDocs(int limit) {
+            scores = new double[limit];
+            filmIds = new long[limit];
+        }
+
+        // Документ с оценкой не выше bound и ID не меньше minFilmId заведомо не попадет в верхушку
+        boolean cannotEnter(double bound, long minFilmId) {
+            if (size < scores.length) {
+                return false;
+            }
+            return bound < scores[0] - EPSILON || (bound <= scores[0] + EPSILON && minFilmId > filmIds[0]);
+        }
+
+        // true, если верхушка заполнена и порог после вставки мог вырасти
+        boolean offer(double score, long filmId) {
+            if (size < scores.length) {
+                scores[size] = score;
+                filmIds[size] = filmId;
+                siftUp(size++);
+                return size == scores.length;
+            }
+            if (!better(score, filmId, scores[0], filmIds[0])) {
+                return false;
+            }
+            scores[0] = score;
+            filmIds[0] = filmId;
+            siftDown(0);
+            return true;
+        }
+
+        long[] filmIds() {
+            long[] result = new long[size];
+            for (int i = size - 1; i >= 0; i--) {
+                result[i] = filmIds[0];
+                size--;
+                scores[0] = scores[size];
+                filmIds[0] = filmIds[size];
+                siftDown(0);
+            }
+            return result;
+        }
+
+        private static boolean better(double score, long filmId, double otherScore, long otherFilmId) {
+            return score != otherScore ? score > otherScore : filmId < otherFilmId;
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (!better(scores[parent], filmIds[parent], scores[index], filmIds[index])) {
+                    return;
+                }
+                swap(parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                int worst = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < size && better(scores[worst], filmIds[worst], scores[left], filmIds[left])) {
+                    worst = left;
+                }
+                if (right < size && better(scores[worst], filmIds[worst], scores[right], filmIds[right])) {
+                    worst = right;
+                }
+                if (worst == index) {
+                    return;
+                }
+                swap(worst, index);
+                index = worst;
+            }
+        }
+
+        private void swap(int first, int second) {
+            double score = scores[first];
+            scores[first] = scores[second];
+            scores[second] = score;
+            long filmId = filmIds[first];
+            filmIds[first] = filmIds[second];
+            filmIds[second] = filmId;
+        }
+    }
+}
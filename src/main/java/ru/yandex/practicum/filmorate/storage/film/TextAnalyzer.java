@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+// Разбор текста для поиска: слова из букв и цифр в нижнем регистре, «ё» сводится к «е»,
+// у русских и английских слов отрезаются окончания, чтобы «фильмы» и «фильмом» находили «фильм»
+final class TextAnalyzer {
+    private static final int MIN_STEM = 3;
+    private static final int MAX_TOKEN = 64;
+    // Окончания проверяются по порядку, поэтому длинные стоят раньше своих хвостов
+    private static final String[] RUSSIAN_ENDINGS = {
+            "иями", "ями", "ами", "ого", "его", "ому", "ему", "ыми", "ими", "ией", "ать", "ять", "ить", "еть",
+            "ешь", "ишь", "ете", "ите", "ует", "ют", "ут", "ат", "ят", "ия", "ие", "ий", "ых", "их", "ой", "ей", "ый",
+            "ая", "яя", "ое", "ее", "ую", "юю", "ом", "ем", "ам", "ям", "ах", "ях", "ов", "ев", "ью",
+            "ы", "и", "а", "я", "о", "е", "у", "ю", "ь", "й"
+    };
+    private static final String[] ENGLISH_ENDINGS = {
+            "ational", "ization", "fulness", "iveness", "ations", "ation", "ments", "ment", "ness", "ings", "ing",
+            "ers", "ed", "er", "ly", "es", "s", "e"
+    };
+
+    private TextAnalyzer() {
+    }
+
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        forEachTerm(text, terms::add);
+        return terms;
+    }
+
+    static void forEachTerm(String text, Consumer<String> action) {
+        if (text == null) {
+            return;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start <= MAX_TOKEN) {
+                    action.accept(normalize(text.substring(start, i)));
+                }
+                start = -1;
+            }
+        }
+    }
+
+    private static String normalize(String word) {
+        String lower = word.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        char first = lower.charAt(0);
+        if (first >= 'а' && first <= 'я') {
+            return stem(lower, RUSSIAN_ENDINGS);
+        }
+        if (first >= 'a' && first <= 'z') {
+            // «story» и «stories» сходятся к «stori»
+            String stem = stem(lower, ENGLISH_ENDINGS);
+            return stem.endsWith("y") ? stem.substring(0, stem.length() - 1) + "i" : stem;
+        }
+        return lower;
+    }
+
+    private static String stem(String word, String[] endings) {
+        for (String ending : endings) {
+            if (word.length() - ending.length() >= MIN_STEM && word.endsWith(ending)) {
+                return word.substring(0, word.length() - ending.length());
+            }
+        }
+        return word;
+    }
+}
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.storage.id;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+// Узел nodeId из nodeCount получает каждый nodeCount-й блок по blockSize ID, поэтому узлы не пересекаются без координации
+public class BlockIdGenerator implements IdGenerator {
+    private final int nodeId;
+    private final int nodeCount;
+    private final long blockSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long round;
+    private long next = 1;
+    private long blockEnd;
+
+    public BlockIdGenerator(int nodeId, int nodeCount, long blockSize) {
+        if (nodeCount <= 0 || nodeId < 0 || nodeId >= nodeCount) {
+            throw new IllegalArgumentException("Некорректный номер узла " + nodeId + " из " + nodeCount);
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Размер блока ID должен быть больше 0");
+        }
+        this.nodeId = nodeId;
+        this.nodeCount = nodeCount;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public long nextId() {
+        lock.lock();
+        try {
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Диапазон может пересечь границу блока, тогда он продолжается в следующем блоке узла
+    @Override
+    public long[] nextIds(int count) {
+        long[] ids = new long[count];
+        lock.lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                ids[i] = next();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return ids;
+    }
+
+    @Override
+    public void advanceTo(long usedId) {
+        lock.lock();
+        try {
+            if (usedId < next) {
+                return;
+            }
+            if (usedId < blockEnd) {
+                next = usedId + 1;
+                return;
+            }
+            long usedBlock = (usedId - 1) / blockSize;
+            round = Math.max(round, usedBlock / nodeCount + 1);
+            blockEnd = next - 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void reset() {
+        lock.lock();
+        try {
+            round = 0;
+            next = 1;
+            blockEnd = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long next() {
+        if (next > blockEnd) {
+            long block = round * nodeCount + nodeId;
+            next = block * blockSize + 1;
+            blockEnd = (block + 1) * blockSize;
+            round++;
+        }
+        return next++;
+    }
+}
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.storage.id;
+
+public interface IdGenerator {
+
+    long nextId();
+
+    // count новых ID за одно обращение к генератору, по возрастанию
+    long[] nextIds(int count);
+
+    void advanceTo(long usedId);
+
+    void reset();
+}
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.storage.id;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class IdGeneratorConfig {
+
+    @Value("${filmorate.id-generator.type:sequence}")
+    private String type;
+
+    @Value("${filmorate.id-generator.node-id:0}")
+    private int nodeId;
+
+    @Value("${filmorate.id-generator.node-count:1}")
+    private int nodeCount;
+
+    @Value("${filmorate.id-generator.block-size:1000}")
+    private long blockSize;
+
+    @Bean
+    public IdGenerator filmIdGenerator() {
+        return create();
+    }
+
+    @Bean
+    public IdGenerator userIdGenerator() {
+        return create();
+    }
+
+    private IdGenerator create() {
+        return switch (type) {
+            case "sequence" -> new SequenceIdGenerator();
+            case "block" -> new BlockIdGenerator(nodeId, nodeCount, blockSize);
+            default -> throw new IllegalStateException("Неизвестный тип генератора ID: " + type);
+        };
+    }
+}
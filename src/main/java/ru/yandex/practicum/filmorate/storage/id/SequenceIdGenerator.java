@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.storage.id;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SequenceIdGenerator implements IdGenerator {
+    private final AtomicLong lastId = new AtomicLong();
+
+    @Override
+    public long nextId() {
+        return lastId.incrementAndGet();
+    }
+
+    @Override
+    public long[] nextIds(int count) {
+        long first = lastId.getAndAdd(count) + 1;
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = first + i;
+        }
+        return ids;
+    }
+
+    @Override
+    public void advanceTo(long usedId) {
+        lastId.accumulateAndGet(usedId, Math::max);
+    }
+
+    @Override
+    public void reset() {
+        lastId.set(0);
+    }
+}
@@ -2,18 +2,53 @@ package ru.yandex.practicum.filmorate.storage.user;
 
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.logging.LogMarkers;
+import ru.yandex.practicum.filmorate.model.FriendEdge;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.BatchErrors;
+import ru.yandex.practicum.filmorate.storage.ColdStore;
+import ru.yandex.practicum.filmorate.storage.PointInTimeViews;
+import ru.yandex.practicum.filmorate.storage.StripedLock;
+import ru.yandex.practicum.filmorate.storage.id.IdGenerator;
+import ru.yandex.practicum.filmorate.storage.id.SequenceIdGenerator;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
 
 @Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "memory", matchIfMissing = true)
 @Slf4j
 public class InMemoryUserStorage implements UserStorage {
-    private final Map<Long, User> users = new HashMap<>();
-    private final Set<String> emailSet = new HashSet<>();
+    private final Map<Long, User> users = new ConcurrentHashMap<>();
+    // Упорядоченные ID пользователей из users для постраничной выдачи
+    private final NavigableSet<Long> userIds = new ConcurrentSkipListSet<>();
+    // Email пользователей из памяти; email холодных пользователей проверяются по холодному слою
+    private final Set<String> emailSet = ConcurrentHashMap.newKeySet();
+    protected final StripedLock locks = new StripedLock(64);
+    private final PointInTimeViews<User> pointInTimeViews = new PointInTimeViews<>(User::copy);
+    private final IdGenerator idGenerator;
+    private volatile ColdStore<User> coldUsers = ColdStore.empty();
+    // Сумма размеров множеств друзей для метрик; множества меняются только через addFriendLink и removeFriendLink
+    private final LongAdder friendLinks = new LongAdder();
+
+    public InMemoryUserStorage() {
+        this(new SequenceIdGenerator());
+    }
+
+    @Autowired
+    public InMemoryUserStorage(@Qualifier("userIdGenerator") IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
 
     @PostConstruct
     public void initEmailSet() {
@@ -27,36 +62,97 @@ public class InMemoryUserStorage implements UserStorage {
             throw new ValidationException("Запрос на добавление пользователя поступил с пустым телом");
         }
 
-        if (emailSet.contains(user.getEmail())) {
+        if (!reserveEmail(user.getEmail())) {
             throw new ValidationException("Указанный E-mail: " + user.getEmail() + " уже используется");
         }
 
         boolean nameIsNull = user.getName() == null || user.getName().isBlank();
         if (nameIsNull) {
             user.setName(user.getLogin());
-            log.info("Имя для отображения может быть пустым — в таком случае будет использован логин");
+            log.debug("Имя для отображения может быть пустым — в таком случае будет использован логин");
         }
 
-        user.setId(getNextId());
-        users.put(user.getId(), user);
-        emailSet.add(user.getEmail());
-        log.info("Создан пользователь с ID: {}", user.getId());
+        user.setId(idGenerator.nextId());
+        try {
+            insertUser(user);
+        } catch (RuntimeException e) {
+            emailSet.remove(user.getEmail());
+            throw e;
+        }
+        log.info(LogMarkers.HOT_PATH, "Создан пользователь с ID: {}", user.getId());
         return user;
     }
 
+    // ID выдаются одним диапазоном на пакет, все пользователи кладутся под одним захватом блокировок
+    @Override
+    public void addUsers(List<User> newUsers, BatchErrors errors) {
+        List<User> accepted = new ArrayList<>(newUsers.size());
+        for (int i = 0; i < newUsers.size(); i++) {
+            User user = newUsers.get(i);
+            if (!reserveEmail(user.getEmail())) {
+                errors.reject(i, "Указанный E-mail: " + user.getEmail() + " уже используется");
+                continue;
+            }
+            if (user.getName() == null || user.getName().isBlank()) {
+                user.setName(user.getLogin());
+            }
+            accepted.add(user);
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+        long[] ids = idGenerator.nextIds(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            accepted.get(i).setId(ids[i]);
+        }
+        try {
+            insertUsers(accepted);
+        } catch (RuntimeException e) {
+            accepted.forEach(user -> emailSet.remove(user.getEmail()));
+            throw e;
+        }
+        log.info("Пакетно добавлено пользователей: {}, ID с {} по {}", accepted.size(), ids[0], ids[ids.length - 1]);
+    }
+
+    // Дружба симметрична, поэтому обратные ссылки снимаются обходом друзей удаленного: O(степени), а не O(всех).
+    // Новую дружбу с удаленным уже не добавить, так что друзей достаточно блокировать по одному
     @Override
     public User removeUser(Long id) {
-        User user = users.get(id);
-        if (user == null) {
-            throw new ValidationException("Попытка удаления фильма. Фильм с ID: " + id + " не найден");
+        User removed = locks.withLock(id, () -> {
+            User user = memoryUser(id);
+            if (user == null) {
+                throw new NotFoundException("Попытка удаления пользователя. Пользователь с ID: " + id + " не найден");
+            }
+            pointInTimeViews.beforeChange(id, user);
+            users.remove(id);
+            userIds.remove(id);
+            emailSet.remove(user.getEmail());
+            friendLinks.add(-user.getFriendsId().size());
+            return user;
+        });
+        long[] friendIds = removed.getFriendsId().toLongArray();
+        for (long friendId : friendIds) {
+            locks.withLock(friendId, () -> {
+                User friend = memoryUser(friendId);
+                if (friend != null) {
+                    pointInTimeViews.beforeChange(friendId, friend);
+                    removeFriendLink(friend, id);
+                }
+            });
         }
-        emailSet.remove(user.getEmail());
-        log.info("Пользователь с ID: {} успешно удален.", id);
-        return users.remove(id);
+        log.info("Пользователь с ID: {} успешно удален, снято связей дружбы: {}", id, friendIds.length);
+        return removed;
     }
 
     @Override
     public User updateUser(User updatedUser) {
+        return updateUser(updatedUser, () -> {
+        });
+    }
+
+    // beforeChange вызывается под блокировкой пользователя после всех проверок, когда новый email уже занят
+    // за ним, до изменения полей: если он бросит исключение, пользователь остается прежним, а email освобождается
+    protected User updateUser(User updatedUser, Runnable beforeChange) {
         if (updatedUser == null) {
             throw new ValidationException("Запрос на обновление данных пользователя поступил с пустым телом");
         }
@@ -66,67 +162,336 @@ public class InMemoryUserStorage implements UserStorage {
             throw new ValidationException("ID пользователя должен быть указан");
         }
 
-        User user = users.get(userId);
-        if (user == null) {
-            throw new NotFoundException("Пользователь с ID: " + userId + " не найден");
-        }
+        return locks.withLock(userId, () -> {
+            User user = requireMemoryUser(userId);
 
-        String newEmail = updatedUser.getEmail();
-        String oldEmail = user.getEmail();
+            String newEmail = updatedUser.getEmail();
+            String oldEmail = user.getEmail();
+            boolean emailChanged = !newEmail.equals(oldEmail);
 
-        if (!newEmail.equals(oldEmail)) {
-            if (emailSet.contains(newEmail)) {
+            if (emailChanged && !reserveEmail(newEmail)) {
                 throw new ValidationException("Обновляемый E‑mail: " + newEmail + " уже используется");
             }
-
-            emailSet.remove(oldEmail);
-            emailSet.add(newEmail);
-        }
+            try {
+                beforeChange.run();
+            } catch (RuntimeException e) {
+                if (emailChanged) {
+                    emailSet.remove(newEmail);
+                }
+                throw e;
+            }
+            pointInTimeViews.beforeChange(userId, user);
+            if (emailChanged) {
+                emailSet.remove(oldEmail);
+            }
             user.setEmail(updatedUser.getEmail());
             user.setLogin(updatedUser.getLogin());
             user.setName(updatedUser.getName());
             user.setBirthday(updatedUser.getBirthday());
             return user;
+        });
     }
 
     @Override
     public List<User> getAllUsers() {
-        return new ArrayList<>(users.values());
+        ColdStore<User> cold = coldUsers;
+        if (cold.size() == 0) {
+            return new ArrayList<>(users.values());
+        }
+        // Запись могут поднять в память во время обхода, поэтому дубликаты схлопываются по ID
+        Map<Long, User> all = new LinkedHashMap<>();
+        cold.forEach(user -> all.put(user.getId(), user));
+        users.values().forEach(user -> all.put(user.getId(), user));
+        return new ArrayList<>(all.values());
+    }
+
+    @Override
+    public List<User> getUsersPage(long afterId, int limit) {
+        List<User> page = new ArrayList<>(Math.min(limit, 1024));
+        walkIds(afterId, userId -> {
+            User user = findUser(userId);
+            if (user != null) {
+                page.add(user);
+            }
+            return page.size() < limit;
+        });
+        return page;
+    }
+
+    // Согласованный срез на момент вызова: изменения во время обхода в него не попадают
+    @Override
+    public void exportUsers(Consumer<User> action) {
+        PointInTimeViews.View<User> view = pointInTimeViews.open();
+        try {
+            walkIds(0, userId -> {
+                User exported = locks.withLock(userId, () -> view.visit(userId, findUser(userId)));
+                if (exported != null) {
+                    action.accept(exported);
+                }
+                return true;
+            });
+            view.remaining().forEach(action);
+        } finally {
+            pointInTimeViews.close(view);
+        }
     }
 
     @Override
     public User getUserById(Long userId) {
-        log.info("Пользователь с ID: {} найден и успешно предоставлен в ответ на запрос.", userId);
+        User user = findUser(userId);
+        if (user == null) {
+            throw new NotFoundException("Пользователь с ID: " + userId + " не найден");
+        }
+        log.debug("Пользователь с ID: {} найден и успешно предоставлен в ответ на запрос.", userId);
+        return user;
+    }
+
+    @Override
+    public void addFriend(Long userId, Long friendId) {
+        locks.withLocks(userId, friendId, () -> {
+            User user = requireMemoryUser(userId);
+            User friend = requireMemoryUser(friendId);
+            pointInTimeViews.beforeChange(userId, user);
+            pointInTimeViews.beforeChange(friendId, friend);
+            addFriendLink(user, friendId);
+            addFriendLink(friend, userId);
+        });
+    }
+
+    @Override
+    public void removeFriend(Long userId, Long friendId) {
+        locks.withLocks(userId, friendId, () -> {
+            User user = requireMemoryUser(userId);
+            User friend = requireMemoryUser(friendId);
+            pointInTimeViews.beforeChange(userId, user);
+            pointInTimeViews.beforeChange(friendId, friend);
+            removeFriendLink(user, friendId);
+            removeFriendLink(friend, userId);
+        });
+    }
+
+    @Override
+    public void addFriends(List<FriendEdge> friendships, BatchErrors errors) {
+        locks.withAllLocks(() -> {
+            for (int i = 0; i < friendships.size(); i++) {
+                FriendEdge friendship = friendships.get(i);
+                if (friendship.userId().equals(friendship.friendId())) {
+                    errors.reject(i, "Нельзя добавить себя в друзья: userId=" + friendship.userId());
+                    continue;
+                }
+                User user = memoryUser(friendship.userId());
+                User friend = memoryUser(friendship.friendId());
+                if (user == null || friend == null) {
+                    Long missingId = user == null ? friendship.userId() : friendship.friendId();
+                    errors.reject(i, "Пользователь с ID: " + missingId + " не найден");
+                    continue;
+                }
+                pointInTimeViews.beforeChange(user.getId(), user);
+                pointInTimeViews.beforeChange(friend.getId(), friend);
+                addFriendLink(user, friend.getId());
+                addFriendLink(friend, user.getId());
+            }
+        });
+    }
+
+    @Override
+    public boolean containsUser(Long userId) {
+        // Повторная проверка карты: между чтениями пользователя могли поднять в память из холодного слоя
+        return users.containsKey(userId) || coldUsers.contains(userId) || users.containsKey(userId);
+    }
+
+    // Полный обход, но без глобальной блокировки: каждая висячая ссылка перепроверяется под блокировками пары
+    @Override
+    public int removeDanglingFriends() {
+        int[] removed = {0};
+        walkIds(0, userId -> {
+            User user = findUser(userId);
+            if (user == null) {
+                return true;
+            }
+            for (long friendId : user.getFriendsId().toLongArray()) {
+                if (!containsUser(friendId) && removeDanglingFriend(userId, friendId)) {
+                    removed[0]++;
+                }
+            }
+            return true;
+        });
+        if (removed[0] > 0) {
+            log.info("Снято висячих ссылок на удаленных друзей: {}", removed[0]);
+        }
+        return removed[0];
+    }
+
+    protected boolean removeDanglingFriend(long userId, long friendId) {
+        return locks.withLocks(userId, friendId, () -> {
+            User user = memoryUser(userId);
+            if (user == null || containsUser(friendId) || !user.getFriendsId().contains(friendId)) {
+                return false;
+            }
+            pointInTimeViews.beforeChange(userId, user);
+            removeFriendLink(user, friendId);
+            return true;
+        });
+    }
+
+    // Вставка пользователя с уже выданным ID и занятым email; наследник может дописать ее в журнал
+    // под той же блокировкой, при исключении email освобождается
+    protected void insertUser(User user) {
+        locks.withLock(user.getId(), () -> putNewUser(user));
+    }
+
+    protected void insertUsers(List<User> newUsers) {
+        locks.withAllLocks(() -> newUsers.forEach(this::putNewUser));
+    }
+
+    // Восстановление из снимка или журнала: пользователь кладется с уже выданным ID
+    protected void restoreUser(User user) {
+        locks.withLock(user.getId(), () -> {
+            User previous = users.put(user.getId(), user);
+            userIds.add(user.getId());
+            if (previous == null) {
+                previous = coldUsers.read(user.getId());
+                coldUsers.evict(user.getId());
+            }
+            if (previous != null) {
+                emailSet.remove(previous.getEmail());
+                friendLinks.add(-previous.getFriendsId().size());
+            }
+            emailSet.add(user.getEmail());
+            friendLinks.add(user.getFriendsId().size());
+        });
+        idGenerator.advanceTo(user.getId());
+    }
+
+    protected void restoreIdSequence(long usedId) {
+        idGenerator.advanceTo(usedId);
+    }
+
+    protected void forEachUser(Consumer<User> action) {
+        users.values().forEach(action);
+    }
+
+    // Только пользователь, уже поднятый в память; холодный слой не проверяется
+    protected User inMemoryUser(Long userId) {
+        return users.get(userId);
+    }
+
+    protected ColdStore<User> coldUsers() {
+        return coldUsers;
+    }
+
+    // Подключается при старте до первых изменений
+    protected void attachColdUsers(ColdStore<User> cold) {
+        coldUsers = cold;
+        cold.forEachId((userId, friends) -> friendLinks.add(friends));
+    }
+
+    // Слияние упорядоченных ID из памяти и из холодного слоя: шаг стоит O(log n), пока action возвращает true
+    private void walkIds(long afterId, LongPredicate action) {
+        ColdStore<User> cold = coldUsers;
+        Long memoryId = userIds.higher(afterId);
+        long coldId = cold.higherId(afterId);
+        while (memoryId != null || coldId >= 0) {
+            long id = memoryId != null && (coldId < 0 || memoryId <= coldId) ? memoryId : coldId;
+            if (memoryId != null && memoryId == id) {
+                memoryId = userIds.higher(id);
+            }
+            if (coldId == id) {
+                coldId = cold.higherId(id);
+            }
+            if (!action.test(id)) {
+                return;
+            }
+        }
+    }
+
+    // Снимок проверяется первым, а подъем пользователя в память кладет его email в emailSet до вытеснения
+    // из снимка, поэтому занятый адрес не проскочит между двумя проверками
+    private boolean reserveEmail(String email) {
+        return !coldUsers.containsKey(email) && emailSet.add(email);
+    }
 
+    // Вызывается под блокировкой пользователя
+    private void putNewUser(User user) {
+        users.put(user.getId(), user);
+        userIds.add(user.getId());
+        pointInTimeViews.created(user.getId());
+        friendLinks.add(user.getFriendsId().size());
+    }
+
+    private void addFriendLink(User user, long friendId) {
+        if (user.getFriendsId().add(friendId)) {
+            friendLinks.increment();
+        }
+    }
+
+    private void removeFriendLink(User user, long friendId) {
+        if (user.getFriendsId().remove(friendId)) {
+            friendLinks.decrement();
+        }
+    }
+
+    private User findUser(Long userId) {
+        User user = users.get(userId);
+        if (user == null) {
+            user = coldUsers.read(userId);
+            if (user == null) {
+                // Между двумя чтениями пользователя могли поднять в память
+                user = users.get(userId);
+            }
+        }
+        return user;
+    }
+
+    // Вызывается под блокировкой пользователя: холодная запись поднимается в память перед изменением
+    private User memoryUser(Long userId) {
         User user = users.get(userId);
+        if (user == null) {
+            user = coldUsers.read(userId);
+            if (user != null) {
+                users.put(userId, user);
+                userIds.add(userId);
+                emailSet.add(user.getEmail());
+                coldUsers.evict(userId);
+            }
+        }
+        return user;
+    }
+
+    private User requireMemoryUser(Long userId) {
+        User user = memoryUser(userId);
         if (user == null) {
             throw new NotFoundException("Пользователь с ID: " + userId + " не найден");
         }
-        log.info("Пользователь с ID: {} найден и успешно предоставлен в ответ на запрос.", userId);
         return user;
     }
 
+    @Override
+    public int size() {
+        return users.size() + coldUsers.size();
+    }
+
+    @Override
+    public long friendLinkCount() {
+        return friendLinks.sum();
+    }
+
     @Override
     public void clear() {
         users.clear();
+        userIds.clear();
+        coldUsers = ColdStore.empty();
+        idGenerator.reset();
         emailSet.clear();
+        friendLinks.reset();
         log.info("Хранилище films очищено. Текущий размер: {}",  users.size());
     }
 
     @Override
     public List<User> getUsersByIds(Collection<Long> userIds) {
         return userIds.stream()
-                .map(id -> users.get(id))
+                .map(this::findUser)
                 .filter(Objects::nonNull)
                 .toList();
     }
-
-    private long getNextId() {
-        long currentMaxId = users.keySet()
-                .stream()
-                .mapToLong(id -> id)
-                .max()
-                .orElse(0);
-        return ++currentMaxId;
-    }
 }
@@ -1,22 +1,51 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import ru.yandex.practicum.filmorate.model.FriendEdge;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.BatchErrors;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface UserStorage {
 
     User addUser(User user);
 
+    // Пакетная вставка: пользователям выдаются ID, отклоненные передаются в errors
+    void addUsers(List<User> users, BatchErrors errors);
+
     User removeUser(Long id);
 
     User updateUser(User updatedUser);
 
     List<User> getAllUsers();
 
+    // До limit пользователей с ID больше afterId по возрастанию ID
+    List<User> getUsersPage(long afterId, int limit);
+
+    // Передает в action всех пользователей в состоянии на момент вызова, не собирая их в список
+    void exportUsers(Consumer<User> action);
+
     User getUserById(Long userId);
 
+    void addFriend(Long userId, Long friendId);
+
+    void removeFriend(Long userId, Long friendId);
+
+    void addFriends(List<FriendEdge> friendships, BatchErrors errors);
+
+    boolean containsUser(Long userId);
+
+    // Фоновая чистка: снимает из множеств друзей ссылки на удаленных пользователей, возвращает их число
+    int removeDanglingFriends();
+
+    // Для метрик: пользователи в памяти и в холодном слое
+    int size();
+
+    // Сумма размеров множеств друзей: взаимная дружба учитывается дважды
+    long friendLinkCount();
+
     void clear();
 
     List<User> getUsersByIds(Collection<Long> userIds);
@@ -0,0 +1,353 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.LikeListener;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.user;
+
+public class ConcurrentStorageTests {
+    private static final int THREADS = 64;
+    private static final int OPERATIONS_PER_THREAD = 50;
+
+    private InMemoryFilmStorage filmStorage;
+    private InMemoryUserStorage userStorage;
+    private FilmService filmService;
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        filmStorage = new InMemoryFilmStorage();
+        userStorage = new InMemoryUserStorage();
+        userService = new UserService(userStorage);
+        filmService = new FilmService(filmStorage, userService);
+    }
+
+    // Параллельное добавление фильмов не теряет записи и не выдает одинаковые ID
+    @Test
+    void testConcurrentAddFilmKeepsAllFilms() throws Exception {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                ids.add(filmStorage.addFilm(film("Фильм " + thread + "-" + i)).getId());
+            }
+        });
+
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, ids.size());
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, filmStorage.getAllFilm().size());
+    }
+
+    // Один и тот же E-mail может зарегистрировать только один поток
+    @Test
+    void testConcurrentAddUserWithSameEmailCreatesOneUser() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        runConcurrently(thread -> {
+            try {
+                userStorage.addUser(user("same@test.ru", "login" + thread));
+                created.incrementAndGet();
+            } catch (ValidationException e) {
+                rejected.incrementAndGet();
+            }
+        });
+
+        assertEquals(1, created.get());
+        assertEquals(THREADS - 1, rejected.get());
+        assertEquals(1, userStorage.getAllUsers().size());
+    }
+
+    // Лайки от разных потоков к одному фильму не теряются
+    @Test
+    void testConcurrentAddLikeHasNoLostUpdates() throws Exception {
+        Film film = filmStorage.addFilm(film("Популярный фильм"));
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < THREADS * OPERATIONS_PER_THREAD; i++) {
+            userIds.add(userStorage.addUser(user("user" + i + "@test.ru", "user" + i)).getId());
+        }
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                filmService.addLike(film.getId(), userIds.get(thread * OPERATIONS_PER_THREAD + i));
+            }
+        });
+
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, film.getFilmLikedUsersId().size());
+    }
+
+    // Из одновременных одинаковых лайков и снятий слушатель получает по одному событию
+    @Test
+    void testConcurrentDuplicateLikesNotifyOnce() throws Exception {
+        Film film = filmStorage.addFilm(film("Фильм"));
+        Long userId = userStorage.addUser(user("alice")).getId();
+        AtomicInteger liked = new AtomicInteger();
+        AtomicInteger unliked = new AtomicInteger();
+        FilmService countingService = new FilmService(filmStorage, userService, List.of(new LikeListener() {
+            @Override
+            public void liked(long likedUserId, long filmId) {
+                liked.incrementAndGet();
+            }
+
+            @Override
+            public void unliked(long unlikedUserId, long filmId) {
+                unliked.incrementAndGet();
+            }
+        }));
+
+        runConcurrently(thread -> countingService.addLike(film.getId(), userId));
+        runConcurrently(thread -> countingService.removeLike(film.getId(), userId));
+
+        assertEquals(1, liked.get());
+        assertEquals(1, unliked.get());
+    }
+
+    // Пока лайки переставляют фильмы в рейтинге, выдача популярных не теряет фильмы и не повторяет их
+    @Test
+    void testMostPopularIsConsistentWhileLikesChange() throws Exception {
+        int filmCount = 20;
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < filmCount; i++) {
+            Long filmId = filmStorage.addFilm(film("Фильм " + i)).getId();
+            filmStorage.addLike(filmId, 1L);
+            filmIds.add(filmId);
+        }
+        AtomicInteger broken = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD * 10; i++) {
+                if (thread % 2 == 0) {
+                    Long filmId = filmIds.get((thread + i) % filmCount);
+                    Long userId = 2L + thread;
+                    filmStorage.addLike(filmId, userId);
+                    filmStorage.removeLike(filmId, userId);
+                } else {
+                    List<Film> top = filmStorage.getMostPopularFilms(filmCount);
+                    if (top.size() != filmCount || top.stream().map(Film::getId).distinct().count() != filmCount) {
+                        broken.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        assertEquals(0, broken.get());
+    }
+
+    // Лайки разных фильмов переставляют их в рейтинге параллельно и не теряют ни фильмы, ни счетчики
+    @Test
+    void testConcurrentLikesOnDifferentFilmsKeepRanking() throws Exception {
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            filmIds.add(filmStorage.addFilm(film("Фильм " + i)).getId());
+        }
+
+        runConcurrently(thread -> {
+            for (long userId = 1; userId <= thread + 1; userId++) {
+                filmStorage.addLike(filmIds.get(thread), userId);
+                filmStorage.getMostPopularFilms(5);
+            }
+        });
+
+        List<Film> top = filmStorage.getMostPopularFilms(THREADS);
+        assertEquals(THREADS, top.size());
+        for (int i = 0; i < THREADS; i++) {
+            assertEquals(filmIds.get(THREADS - 1 - i), top.get(i).getId());
+        }
+        assertEquals(THREADS * (THREADS + 1) / 2, filmStorage.likeCount());
+        assertEquals(THREADS, filmStorage.popularCount());
+    }
+
+    // Лайки, идущие во время удаления пользователя, не остаются в фильмах после удаления
+    @Test
+    void testLikesDuringRemoveUserLeaveNoLikesOfRemovedUser() throws Exception {
+        int filmCount = 20;
+        for (int i = 0; i < filmCount; i++) {
+            filmStorage.addFilm(film("Фильм " + i));
+        }
+        int usersCount = THREADS * OPERATIONS_PER_THREAD / 4;
+        for (int i = 0; i < usersCount; i++) {
+            userStorage.addUser(user("user" + i + "@test.ru", "user" + i));
+        }
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                long userId = (thread / 4) * OPERATIONS_PER_THREAD + i + 1L;
+                if (userId > usersCount) {
+                    return;
+                }
+                if (thread % 4 == 0) {
+                    filmService.removeUser(userId);
+                    continue;
+                }
+                try {
+                    filmService.addLike(1L + (thread + i) % filmCount, userId);
+                } catch (NotFoundException e) {
+                    // Пользователя уже удалили в другом потоке
+                }
+            }
+        });
+
+        assertEquals(0, userStorage.size());
+        for (Film film : filmStorage.getAllFilm()) {
+            assertEquals(Set.of(), film.getFilmLikedUsersId(), "лайки удаленных в фильме " + film.getId());
+        }
+        assertEquals(0, filmStorage.likeCount());
+    }
+
+    // Встречные добавления в друзья оставляют дружбу симметричной
+    @Test
+    void testConcurrentAddFriendKeepsFriendshipSymmetric() throws Exception {
+        User center = userStorage.addUser(user("center@test.ru", "center"));
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            userIds.add(userStorage.addUser(user("friend" + i + "@test.ru", "friend" + i)).getId());
+        }
+
+        runConcurrently(thread -> {
+            Long friendId = userIds.get(thread);
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                if (i % 2 == 0) {
+                    userService.addFriend(center.getId(), friendId);
+                } else {
+                    userService.addFriend(friendId, center.getId());
+                }
+            }
+        });
+
+        assertEquals(THREADS, center.getFriendsId().size());
+        for (Long friendId : userIds) {
+            assertTrue(userStorage.getUserById(friendId).getFriendsId().contains(center.getId()));
+        }
+    }
+
+    // Выгрузка видит хранилище на момент начала, даже если оно меняется во время обхода
+    @Test
+    void testExportIsPointInTimeWhileWritesContinue() {
+        for (int i = 1; i <= 10; i++) {
+            filmStorage.addFilm(film("Фильм " + i));
+        }
+        Map<Long, Integer> exported = new HashMap<>();
+        filmStorage.exportFilms(film -> {
+            if (film.getId() == 3L) {
+                filmStorage.removeFilm(8L);
+                filmStorage.addLike(9L, 1L);
+                filmStorage.addLike(2L, 1L);
+                filmStorage.addFilm(film("Новый фильм"));
+            }
+            exported.put(film.getId(), film.getFilmLikedUsersId().size());
+        });
+
+        assertEquals(10, exported.size());
+        assertTrue(exported.containsKey(8L));
+        assertEquals(0, exported.get(9L));
+        assertEquals(0, exported.get(2L));
+        assertEquals(10, filmStorage.getAllFilm().size());
+        assertEquals(1, filmStorage.getFilmById(9L).getFilmLikedUsersId().size());
+    }
+
+    // Удаление пользователей во время добавления дружбы не оставляет ссылок на удаленных
+    @Test
+    void testConcurrentRemoveUserLeavesNoDanglingFriends() throws Exception {
+        int usersCount = THREADS * 2;
+        for (int i = 0; i < usersCount; i++) {
+            userStorage.addUser(user("user" + i + "@test.ru", "user" + i));
+        }
+        for (long friendId = 2; friendId <= usersCount; friendId++) {
+            userStorage.addFriend(1L, friendId);
+        }
+
+        runConcurrently(thread -> {
+            long removedId = thread + 1L;
+            long otherId = usersCount - thread / 2;
+            try {
+                userStorage.addFriend(otherId, removedId + 1);
+            } catch (NotFoundException e) {
+                // Друга уже удалили в другом потоке
+            }
+            if (thread % 2 == 0) {
+                userStorage.removeUser(removedId);
+            }
+        });
+
+        for (User user : userStorage.getAllUsers()) {
+            for (long friendId : user.getFriendsId().toLongArray()) {
+                assertTrue(userStorage.containsUser(friendId), user.getId() + " ссылается на удаленного " + friendId);
+            }
+        }
+        assertEquals(0, userStorage.removeDanglingFriends());
+    }
+
+    // Висячие ссылки, восстановленные из старых данных, снимает фоновый обход
+    @Test
+    void testRemoveDanglingFriendsCleansRestoredReferences() {
+        RestoringUserStorage storage = new RestoringUserStorage();
+        User first = user("first@test.ru", "first");
+        first.setId(1L);
+        first.addFriend(2L);
+        first.addFriend(3L);
+        User second = user("second@test.ru", "second");
+        second.setId(2L);
+        second.addFriend(1L);
+        storage.restore(first);
+        storage.restore(second);
+
+        assertEquals(1, storage.removeDanglingFriends());
+        assertEquals(Set.of(2L), storage.getUserById(1L).getFriendsId());
+        assertEquals(0, storage.removeDanglingFriends());
+    }
+
+    private void runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int thread = 0; thread < THREADS; thread++) {
+                int threadNumber = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(threadNumber);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static final class RestoringUserStorage extends InMemoryUserStorage {
+        private void restore(User user) {
+            restoreUser(user);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        void run(int threadNumber);
+    }
+}
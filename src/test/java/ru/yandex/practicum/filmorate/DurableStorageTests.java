@@ -0,0 +1,220 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.exception.StorageException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.durable.DurableFilmStorage;
+import ru.yandex.practicum.filmorate.storage.durable.DurableStorageProperties;
+import ru.yandex.practicum.filmorate.storage.durable.DurableUserStorage;
+import ru.yandex.practicum.filmorate.storage.id.SequenceIdGenerator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.user;
+
+public class DurableStorageTests {
+    @TempDir
+    Path directory;
+
+    private DurableStorageProperties properties;
+    private DurableFilmStorage filmStorage;
+    private DurableUserStorage userStorage;
+
+    @BeforeEach
+    void setUp() {
+        properties = new DurableStorageProperties();
+        properties.setDirectory(directory);
+        reopen();
+    }
+
+    @AfterEach
+    void tearDown() {
+        filmStorage.stop();
+        userStorage.stop();
+    }
+
+    // Состояние восстанавливается из снимка и дописанного после него хвоста журнала
+    @Test
+    void testStateIsRecoveredFromSnapshotAndLogTail() {
+        Film first = filmStorage.addFilm(film("Первый"));
+        Film second = filmStorage.addFilm(film("Второй"));
+        User alice = userStorage.addUser(user("alice"));
+        User bob = userStorage.addUser(user("bob"));
+        filmStorage.addLike(first.getId(), alice.getId());
+        userStorage.addFriend(alice.getId(), bob.getId());
+        filmStorage.snapshot();
+        userStorage.snapshot();
+
+        filmStorage.addLike(second.getId(), alice.getId());
+        filmStorage.addLike(second.getId(), bob.getId());
+        filmStorage.removeFilm(first.getId());
+        bob.setName("Боб");
+        userStorage.updateUser(bob);
+
+        reopen();
+
+        assertEquals(List.of(second.getId()), filmStorage.getAllFilm().stream().map(Film::getId).toList());
+        assertEquals(Set.of(alice.getId(), bob.getId()), filmStorage.getFilmById(second.getId()).getFilmLikedUsersId());
+        assertEquals(second.getId(), filmStorage.getMostPopularFilms(1).get(0).getId());
+        assertEquals("Боб", userStorage.getUserById(bob.getId()).getName());
+        assertEquals(Set.of(alice.getId()), userStorage.getUserById(bob.getId()).getFriendsId());
+        assertEquals(3L, filmStorage.addFilm(film("Третий")).getId());
+    }
+
+    // Холодные записи читаются из снимка и поднимаются в память при изменении
+    @Test
+    void testColdEntriesAreServedFromSnapshotAndLoadedOnChange() {
+        for (int i = 0; i < 10; i++) {
+            filmStorage.addFilm(film("Фильм " + i));
+            userStorage.addUser(user("user" + i));
+        }
+        filmStorage.addLike(3L, 1L);
+        userStorage.addFriend(1L, 2L);
+        filmStorage.snapshot();
+        userStorage.snapshot();
+        reopen();
+
+        assertEquals(10, filmStorage.getAllFilm().size());
+        assertEquals(3L, filmStorage.getMostPopularFilms(1).get(0).getId());
+        assertEquals(Set.of(2L), userStorage.getUserById(1L).getFriendsId());
+        assertThrows(ValidationException.class, () -> userStorage.addUser(user("user5")));
+
+        filmStorage.addLike(4L, 1L);
+        filmStorage.addLike(4L, 2L);
+        filmStorage.removeFilm(5L);
+        userStorage.addFriend(2L, 3L);
+        filmStorage.snapshot();
+        userStorage.snapshot();
+        reopen();
+
+        assertEquals(9, filmStorage.getAllFilm().size());
+        assertEquals(List.of(4L, 3L), filmStorage.getMostPopularFilms(2).stream().map(Film::getId).toList());
+        assertEquals(Set.of(1L, 3L), userStorage.getUserById(2L).getFriendsId());
+        assertEquals(10, userStorage.getAllUsers().size());
+        assertEquals(11L, filmStorage.addFilm(film("Новый")).getId());
+    }
+
+    // Обратный индекс лайков холодных фильмов строится в фоне, а снятие лайков пользователя
+    // восстанавливается из журнала по тому же списку фильмов
+    @Test
+    void testLikesOfUserAreRemovedFromColdFilmsAndReplayed() {
+        for (int i = 0; i < 5; i++) {
+            filmStorage.addFilm(film("Фильм " + i));
+        }
+        filmStorage.addLike(2L, 1L);
+        filmStorage.addLike(4L, 1L);
+        filmStorage.addLike(4L, 2L);
+        filmStorage.snapshot();
+        reopen();
+
+        assertEquals(List.of(2L, 4L), filmStorage.getFilmsLikedBy(1L).stream().map(Film::getId).sorted().toList());
+        assertArrayEquals(new long[]{2L, 4L}, Arrays.stream(filmStorage.removeLikesOf(1L)).sorted().toArray());
+        assertEquals(List.of(), filmStorage.getFilmsLikedBy(1L));
+
+        reopen();
+
+        assertEquals(List.of(), filmStorage.getFilmsLikedBy(1L));
+        assertEquals(Set.of(2L), filmStorage.getFilmById(4L).getFilmLikedUsersId());
+        assertEquals(List.of(4L), filmStorage.getFilmsLikedBy(2L).stream().map(Film::getId).toList());
+    }
+
+    // Изменение, которое не удалось дописать в журнал, не применяется и к памяти
+    @Test
+    void testMutationIsNotAppliedWhenJournalRejectsIt() {
+        Film film = filmStorage.addFilm(film("Фильм"));
+        User alice = userStorage.addUser(user("alice"));
+        User bob = userStorage.addUser(user("bob"));
+        Film renamed = film("Новое название");
+        renamed.setId(film.getId());
+        User carol = user("carol");
+        carol.setId(alice.getId());
+        filmStorage.stop();
+        userStorage.stop();
+
+        assertThrows(StorageException.class, () -> filmStorage.addLike(film.getId(), alice.getId()));
+        assertThrows(StorageException.class, () -> filmStorage.updateFilm(renamed));
+        assertThrows(StorageException.class, () -> userStorage.updateUser(carol));
+        assertThrows(StorageException.class, () -> filmStorage.addFilm(film("Второй")));
+        assertThrows(StorageException.class, () -> filmStorage.clear());
+        assertThrows(StorageException.class, () -> userStorage.addFriend(alice.getId(), bob.getId()));
+        assertThrows(StorageException.class, () -> userStorage.removeUser(bob.getId()));
+
+        assertEquals(Set.of(), filmStorage.getFilmById(film.getId()).getFilmLikedUsersId());
+        assertEquals("Фильм", filmStorage.getFilmById(film.getId()).getName());
+        assertEquals(1, filmStorage.getAllFilm().size());
+        assertEquals(Set.of(), userStorage.getUserById(alice.getId()).getFriendsId());
+        assertEquals("alice@test.ru", userStorage.getUserById(alice.getId()).getEmail());
+        // Адрес несостоявшегося обновления свободен: добавление падает на журнале, а не на проверке email
+        assertThrows(StorageException.class, () -> userStorage.addUser(user("carol")));
+        assertEquals(2, userStorage.getAllUsers().size());
+
+        reopen();
+
+        assertEquals(1, filmStorage.getAllFilm().size());
+        assertEquals("Фильм", filmStorage.getFilmById(film.getId()).getName());
+        assertEquals(Set.of(), userStorage.getUserById(bob.getId()).getFriendsId());
+        assertEquals("alice@test.ru", userStorage.getUserById(alice.getId()).getEmail());
+    }
+
+    // Поврежденная запись снимка не мешает старту: ошибка возникает только при чтении этой записи
+    @Test
+    void testCorruptedSnapshotRecordFailsOnlyOnAccess() throws IOException {
+        User alice = userStorage.addUser(user("alice"));
+        User bob = userStorage.addUser(user("bob"));
+        userStorage.snapshot();
+        filmStorage.stop();
+        userStorage.stop();
+        Path snapshot;
+        try (Stream<Path> files = Files.list(directory.resolve("users"))) {
+            snapshot = files.filter(path -> path.getFileName().toString().startsWith("snapshot-"))
+                    .findFirst()
+                    .orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[indexOf(bytes, "alice@test.ru".getBytes(StandardCharsets.UTF_8))] ^= 1;
+        Files.write(snapshot, bytes);
+
+        reopen();
+
+        assertThrows(StorageException.class, () -> userStorage.getUserById(alice.getId()));
+        assertEquals("bob", userStorage.getUserById(bob.getId()).getLogin());
+        assertThrows(ValidationException.class, () -> userStorage.addUser(user("bob")));
+    }
+
+    private void reopen() {
+        if (filmStorage != null) {
+            filmStorage.stop();
+            userStorage.stop();
+        }
+        filmStorage = new DurableFilmStorage(new SequenceIdGenerator(), properties);
+        userStorage = new DurableUserStorage(new SequenceIdGenerator(), properties);
+        filmStorage.start();
+        userStorage.start();
+    }
+
+    private static int indexOf(byte[] bytes, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= bytes.length; i++) {
+            if (Arrays.equals(bytes, i, i + pattern.length, pattern, 0, pattern.length)) {
+                return i;
+            }
+        }
+        throw new AssertionError("Последовательность байтов не найдена");
+    }
+
+}
@@ -6,12 +6,21 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.yandex.practicum.filmorate.controller.FilmController;
+import ru.yandex.practicum.filmorate.service.FilmRecommendationService;
+import ru.yandex.practicum.filmorate.service.TrendingFilmsService;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -40,10 +49,18 @@ public class FilmControllerTests {
     @Autowired
     private UserStorage userStorage;
 
+    @Autowired
+    private FilmRecommendationService filmRecommendationService;
+
+    @Autowired
+    private TrendingFilmsService trendingFilmsService;
+
     @BeforeEach
     void setUp() {
         filmStorage.clear();
         userStorage.clear();
+        filmRecommendationService.reset();
+        trendingFilmsService.reset();
     }
 
 // Добавление фильма
@@ -269,4 +286,354 @@ void testReturnRequestWhenAddLike() throws Exception {
                 .andExpect(jsonPath("$[0].id").value(1));
     }
 
+//Популярные фильмы упорядочены по числу лайков, при равенстве — по ID
+    @Test
+    void testReturnRequestWhenPopularOrderedByLikesThenId() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            mockMvc.perform(post("/films")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"name\":\"Фильм " + i + "\",\"duration\":\"120\",\"description\":\"Хороший фильм\",\"releaseDate\":\"1990-01-01\"}"))
+                    .andExpect(status().isCreated());
+        }
+        for (int i = 1; i <= 2; i++) {
+            mockMvc.perform(post("/users")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"email\":\"test" + i + "@test.ru\",\"login\":\"testlogin" + i + "\",\"birthday\":\"1990-01-01\"}"))
+                    .andExpect(status().isCreated());
+        }
+        mockMvc.perform(put("/films/2/like/1")).andExpect(status().isOk());
+        mockMvc.perform(put("/films/1/like/2")).andExpect(status().isOk());
+        mockMvc.perform(put("/films/3/like/1")).andExpect(status().isOk());
+        mockMvc.perform(put("/films/3/like/2")).andExpect(status().isOk());
+
+        mockMvc.perform(get("/films/popular?count=10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].id").value(3))
+                .andExpect(jsonPath("$[1].id").value(1))
+                .andExpect(jsonPath("$[2].id").value(2));
+
+        mockMvc.perform(delete("/films/3/like/1")).andExpect(status().isOk());
+        mockMvc.perform(delete("/films/3/like/2")).andExpect(status().isOk());
+
+        mockMvc.perform(get("/films/popular?count=10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].id").value(2));
+    }
+
+//Постраничная выдача фильмов по ID: limit и курсор after
+    @Test
+    void testReturnRequestWhenGetFilmsPage() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            mockMvc.perform(post("/films")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"name\":\"Фильм " + i + "\",\"duration\":\"120\",\"description\":\"Хороший фильм\",\"releaseDate\":\"1990-01-01\"}"))
+                    .andExpect(status().isCreated());
+        }
+        mockMvc.perform(get("/films?limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].id").value(1))
+                .andExpect(jsonPath("$.nextCursor").value(2));
+        mockMvc.perform(get("/films?limit=2&after=4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].id").value(5))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+        mockMvc.perform(get("/films?limit=0"))
+                .andExpect(status().isBadRequest());
+    }
+
+//Выгрузка всех фильмов в NDJSON, с gzip по Accept-Encoding
+    @Test
+    void testReturnRequestWhenExportFilms() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            mockMvc.perform(post("/films")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"name\":\"Фильм " + i + "\",\"duration\":\"120\",\"description\":\"Хороший фильм\",\"releaseDate\":\"1990-01-01\"}"))
+                    .andExpect(status().isCreated());
+        }
+        MvcResult plain = mockMvc.perform(get("/films/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(plain))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        String[] lines = body.split("\n");
+        assertEquals(3, lines.length);
+        assertEquals(1, objectMapper.readTree(lines[0]).get("id").asInt());
+        assertEquals("1990-01-01", objectMapper.readTree(lines[2]).get("releaseDate").asText());
+
+        MvcResult gzip = mockMvc.perform(get("/films/export").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] compressed = mockMvc.perform(asyncDispatch(gzip))
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertEquals(body, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+//Пакетный импорт фильмов и лайков с ошибками по отдельным элементам
+    @Test
+    void testReturnRequestWhenImportFilmsAndLikes() throws Exception {
+        mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"test@test.ru\",\"login\":\"testlogin\",\"birthday\":\"1990-01-01\"}"))
+                .andExpect(status().isCreated());
+        String film = "{\"name\":\"%s\",\"duration\":\"120\",\"description\":\"Хороший фильм\",\"releaseDate\":\"%s\"}";
+        String films = "[" + String.join(",",
+                film.formatted("Фильм 1", "1990-01-01"),
+                film.formatted("Фильм 2", "1991-01-01"),
+                film.formatted("Старый фильм", "1800-01-01"),
+                film.formatted("Фильм 3", "1992-01-01"),
+                film.formatted("", "1993-01-01")) + "]";
+        mockMvc.perform(post("/films/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(films))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(3))
+                .andExpect(jsonPath("$.failed").value(2))
+                .andExpect(jsonPath("$.ids[0]").value(1))
+                .andExpect(jsonPath("$.ids[2]").value(0))
+                .andExpect(jsonPath("$.ids[3]").value(3))
+                .andExpect(jsonPath("$.errors[0].index").value(2))
+                .andExpect(jsonPath("$.errors[1].index").value(4));
+
+        String likes = "{\"filmId\":2,\"userId\":1}\n"
+                + "{\"filmId\":99,\"userId\":1}\n"
+                + "{\"filmId\":3,\"userId\":42}\n";
+        mockMvc.perform(post("/films/likes/import")
+                        .contentType("application/x-ndjson")
+                        .content(likes))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.failed").value(2))
+                .andExpect(jsonPath("$.ids").doesNotExist());
+        mockMvc.perform(get("/films/popular?count=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(2));
+    }
+
+//Рекомендации фильмов по схожести множеств лайкнувших, без уже лайкнутых фильмов
+    @Test
+    void testReturnRequestWhenGetFilmRecommendations() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            mockMvc.perform(post("/users")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"email\":\"test" + i + "@test.ru\",\"login\":\"testlogin" + i + "\",\"birthday\":\"1990-01-01\"}"))
+                    .andExpect(status().isCreated());
+        }
+        for (int i = 1; i <= 4; i++) {
+            mockMvc.perform(post("/films")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"name\":\"Фильм " + i + "\",\"duration\":\"120\",\"description\":\"Хороший фильм\",\"releaseDate\":\"1990-01-01\"}"))
+                    .andExpect(status().isCreated());
+        }
+        String[] likes = {"1/like/1", "2/like/1", "1/like/2", "2/like/2", "3/like/2", "2/like/3", "4/like/3"};
+        for (String like : likes) {
+            mockMvc.perform(put("/films/" + like)).andExpect(status().isOk());
+        }
+        mockMvc.perform(get("/users/1/films/recommended"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(3))
+                .andExpect(jsonPath("$[1].id").value(4));
+        mockMvc.perform(get("/users/99/films/recommended"))
+                .andExpect(status().isNotFound());
+    }
+
+//Лайки пользователя по обратному индексу и их снятие при удалении пользователя
+    @Test
+    void testReturnRequestWhenGetLikedFilmsAndRemoveUser() throws Exception {
+        for (int i = 1; i <= 2; i++) {
+            mockMvc.perform(post("/users")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"email\":\"test" + i + "@test.ru\",\"login\":\"testlogin" + i + "\",\"birthday\":\"1990-01-01\"}"))
+                    .andExpect(status().isCreated());
+        }
+        for (int i = 1; i <= 3; i++) {
+            mockMvc.perform(post("/films")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"name\":\"Фильм " + i + "\",\"duration\":\"120\",\"description\":\"Хороший фильм\",\"releaseDate\":\"1990-01-01\"}"))
+                    .andExpect(status().isCreated());
+        }
+        mockMvc.perform(put("/films/3/like/1")).andExpect(status().isOk());
+        mockMvc.perform(put("/films/1/like/1")).andExpect(status().isOk());
+        mockMvc.perform(put("/films/1/like/2")).andExpect(status().isOk());
+
+        mockMvc.perform(get("/users/1/likes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].id").value(3));
+
+        mockMvc.perform(delete("/users/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1));
+        mockMvc.perform(get("/films/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.filmLikedUsersId.length()").value(1))
+                .andExpect(jsonPath("$.filmLikedUsersId[0]").value(2));
+        mockMvc.perform(get("/films/3"))
+                .andExpect(jsonPath("$.filmLikedUsersId.length()").value(0));
+        mockMvc.perform(get("/users/1/likes"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(delete("/users/1"))
+                .andExpect(status().isNotFound());
+    }
+
+//Тренды считают только настоящие изменения лайков за окно
+    @Test
+    void testReturnRequestWhenGetTrendingFilms() throws Exception {
+        for (int i = 1; i <= 2; i++) {
+            mockMvc.perform(post("/users")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"email\":\"test" + i + "@test.ru\",\"login\":\"testlogin" + i + "\",\"birthday\":\"1990-01-01\"}"))
+                    .andExpect(status().isCreated());
+            mockMvc.perform(post("/films")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"name\":\"Фильм " + i + "\",\"duration\":\"120\",\"description\":\"Хороший фильм\",\"releaseDate\":\"1990-01-01\"}"))
+                    .andExpect(status().isCreated());
+        }
+        mockMvc.perform(put("/films/1/like/1")).andExpect(status().isOk());
+        mockMvc.perform(put("/films/2/like/1")).andExpect(status().isOk());
+        mockMvc.perform(put("/films/2/like/2")).andExpect(status().isOk());
+        // Повторный лайк не добавляет фильму веса
+        mockMvc.perform(put("/films/1/like/1")).andExpect(status().isOk());
+
+        mockMvc.perform(get("/films/trending?window=1h"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(2))
+                .andExpect(jsonPath("$[1].id").value(1));
+
+        mockMvc.perform(delete("/films/2/like/1")).andExpect(status().isOk());
+        mockMvc.perform(delete("/films/2/like/2")).andExpect(status().isOk());
+        mockMvc.perform(get("/films/trending?window=7d&count=5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(1));
+
+        mockMvc.perform(get("/films/trending?window=2h"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testReturnRequestWhenGetFilmsByReleaseDateAndDuration() throws Exception {
+        String[] releaseDates = {"1990-01-01", "2000-06-15", "2010-12-31"};
+        long[] durations = {90, 120, 150};
+        for (int i = 0; i < releaseDates.length; i++) {
+            mockMvc.perform(post("/films")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"name\":\"Фильм " + i + "\",\"duration\":\"" + durations[i]
+                                    + "\",\"description\":\"Описание\",\"releaseDate\":\"" + releaseDates[i] + "\"}"))
+                    .andExpect(status().isCreated());
+        }
+        mockMvc.perform(get("/films?releasedFrom=2000-01-01"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(2))
+                .andExpect(jsonPath("$[1].id").value(3));
+        mockMvc.perform(get("/films?releasedFrom=1990-01-01&releasedTo=2005-01-01&minDuration=100&maxDuration=150"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(2));
+
+        // Индексы следуют за обновлением фильма
+        mockMvc.perform(put("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":2,\"name\":\"Фильм 1\",\"duration\":\"60\",\"description\":\"Описание\",\"releaseDate\":\"1980-01-01\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/films?maxDuration=100"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].id").value(2));
+        mockMvc.perform(get("/films?releasedFrom=1995-01-01&releasedTo=2005-01-01"))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/films?minDuration=-1"))
+                .andExpect(status().isBadRequest());
+    }
+
+//Фильтры по дате релиза и продолжительности вместе с limit и after
+    @Test
+    void testReturnRequestWhenGetFilteredFilmsPage() throws Exception {
+        long[] durations = {90, 120, 150, 130, 140};
+        for (int i = 0; i < durations.length; i++) {
+            mockMvc.perform(post("/films")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"name\":\"Фильм " + i + "\",\"duration\":\"" + durations[i]
+                                    + "\",\"description\":\"Описание\",\"releaseDate\":\"2000-01-01\"}"))
+                    .andExpect(status().isCreated());
+        }
+        mockMvc.perform(get("/films?minDuration=100&maxDuration=140&limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].id").value(2))
+                .andExpect(jsonPath("$.items[1].id").value(4))
+                .andExpect(jsonPath("$.nextCursor").value(4));
+        mockMvc.perform(get("/films?minDuration=100&maxDuration=140&limit=2&after=4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].id").value(5))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+        mockMvc.perform(get("/films?releasedFrom=2000-01-01&limit=10&after=3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].id").value(4));
+        mockMvc.perform(get("/films?minDuration=100&after=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].id").value(3));
+        mockMvc.perform(get("/films?minDuration=-1&limit=2"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testReturnRequestWhenSearchFilms() throws Exception {
+        String[] names = {"Война и мир", "Звездные войны", "Star Wars"};
+        String[] descriptions = {"Экранизация романа о войне 1812 года", "Космическая опера",
+                "Space opera about the galactic war"};
+        for (int i = 0; i < names.length; i++) {
+            mockMvc.perform(post("/films")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"name\":\"" + names[i] + "\",\"duration\":\"120\",\"description\":\"" + descriptions[i]
+                                    + "\",\"releaseDate\":\"1990-01-01\"}"))
+                    .andExpect(status().isCreated());
+        }
+        // «войны» и «войне» сводятся к одному терму, у первого фильма он встречается дважды
+        mockMvc.perform(get("/films/search?q=Войны"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[1].id").value(2));
+        mockMvc.perform(get("/films/search?q=opera&count=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(3));
+
+        mockMvc.perform(put("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":2,\"name\":\"Солярис\",\"duration\":\"120\",\"description\":\"Космическая драма\",\"releaseDate\":\"1990-01-01\"}"))
+                .andExpect(status().isOk());
+        // После обновления фильм ищется только по новому тексту
+        mockMvc.perform(get("/films/search?q=война"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(1));
+        mockMvc.perform(get("/films/search?q=космос солярис"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(2));
+
+        mockMvc.perform(get("/films/search?q= "))
+                .andExpect(status().isBadRequest());
+    }
+
 }
@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.yandex.practicum.filmorate.logging.HttpExchangeLoggingFilter;
+import ru.yandex.practicum.filmorate.logging.HttpLogProperties;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HttpExchangeLoggingFilterTests {
+
+    // Тела длиннее предела журнала доходят до обработчика и клиента целиком
+    @Test
+    void testBodiesLongerThanCaptureLimitPassThroughUnchanged() throws Exception {
+        HttpLogProperties properties = new HttpLogProperties();
+        properties.setMaxBodySize(16);
+        HttpExchangeLoggingFilter filter = new HttpExchangeLoggingFilter(properties,
+                new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+        String requestBody = "{\"name\":\"" + "а".repeat(1000) + "\"}";
+        String responseBody = "{\"error\":\"" + "б".repeat(5000) + "\"}";
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                String received = new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+                assertEquals(requestBody, received);
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                response.setCharacterEncoding("UTF-8");
+                response.getOutputStream().write(responseBody.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/films");
+        request.setCharacterEncoding("UTF-8");
+        request.setContent(requestBody.getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain(servlet));
+
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatus());
+        assertEquals(responseBody, response.getContentAsString(StandardCharsets.UTF_8));
+    }
+
+    // Оборвавшаяся потоковая выгрузка пишется в журнал как ошибка и попадает в таймер один раз,
+    // хотя после onError контейнер вызывает и onComplete
+    @Test
+    void testFailedAsyncExportIsRecordedOnce() throws Exception {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("meterRegistry", registry);
+        HttpExchangeLoggingFilter filter = new HttpExchangeLoggingFilter(new HttpLogProperties(),
+                beans.getBeanProvider(MeterRegistry.class));
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) {
+                request.startAsync();
+            }
+        };
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/films/export");
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain(servlet));
+        MockAsyncContext asyncContext = (MockAsyncContext) request.getAsyncContext();
+        AsyncEvent error = new AsyncEvent(asyncContext, new IOException("Соединение закрыто клиентом"));
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onError(error);
+        }
+        asyncContext.complete();
+
+        assertEquals(1, registry.get("filmorate.http.log").timers().stream().mapToLong(Timer::count).sum());
+        assertEquals(1, registry.get("filmorate.http.log").tag("outcome", "full").timer().count());
+    }
+}
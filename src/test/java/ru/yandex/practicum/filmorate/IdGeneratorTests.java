@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.id.BlockIdGenerator;
+import ru.yandex.practicum.filmorate.storage.id.IdGenerator;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.yandex.practicum.filmorate.TestData.film;
+
+public class IdGeneratorTests {
+
+    // ID удаленного фильма не выдается повторно
+    @Test
+    void testRemovedFilmIdIsNotReused() {
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+        filmStorage.addFilm(film());
+        Film last = filmStorage.addFilm(film());
+        filmStorage.removeFilm(last.getId());
+
+        assertEquals(3L, filmStorage.addFilm(film()).getId());
+    }
+
+    // Узлы с блочным генератором не пересекаются, а ID каждого узла монотонно растут
+    @Test
+    void testBlockGeneratorsOfDifferentNodesDoNotOverlap() {
+        IdGenerator first = new BlockIdGenerator(0, 2, 10);
+        IdGenerator second = new BlockIdGenerator(1, 2, 10);
+        Set<Long> ids = new HashSet<>();
+        long previousFirst = 0;
+        long previousSecond = 0;
+        for (int i = 0; i < 100; i++) {
+            long firstId = first.nextId();
+            long secondId = second.nextId();
+            assertTrue(firstId > previousFirst);
+            assertTrue(secondId > previousSecond);
+            assertTrue(ids.add(firstId));
+            assertTrue(ids.add(secondId));
+            previousFirst = firstId;
+            previousSecond = secondId;
+        }
+    }
+
+    // После восстановления генератор продолжает выдачу строго после уже занятых ID
+    @Test
+    void testBlockGeneratorAdvancesPastUsedId() {
+        IdGenerator generator = new BlockIdGenerator(0, 2, 10);
+        generator.advanceTo(25);
+
+        assertTrue(generator.nextId() > 25);
+    }
+
+    // Диапазон ID переходит через границу блока в следующий блок узла и не пересекается с nextId
+    @Test
+    void testBlockGeneratorRangeSpansBlocks() {
+        IdGenerator generator = new BlockIdGenerator(1, 2, 10);
+        long[] range = generator.nextIds(15);
+
+        assertEquals(11, range[0]);
+        assertEquals(20, range[9]);
+        assertEquals(31, range[10]);
+        assertEquals(35, range[14]);
+        assertEquals(36, generator.nextId());
+    }
+}
@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class MetricsTests {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FilmStorage filmStorage;
+
+    @Autowired
+    private UserStorage userStorage;
+
+    @BeforeEach
+    void setUp() {
+        filmStorage.clear();
+        userStorage.clear();
+    }
+
+    @Test
+    void testPrometheusEndpointExposesStorageTimersGaugesAndErrors() throws Exception {
+        mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"test@test.ru\",\"login\":\"testlogin\",\"birthday\":\"1990-01-01\"}"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Фильм\",\"duration\":\"120\",\"description\":\"Описание\",\"releaseDate\":\"1990-01-01\"}"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(put("/films/1/like/1")).andExpect(status().isOk());
+        mockMvc.perform(get("/films/999")).andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket{")))
+                .andExpect(content().string(containsString("filmorate_storage_seconds_bucket{")))
+                .andExpect(content().string(containsString("method=\"addFilm\"")))
+                .andExpect(content().string(containsString("filmorate_films 1.0")))
+                .andExpect(content().string(containsString("filmorate_users 1.0")))
+                .andExpect(content().string(containsString("filmorate_likes 1.0")))
+                .andExpect(content().string(containsString("filmorate_films_popular 1.0")))
+                .andExpect(content().string(containsString("filmorate_errors_total{exception=\"NotFoundException\"")));
+    }
+
+    // Ошибка пишется в журнал полностью, а время фильтра журнала попадает в таймер по шаблону пути
+    @Test
+    void testPrometheusEndpointExposesHttpLogOverheadPerEndpoint() throws Exception {
+        mockMvc.perform(get("/films/999")).andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("filmorate_http_log_seconds_bucket{")))
+                .andExpect(content().string(containsString(
+                        "filmorate_http_log_seconds_count{method=\"GET\",outcome=\"full\",uri=\"/films/{id}\"")));
+    }
+}
@@ -0,0 +1,205 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.cache.DataVersions;
+import ru.yandex.practicum.filmorate.cache.ResponseCache;
+import ru.yandex.practicum.filmorate.cache.ResponseCacheProperties;
+import ru.yandex.practicum.filmorate.cache.SingleFlight;
+import ru.yandex.practicum.filmorate.cache.SingleFlightProperties;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static ru.yandex.practicum.filmorate.TestData.film;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class ResponseCacheTests {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FilmStorage filmStorage;
+
+    @Autowired
+    private UserStorage userStorage;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        filmStorage.clear();
+        userStorage.clear();
+    }
+
+    // Лайк меняет и закэшированный фильм, и рейтинг популярных
+    @Test
+    void testCachedFilmAndPopularReflectNewLikes() throws Exception {
+        addUser("first");
+        addUser("second");
+        mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Фильм\",\"duration\":\"120\",\"description\":\"Описание\",\"releaseDate\":\"1990-01-01\"}"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(put("/films/1/like/1")).andExpect(status().isOk());
+        double hitsBefore = cacheRequests("hit");
+        double rebuildsBefore = cacheRequests("miss") + cacheRequests("stale");
+        mockMvc.perform(get("/films/popular?count=10")).andExpect(jsonPath("$[0].filmLikedUsersId.length()").value(1));
+        mockMvc.perform(get("/films/1")).andExpect(jsonPath("$.filmLikedUsersId.length()").value(1));
+        mockMvc.perform(get("/films/1")).andExpect(jsonPath("$.filmLikedUsersId.length()").value(1));
+
+        mockMvc.perform(put("/films/1/like/2")).andExpect(status().isOk());
+
+        mockMvc.perform(get("/films/popular?count=10"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[0].filmLikedUsersId.length()").value(2));
+        mockMvc.perform(get("/films/1")).andExpect(jsonPath("$.filmLikedUsersId.length()").value(2));
+
+        // Второе чтение фильма отдано из кэша, первое и чтение после лайка собраны заново
+        assertEquals(1, cacheRequests("hit") - hitsBefore);
+        assertEquals(2, cacheRequests("miss") + cacheRequests("stale") - rebuildsBefore);
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(content().string(containsString("filmorate_response_cache_evictions_total")))
+                .andExpect(content().string(containsString("filmorate_response_cache_bytes")));
+    }
+
+    // Переименование друга и удаление из друзей видны в закэшированных списках друзей и общих друзей
+    @Test
+    void testCachedFriendListsReflectFriendChanges() throws Exception {
+        addUser("first");
+        addUser("second");
+        addUser("third");
+        mockMvc.perform(put("/users/1/friends/2")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/3/friends/2")).andExpect(status().isOk());
+        mockMvc.perform(get("/users/1/friends")).andExpect(jsonPath("$[0].name").value("second"));
+        mockMvc.perform(get("/users/1/friends/common/3")).andExpect(jsonPath("$.length()").value(1));
+
+        mockMvc.perform(put("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":2,\"email\":\"second@test.ru\",\"login\":\"second\",\"name\":\"Петров\",\"birthday\":\"1990-01-01\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/users/1/friends")).andExpect(jsonPath("$[0].name").value("Петров"));
+
+        mockMvc.perform(delete("/users/3/friends/2")).andExpect(status().isOk());
+        mockMvc.perform(get("/users/1/friends/common/3")).andExpect(jsonPath("$.length()").value(0));
+    }
+
+    // Неизменившийся ресурс отдается кодом 304 без тела, после лайка ETag меняется
+    @Test
+    void testConditionalGetReturnsNotModifiedUntilFilmChanges() throws Exception {
+        addUser("first");
+        mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Фильм\",\"duration\":\"120\",\"description\":\"Описание\",\"releaseDate\":\"1990-01-01\"}"))
+                .andExpect(status().isCreated());
+        String etag = mockMvc.perform(get("/films/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String popularEtag = mockMvc.perform(get("/films/popular"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/films/popular").header(HttpHeaders.IF_NONE_MATCH, popularEtag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(put("/films/1/like/1")).andExpect(status().isOk());
+
+        mockMvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)))
+                .andExpect(jsonPath("$.filmLikedUsersId.length()").value(1));
+        mockMvc.perform(get("/films/popular").header(HttpHeaders.IF_NONE_MATCH, popularEtag))
+                .andExpect(status().isOk());
+    }
+
+    // Переименование друга меняет ETag списка друзей
+    @Test
+    void testFriendListEtagChangesWhenFriendRenamed() throws Exception {
+        addUser("first");
+        addUser("second");
+        mockMvc.perform(put("/users/1/friends/2")).andExpect(status().isOk());
+        String etag = mockMvc.perform(get("/users/1/friends"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/users/1/friends").header(HttpHeaders.IF_NONE_MATCH, "W/" + etag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(put("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":2,\"email\":\"second@test.ru\",\"login\":\"second\",\"name\":\"Петров\",\"birthday\":\"1990-01-01\"}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/users/1/friends").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Петров"));
+    }
+
+    // Изменение, случившееся пока ответ собирался, не дает сохранить этот ответ
+    @Test
+    void testResponseBuiltDuringChangeIsNotCached() {
+        DataVersions versions = new DataVersions();
+        ObjectProvider<MeterRegistry> noRegistry = new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class);
+        ResponseCache cache = new ResponseCache(new ObjectMapper().findAndRegisterModules(), versions,
+                new ResponseCacheProperties(), new SingleFlight(new SingleFlightProperties(), noRegistry), noRegistry);
+        AtomicInteger loads = new AtomicInteger();
+        Film film = film();
+        film.setId(1L);
+
+        cache.film(1L, null, () -> {
+            loads.incrementAndGet();
+            versions.filmChanged(1L);
+            return film;
+        });
+        cache.film(1L, null, () -> {
+            loads.incrementAndGet();
+            return film;
+        });
+        cache.film(1L, null, () -> {
+            loads.incrementAndGet();
+            return film;
+        });
+
+        assertEquals(2, loads.get());
+    }
+
+    private double cacheRequests(String result) {
+        return meterRegistry.get("filmorate.response.cache.requests")
+                .tag("endpoint", "film")
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+
+    private void addUser(String login) throws Exception {
+        mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + login + "@test.ru\",\"login\":\"" + login + "\",\"name\":\"" + login
+                                + "\",\"birthday\":\"1990-01-01\"}"))
+                .andExpect(status().isCreated());
+    }
+}
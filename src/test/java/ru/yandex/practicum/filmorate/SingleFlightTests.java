@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import ru.yandex.practicum.filmorate.cache.SingleFlight;
+import ru.yandex.practicum.filmorate.cache.SingleFlightProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SingleFlightTests {
+
+    // Запросы, пришедшие во время вычисления, получают его результат, а не считают заново
+    @Test
+    void testConcurrentCallsShareOneComputation() throws Exception {
+        SingleFlight singleFlight = singleFlight(Duration.ofSeconds(30));
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ConcurrentLinkedQueue<String> results = new ConcurrentLinkedQueue<>();
+        Runnable call = () -> results.add(singleFlight.execute("popular", 10, () -> {
+            computations.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "top";
+        }));
+
+        Thread leader = Thread.ofPlatform().start(call);
+        started.await();
+        List<Thread> followers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            followers.add(Thread.ofPlatform().start(call));
+        }
+        for (Thread follower : followers) {
+            while (follower.getState() != Thread.State.TIMED_WAITING) {
+                Thread.onSpinWait();
+            }
+        }
+        release.countDown();
+        leader.join();
+        for (Thread follower : followers) {
+            follower.join();
+        }
+
+        assertEquals(1, computations.get());
+        assertEquals(9, results.size());
+        assertTrue(results.stream().allMatch("top"::equals));
+    }
+
+    // Не дождавшись чужого вычисления за maxWait, запрос считает сам
+    @Test
+    void testCallerComputesItselfAfterMaxWait() throws Exception {
+        SingleFlight singleFlight = singleFlight(Duration.ofMillis(10));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread leader = Thread.ofPlatform().start(() -> singleFlight.execute("popular", 10, () -> {
+            started.countDown();
+            await(release);
+            return "slow";
+        }));
+        started.await();
+
+        String result = singleFlight.execute("popular", 10, () -> "own");
+
+        release.countDown();
+        leader.join();
+        assertEquals("own", result);
+    }
+
+    private static SingleFlight singleFlight(Duration maxWait) {
+        SingleFlightProperties properties = new SingleFlightProperties();
+        properties.setMaxWait(maxWait);
+        return new SingleFlight(properties, new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
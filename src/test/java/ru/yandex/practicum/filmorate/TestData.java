@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+
+// Общие заготовки сущностей для тестов хранилищ и сервисов: поля, которые тесты не проверяют, у всех одинаковые
+final class TestData {
+
+    private TestData() {
+    }
+
+    static Film film() {
+        return film("Фильм");
+    }
+
+    static Film film(String name) {
+        return new Film(null, name, "Описание", LocalDate.of(2000, 1, 1), 120L);
+    }
+
+    static User user(String login) {
+        return user(login + "@test.ru", login);
+    }
+
+    static User user(String email, String login) {
+        return new User(null, email, login, null, LocalDate.of(1990, 1, 1));
+    }
+}
@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.TrendingFilmsService;
+import ru.yandex.practicum.filmorate.service.TrendingFilmsService.Window;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static ru.yandex.practicum.filmorate.TestData.film;
+
+public class TrendingFilmsTests {
+    private MutableClock clock;
+    private TrendingFilmsService trendingFilms;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+        for (int i = 1; i <= 3; i++) {
+            filmStorage.addFilm(film("Фильм " + i));
+        }
+        clock = new MutableClock(Instant.parse("2024-05-01T12:00:00Z"));
+        trendingFilms = new TrendingFilmsService(filmStorage, clock);
+    }
+
+    // Лайки выпадают из окна по мере хода времени, а пересборка убирает их из рейтинга
+    @Test
+    void testLikesLeaveWindowsAsTimePasses() {
+        like(1, 3);
+        clock.advance(Duration.ofHours(2));
+        like(2, 2);
+        clock.advance(Duration.ofMinutes(30));
+        like(3, 1);
+        // Между пересборками устаревший счет фильма 1 еще держится в часовом рейтинге
+        assertEquals(List.of(1L, 2L, 3L), ids(Window.HOUR));
+
+        trendingFilms.rebuild();
+        assertEquals(List.of(2L, 3L), ids(Window.HOUR));
+        assertEquals(List.of(1L, 2L, 3L), ids(Window.DAY));
+
+        clock.advance(Duration.ofDays(1));
+        trendingFilms.rebuild();
+        assertEquals(List.of(), ids(Window.HOUR));
+        assertEquals(List.of(), ids(Window.DAY));
+        assertEquals(List.of(1L, 2L, 3L), ids(Window.WEEK));
+
+        clock.advance(Duration.ofDays(7));
+        trendingFilms.rebuild();
+        assertEquals(List.of(), ids(Window.WEEK));
+    }
+
+    // Снятый лайк уменьшает счет, но не уводит его ниже нуля
+    @Test
+    void testUnlikeLowersScore() {
+        like(1, 2);
+        like(2, 1);
+        trendingFilms.unliked(1, 1);
+        trendingFilms.unliked(2, 1);
+        trendingFilms.unliked(3, 2);
+
+        assertEquals(List.of(), ids(Window.HOUR));
+        like(3, 1);
+        assertEquals(List.of(3L), ids(Window.HOUR));
+    }
+
+    private void like(long filmId, int times) {
+        for (int i = 0; i < times; i++) {
+            trendingFilms.liked(i + 1, filmId);
+        }
+    }
+
+    private List<Long> ids(Window window) {
+        return trendingFilms.trending(window, 10).stream().map(Film::getId).toList();
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        private void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
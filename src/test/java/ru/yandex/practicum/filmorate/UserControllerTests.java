@@ -266,5 +266,77 @@ public class UserControllerTests {
                 .andExpect(jsonPath("$[0].id").value(2));
     }
 
-}
+// Получение количества общих друзей
+    @Test
+    void testReturnRequestWhenCountCommonFriend() throws Exception {
+        for (int i = 1; i <= 4; i++) {
+            mockMvc.perform(post("/users")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"email\":\"test" + i + "@test.ru\",\"login\":\"testlogin" + i + "\",\"birthday\":\"1991-01-01\"}"))
+                    .andExpect(status().isCreated());
+        }
+        mockMvc.perform(put("/users/1/friends/2")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/1/friends/3")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/4/friends/2")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/4/friends/3")).andExpect(status().isOk());
+        mockMvc.perform(get("/users/1/friends/common/4/count"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(2));
+    }
+
+// Пакетный импорт пользователей и дружб, повторный email отклоняется
+    @Test
+    void testReturnRequestWhenImportUsersAndFriends() throws Exception {
+        String users = "{\"email\":\"test1@test.ru\",\"login\":\"testlogin1\",\"birthday\":\"1990-01-01\"}\n"
+                + "{\"email\":\"test2@test.ru\",\"login\":\"testlogin2\",\"birthday\":\"1990-01-01\"}\n"
+                + "{\"email\":\"test1@test.ru\",\"login\":\"testlogin3\",\"birthday\":\"1990-01-01\"}\n"
+                + "{\"email\":\"test3@test.ru\",\"login\":\"testlogin3\",\"birthday\":\"1990-01-01\"}\n";
+        mockMvc.perform(post("/users/import")
+                        .contentType("application/x-ndjson")
+                        .content(users))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(3))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.errors[0].index").value(2))
+                .andExpect(jsonPath("$.ids[3]").value(3));
 
+        mockMvc.perform(post("/users/friends/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"userId\":1,\"friendId\":2},{\"userId\":1,\"friendId\":1},{\"userId\":3,\"friendId\":1}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.failed").value(1));
+        mockMvc.perform(get("/users/1/friends"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].name").value("testlogin2"));
+    }
+
+// Рекомендации друзей: друзья друзей по убыванию числа общих друзей, без самого пользователя и его друзей
+    @Test
+    void testReturnRequestWhenGetFriendRecommendations() throws Exception {
+        for (int i = 1; i <= 6; i++) {
+            mockMvc.perform(post("/users")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"email\":\"test" + i + "@test.ru\",\"login\":\"testlogin" + i + "\",\"birthday\":\"1991-01-01\"}"))
+                    .andExpect(status().isCreated());
+        }
+        mockMvc.perform(put("/users/1/friends/2")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/1/friends/3")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/2/friends/4")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/3/friends/4")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/3/friends/5")).andExpect(status().isOk());
+        mockMvc.perform(put("/users/2/friends/3")).andExpect(status().isOk());
+        mockMvc.perform(get("/users/1/recommendations"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(4))
+                .andExpect(jsonPath("$[1].id").value(5));
+        mockMvc.perform(get("/users/1/recommendations?count=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+        mockMvc.perform(get("/users/1/recommendations?count=101"))
+                .andExpect(status().isBadRequest());
+    }
+
+}
@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import ru.yandex.practicum.filmorate.cache.DataVersions;
+import ru.yandex.practicum.filmorate.cache.VersionedStoragePostProcessor;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.user;
+
+public class VersionedStorageProxyTests {
+    private DataVersions versions;
+    private VersionedStoragePostProcessor postProcessor;
+
+    @BeforeEach
+    void setUp() {
+        versions = new DataVersions();
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("dataVersions", versions);
+        postProcessor = new VersionedStoragePostProcessor(beanFactory.getBeanProvider(DataVersions.class));
+    }
+
+    // Новый метод хранилища должен быть описан в прокси: иначе кэш ответов не узнает о его изменениях,
+    // и хранилище не получится обернуть
+    @Test
+    void testEveryStorageMethodIsHandled() {
+        assertDoesNotThrow(() -> postProcessor.postProcessAfterInitialization(new InMemoryFilmStorage(), "films"));
+        assertDoesNotThrow(() -> postProcessor.postProcessAfterInitialization(new InMemoryUserStorage(), "users"));
+    }
+
+    // Удаление пользователя меняет и множества друзей его бывших друзей
+    @Test
+    void testRemoveUserChangesFormerFriends() {
+        UserStorage userStorage = (UserStorage) postProcessor.postProcessAfterInitialization(
+                new InMemoryUserStorage(), "users");
+        User alice = userStorage.addUser(user("alice"));
+        User bob = userStorage.addUser(user("bob"));
+        User carol = userStorage.addUser(user("carol"));
+        userStorage.addFriend(alice.getId(), bob.getId());
+        long before = versions.now();
+
+        userStorage.removeUser(alice.getId());
+
+        assertTrue(versions.user(alice.getId()) > before);
+        assertTrue(versions.user(bob.getId()) > before);
+        assertFalse(versions.user(carol.getId()) > before);
+    }
+
+    // Повторный лайк не меняет фильм и не сбрасывает его кэш
+    @Test
+    void testRepeatedLikeKeepsFilmVersion() {
+        FilmStorage filmStorage = (FilmStorage) postProcessor.postProcessAfterInitialization(
+                new InMemoryFilmStorage(), "films");
+        Long filmId = filmStorage.addFilm(film()).getId();
+        filmStorage.addLike(filmId, 1L);
+        long before = versions.now();
+
+        filmStorage.addLike(filmId, 1L);
+
+        assertTrue(versions.film(filmId) <= before);
+    }
+}
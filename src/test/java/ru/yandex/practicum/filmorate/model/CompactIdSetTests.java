@@ -0,0 +1,170 @@
+package ru.yandex.practicum.filmorate.model;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.CompactIdSet.Layout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompactIdSetTests {
+    // Порог перевода контейнера в битовую карту и обратно
+    private static final int CONTAINER_ARRAY_MAX = 4096;
+
+    // После ARRAY_LIMIT элементов массив переходит в контейнеры без потери элементов
+    @Test
+    void testArraySwitchesToContainersAboveLimit() {
+        CompactIdSet set = range(0, CompactIdSet.ARRAY_LIMIT * 3L, 3);
+        assertEquals(Layout.ARRAY, set.layout());
+
+        assertTrue(set.add(CompactIdSet.ARRAY_LIMIT * 3L));
+
+        assertEquals(Layout.CONTAINERS, set.layout());
+        assertEquals(CompactIdSet.ARRAY_LIMIT + 1, set.size());
+        assertArrayEquals(expected(0, CompactIdSet.ARRAY_LIMIT * 3L + 1, 3), set.toLongArray());
+        assertFalse(set.add(0L));
+    }
+
+    // Плотный контейнер переходит в битовую карту, когда в нем больше 4096 элементов
+    @Test
+    void testContainerSwitchesToBitmapAboveLimit() {
+        CompactIdSet set = range(0, CONTAINER_ARRAY_MAX, 1);
+        assertEquals(Layout.CONTAINERS, set.layout());
+
+        assertTrue(set.add((long) CONTAINER_ARRAY_MAX));
+
+        assertEquals(Layout.BITMAP, set.layout());
+        assertArrayEquals(expected(0, CONTAINER_ARRAY_MAX + 1, 1), set.toLongArray());
+        assertTrue(set.contains((long) CONTAINER_ARRAY_MAX));
+        assertFalse(set.contains(CONTAINER_ARRAY_MAX + 1L));
+    }
+
+    // Удаление возвращает битовую карту в массив контейнера на половине порога, а множество — в long[] на ARRAY_LIMIT / 2
+    @Test
+    void testRemovalSwitchesBackAcrossThresholds() {
+        CompactIdSet set = range(0, CONTAINER_ARRAY_MAX + 1, 1);
+        long last = CONTAINER_ARRAY_MAX;
+        while (set.size() > CONTAINER_ARRAY_MAX / 2 + 1) {
+            assertTrue(set.remove(last--));
+        }
+        assertEquals(Layout.BITMAP, set.layout());
+
+        assertTrue(set.remove(last--));
+        assertEquals(Layout.CONTAINERS, set.layout());
+        assertArrayEquals(expected(0, last + 1, 1), set.toLongArray());
+
+        while (set.size() > CompactIdSet.ARRAY_LIMIT / 2 + 1) {
+            assertTrue(set.remove(last--));
+        }
+        assertEquals(Layout.CONTAINERS, set.layout());
+
+        assertTrue(set.remove(last--));
+        assertEquals(Layout.ARRAY, set.layout());
+        assertArrayEquals(expected(0, last + 1, 1), set.toLongArray());
+        assertFalse(set.remove(last + 1));
+    }
+
+    // Опустевший контейнер удаляется, остальные ключи не сдвигаются
+    @Test
+    void testEmptiedContainerIsDropped() {
+        CompactIdSet set = range(0, (CompactIdSet.ARRAY_LIMIT + 1) * 70_000L, 70_000);
+        assertEquals(Layout.CONTAINERS, set.layout());
+
+        assertTrue(set.remove(70_000L));
+
+        assertFalse(set.contains(70_000L));
+        assertTrue(set.contains(140_000L));
+        assertEquals(CompactIdSet.ARRAY_LIMIT, set.size());
+    }
+
+    @Test
+    void testIntersectArrayWithArray() {
+        assertIntersection(range(0, 600, 1), range(300, 900, 2), Layout.ARRAY, Layout.ARRAY);
+    }
+
+    // Сильный перекос размеров: бинарный поиск по большему массиву
+    @Test
+    void testIntersectSkewedArrays() {
+        CompactIdSet small = new CompactIdSet();
+        for (long id : new long[]{7, 300, 999, 5000}) {
+            small.add(id);
+        }
+        assertIntersection(small, range(0, 1000, 1), Layout.ARRAY, Layout.ARRAY);
+    }
+
+    @Test
+    void testIntersectArrayWithContainers() {
+        assertIntersection(range(0, 1000, 3), range(0, 3000, 2), Layout.ARRAY, Layout.CONTAINERS);
+    }
+
+    @Test
+    void testIntersectArrayWithBitmap() {
+        assertIntersection(range(0, 1000, 7), range(0, 6000, 1), Layout.ARRAY, Layout.BITMAP);
+    }
+
+    @Test
+    void testIntersectContainersWithContainers() {
+        assertIntersection(range(0, 3000, 2), range(0, 4500, 3), Layout.CONTAINERS, Layout.CONTAINERS);
+        assertIntersection(range(0, 2000 * 70_000L, 70_000), range(0, 3000 * 70_000L, 140_000),
+                Layout.CONTAINERS, Layout.CONTAINERS);
+    }
+
+    @Test
+    void testIntersectContainersWithBitmap() {
+        assertIntersection(range(0, 3000, 2), range(0, 10_000, 1), Layout.CONTAINERS, Layout.BITMAP);
+    }
+
+    @Test
+    void testIntersectBitmapWithBitmap() {
+        assertIntersection(range(0, 10_000, 1), range(5000, 20_000, 1), Layout.BITMAP, Layout.BITMAP);
+    }
+
+    @Test
+    void testIntersectWithItselfAndEmpty() {
+        CompactIdSet set = range(0, 6000, 1);
+        assertEquals(6000, CompactIdSet.intersectionSize(set, set));
+        assertEquals(0, CompactIdSet.intersectionSize(set, new CompactIdSet()));
+    }
+
+    // Пересечение и его размер совпадают с эталоном при любом порядке аргументов
+    private static void assertIntersection(CompactIdSet first, CompactIdSet second, Layout firstLayout,
+                                           Layout secondLayout) {
+        assertEquals(firstLayout, first.layout());
+        assertEquals(secondLayout, second.layout());
+        TreeSet<Long> expected = new TreeSet<>(first);
+        expected.retainAll(second);
+
+        for (boolean swap : new boolean[]{false, true}) {
+            CompactIdSet left = swap ? second : first;
+            CompactIdSet right = swap ? first : second;
+            List<Long> found = new ArrayList<>();
+            CompactIdSet.intersect(left, right, found::add);
+            Collections.sort(found);
+
+            assertEquals(new ArrayList<>(expected), found);
+            assertEquals(expected.size(), CompactIdSet.intersectionSize(left, right));
+        }
+    }
+
+    private static CompactIdSet range(long from, long to, long step) {
+        CompactIdSet set = new CompactIdSet();
+        for (long id = from; id < to; id += step) {
+            set.add(id);
+        }
+        return set;
+    }
+
+    private static long[] expected(long from, long to, long step) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = from; id < to; id += step) {
+            ids.add(id);
+        }
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SearchIndexTests {
+    private static final List<String> QUERIES = List.of("космос", "океан", "космос океан", "лес река", "звезды");
+    private static final String[] DESCRIPTIONS = {
+        "Полет в космос к звездам",
+        "Экспедиция через океан и лес",
+        "Река в лесу и звезды над океаном",
+    };
+
+    // Многократное изменение одного фильма не раздувает индекс и не меняет выдачу относительно свежего индекса
+    @Test
+    void testRepeatedUpdatesOfOneFilmKeepIndexStable() {
+        SearchIndex updated = indexWithOtherFilms();
+        String description = DESCRIPTIONS[0];
+        updated.add(1L, "Фильм", description);
+        for (int i = 1; i <= 10_000; i++) {
+            String next = DESCRIPTIONS[i % DESCRIPTIONS.length];
+            updated.remove(1L, "Фильм", description);
+            updated.add(1L, "Фильм", next);
+            description = next;
+        }
+        SearchIndex fresh = indexWithOtherFilms();
+        fresh.add(1L, "Фильм", description);
+
+        assertEquals(fresh.size(), updated.size());
+        assertTrue(updated.documents() <= 2048, "номеров документов: " + updated.documents());
+        assertSameResults(fresh, updated);
+    }
+
+    // Повторная индексация без снятия старого текста не оставляет старые термы в частоте документов:
+    // у «альфа» и «бета» по одному живому документу, поэтому при равных очках выше меньший ID
+    @Test
+    void testReindexingWithoutRemoveForgetsOldTerms() {
+        SearchIndex index = new SearchIndex();
+        for (long filmId = 4; filmId <= 100; filmId++) {
+            index.add(filmId, "Фильм", "гамма");
+        }
+        index.add(2L, "Фильм", "альфа");
+        index.add(3L, "Фильм", "бета");
+        index.add(1L, "Фильм", "альфа");
+
+        index.add(1L, "Фильм", "дельта");
+
+        assertArrayEquals(new long[]{2L, 3L}, index.search("альфа бета", 10));
+        assertArrayEquals(new long[]{1L}, index.search("дельта", 10));
+        assertEquals(100, index.size());
+        assertEquals(100, index.documents());
+    }
+
+    private static SearchIndex indexWithOtherFilms() {
+        SearchIndex index = new SearchIndex();
+        for (long filmId = 2; filmId <= 300; filmId++) {
+            index.add(filmId, "Фильм " + filmId, DESCRIPTIONS[(int) (filmId % DESCRIPTIONS.length)]
+                    + (filmId % 7 == 0 ? " космос" : "") + (filmId % 11 == 0 ? " река река" : ""));
+        }
+        return index;
+    }
+
+    private static void assertSameResults(SearchIndex expected, SearchIndex actual) {
+        for (String query : QUERIES) {
+            assertArrayEquals(expected.search(query, 20), actual.search(query, 20), query);
+            assertArrayEquals(expected.search(query, 1000), actual.search(query, 1000), query);
+        }
+    }
+}